@@ -1,17 +1,28 @@
+import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 
+import java.io.IOException;
+
 import javax.swing.JButton;
+import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JToggleButton;
+import javax.swing.filechooser.FileNameExtensionFilter;
 
 /* Class for the row of buttons at the bottom of the Graph JFrame */
 public class ButtonsPanel extends JPanel {
 
+	private static final String LAYOUT_START_TEXT = "Auto Layout";
+	private static final String LAYOUT_STOP_TEXT = "Stop Layout";
+
 	private GraphFrame _parent;
+	private JFileChooser _fileChooser = new JFileChooser();
 	
 	public ButtonsPanel(GraphFrame parent) {
 		_parent = parent;
+		setLayout(new GridLayout(0, 4));
 		JButton btnAddEdge = new JButton("Add Edge");
 		btnAddEdge.addActionListener(new AddEdgeButtonListener());
 		JButton btnDelEdge = new JButton("Delete Edge");
@@ -20,39 +31,41 @@ public class ButtonsPanel extends JPanel {
 		btnDelNode.addActionListener(new DeleteNodeButtonListener());
 		JButton btnClear = new JButton("Clear");
 		btnClear.addActionListener(new ClearButtonListener());
+		JButton btnLayout = new JButton(LAYOUT_START_TEXT);
+		btnLayout.addActionListener(new LayoutButtonListener());
+		_parent.addLayoutListener(e -> btnLayout.setText(Boolean.TRUE.equals(e.getNewValue()) ? LAYOUT_STOP_TEXT : LAYOUT_START_TEXT));
 		add(btnAddEdge);
 		add(btnDelEdge);
 		add(btnDelNode);
 		add(btnClear);
+		JToggleButton btnComponents = new JToggleButton("Components");
+		btnComponents.addActionListener(e -> showComponents(btnComponents));
+		add(btnLayout);
+		add(btnComponents);
+		JButton btnSave = new JButton("Save");
+		btnSave.addActionListener(new SaveButtonListener());
+		JButton btnLoad = new JButton("Load");
+		btnLoad.addActionListener(new LoadButtonListener());
+		add(btnSave);
+		add(btnLoad);
+		_fileChooser.addChoosableFileFilter(new FileNameExtensionFilter("Binary graph (*.graph)", "graph"));
+		_fileChooser.addChoosableFileFilter(new FileNameExtensionFilter("Edge list (*.txt, *.edges, *.csv)", "txt", "edges", "csv"));
+		_fileChooser.addChoosableFileFilter(new FileNameExtensionFilter("Graphviz DOT (*.dot, *.gv)", "dot", "gv"));
 	}
 
 	/* Ask user to type an edge and check if node names are legal and nodes exist in the graph */
-	private char[] getEdgeFromUser(String message) {
+	private String[] getEdgeFromUser(String message) {
     	
 		String input = JOptionPane.showInputDialog(null, message, "Input", JOptionPane.QUESTION_MESSAGE);
-		if (input == null) {
-			return null;
-		}
-    	
-		if (!GraphFrame.isValidEdgeName(input))
+		String[] nodeNames = GraphFrame.splitEdgeName(input);
+		if (nodeNames == null)
 			return null;
 
-		char nodeName1 = input.toUpperCase().charAt(0);
-		char nodeName2 = input.toUpperCase().charAt(2);
-
-		try {
-			if (!_parent.getGraph().hasNode(nodeName1) || !_parent.getGraph().hasNode(nodeName2)) {
-				JOptionPane.showMessageDialog(null, "Node does not exist in the graph", "Error", JOptionPane.ERROR_MESSAGE);
-				return null;
-			}
-			char[] answer = new char[2];
-			answer[0] = nodeName1;
-			answer[1] = nodeName2;
-			return answer;
-		} catch (GraphDS.GraphException e1) {
-			// Should not happen
+		if (!_parent.getGraph().hasNode(nodeNames[0]) || !_parent.getGraph().hasNode(nodeNames[1])) {
+			JOptionPane.showMessageDialog(null, "Node does not exist in the graph", "Error", JOptionPane.ERROR_MESSAGE);
 			return null;
 		}
+		return nodeNames;
     }
 
     /* Handle pressing the "Add Edge" button */
@@ -60,19 +73,18 @@ public class ButtonsPanel extends JPanel {
     {
 		@Override
 		public void actionPerformed(ActionEvent e) {
-			char[] nodeNames = getEdgeFromUser("Enter new edge in the format: X,Y");
+			String[] nodeNames = getEdgeFromUser("Enter new edge in the format: X,Y");
 			if (nodeNames == null)
 				return;
 
-			char nodeName1 = nodeNames[0];
-			char nodeName2 = nodeNames[1];
+			String nodeName1 = nodeNames[0];
+			String nodeName2 = nodeNames[1];
 			try {
 				if (_parent.getGraph().hasEdge(nodeName1, nodeName2)) {
 					JOptionPane.showMessageDialog(null, "Edge already exists in the graph", "Error", JOptionPane.ERROR_MESSAGE);
 					return;
 				}
-				_parent.getGraph().addEdge(nodeName1, nodeName2);
-				_parent.repaint();
+				_parent.addEdge(nodeName1, nodeName2);
 			} catch (GraphDS.GraphException e1) {
 				// Should not happen
 			}
@@ -84,19 +96,18 @@ public class ButtonsPanel extends JPanel {
 
 		@Override
 		public void actionPerformed(ActionEvent e) {
-			char[] nodeNames = getEdgeFromUser("Enter edge to delete in the format: X,Y");
+			String[] nodeNames = getEdgeFromUser("Enter edge to delete in the format: X,Y");
 			if (nodeNames == null)
 				return;
 			
-			char nodeName1 = nodeNames[0];
-        	char nodeName2 = nodeNames[1];
+			String nodeName1 = nodeNames[0];
+        	String nodeName2 = nodeNames[1];
         	try {
 	        	if (!_parent.getGraph().hasEdge(nodeName1, nodeName2)) {
 	        		JOptionPane.showMessageDialog(null, "Edge does not exists in the graph", "Error", JOptionPane.ERROR_MESSAGE);
 	        		return;
 	        	}
-	        	_parent.getGraph().deleteEdge(nodeName1, nodeName2);
-	        	_parent.repaint();
+	        	_parent.deleteEdge(nodeName1, nodeName2);
 			} catch (GraphDS.GraphException e1) {
 				// Should not happen
 			}
@@ -110,20 +121,19 @@ public class ButtonsPanel extends JPanel {
 		@Override
 		public void actionPerformed(ActionEvent e) {
 			try {
-				String input = JOptionPane.showInputDialog(null, "Enter node name to delete (one character)", "Input", JOptionPane.QUESTION_MESSAGE);
+				String input = JOptionPane.showInputDialog(null, "Enter node name to delete", "Input", JOptionPane.QUESTION_MESSAGE);
 				if (!GraphFrame.isValidNodeName(input)){
 					return;
 				}
-				char nodeName = input.toUpperCase().charAt(0);
+				String nodeName = input.trim();
 				if (!_parent.getGraph().hasNode(nodeName)) {
 					JOptionPane.showMessageDialog(null, "Node does not exists in the graph", "Error", JOptionPane.ERROR_MESSAGE);
 					return;
 				}
-				_parent.getGraph().deleteNode(nodeName);
+				_parent.deleteNode(nodeName);
 			} catch (GraphDS.GraphException e1) {
 				// Should not happen
 			}
-			_parent.repaint();
 		}
     	
     }
@@ -136,4 +146,59 @@ public class ButtonsPanel extends JPanel {
 			_parent.clearGraph();
 		}
 	}
+
+	/* Handle pressing the "Components" button - colours the connected components (or stops colouring them),
+	 * and tells how many there are and if the graph is bipartite */
+	private void showComponents(JToggleButton button) {
+		_parent.setShowComponents(button.isSelected());
+		if (!button.isSelected())
+			return;
+		LargeGraphDS graph = _parent.getGraph();
+		int numComponents = 0;
+		for (int component : graph.getComponentIds())
+			numComponents = Math.max(numComponents, component + 1);
+		String message = "The graph has " + numComponents + " connected component" + (numComponents == 1 ? "" : "s")
+				+ (graph.isBipartite() ? " and is bipartite" : " and is not bipartite");
+		JOptionPane.showMessageDialog(null, message, "Components", JOptionPane.INFORMATION_MESSAGE);
+	}
+
+    /* Handle pressing the "Auto Layout" / "Stop Layout" button */
+	private class LayoutButtonListener implements ActionListener
+	{
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			_parent.setLayoutRunning(!_parent.isLayoutRunning());
+		}
+	}
+
+	/* Handle pressing the "Save" button - writes the graph into a file chosen by the user
+	 * (.dot == Graphviz DOT, .txt / .edges / .csv == edge list, other == binary) */
+	private class SaveButtonListener implements ActionListener
+	{
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			if (_fileChooser.showSaveDialog(_parent) != JFileChooser.APPROVE_OPTION)
+				return;
+			try {
+				_parent.saveGraph(_fileChooser.getSelectedFile());
+			} catch (IOException e1) {
+				JOptionPane.showMessageDialog(null, "Cannot save the graph: " + e1.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+			}
+		}
+	}
+
+	/* Handle pressing the "Load" button - replaces the graph with one read from a file chosen by the user */
+	private class LoadButtonListener implements ActionListener
+	{
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			if (_fileChooser.showOpenDialog(_parent) != JFileChooser.APPROVE_OPTION)
+				return;
+			try {
+				_parent.loadGraph(_fileChooser.getSelectedFile());
+			} catch (IOException | GraphDS.GraphException e1) {
+				JOptionPane.showMessageDialog(null, "Cannot load the graph: " + e1.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+			}
+		}
+	}
 }
@@ -0,0 +1,320 @@
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.SwingUtilities;
+
+/* A force-directed layout of a graph (Fruchterman-Reingold), that runs on a background thread.
+ * Every pair of nodes pushes each other away, every edge pulls its nodes together, and a weak gravity keeps
+ * the parts of the graph that are not connected near each other. The moves are limited by a temperature that
+ * cools down every iteration, so the layout settles.
+ * The repulsion of all the pairs is approximated with a Barnes-Hut quadtree (a far away cell of nodes pushes
+ * like one node at its center of mass), so an iteration takes O(n log n) instead of O(n^2).
+ * The layout works on a copy of the graph taken when it is created. The positions are published to the
+ * listener on the Swing event thread, at most MAX_FRAMES_PER_SECOND times a second and never more than one at a time,
+ * so the user interface is never flooded or blocked. */
+public class ForceLayout {
+
+	private static final int MAX_FRAMES_PER_SECOND = 30;
+	private static final double THETA = 0.8;          // a cell is far enough if its size / distance < THETA
+	private static final double GRAVITY = 0.02;
+	private static final double COOLING = 0.99;       // the temperature is multiplied by this every iteration
+	private static final double MIN_TEMPERATURE = 0.5;
+	private static final double MIN_CELL_SIZE = 1e-3;   // nodes closer than this share a leaf of the quadtree
+
+	/* Gets the positions of the layout, on the Swing event thread */
+	public interface Listener {
+		/* the new positions of the nodes (xs[i], ys[i] is the position of nodeIds[i]) */
+		void positionsChanged(int[] nodeIds, int[] xs, int[] ys);
+
+		/* the layout settled or was stopped (after the last positions were published) */
+		void layoutFinished();
+	}
+
+	private final int[] _nodeIds;    // the id in the graph of every node of the layout
+	private final int[] _edgeStart;  // the edges of node i (to nodes j > i) are _edgeEnd[_edgeStart[i] .. _edgeStart[i+1]-1]
+	private final int[] _edgeEnd;
+	private final double[] _x, _y;
+	private final double[] _dx, _dy; // the displacement of every node in the current iteration
+	private final double _k;         // the ideal length of an edge (the distance where the push and pull of one edge are equal)
+	private double _temperature;     // the largest move of a node in one iteration
+	private final Listener _listener;
+
+	private final Thread _thread;
+	private volatile boolean _stopped = false;
+	private final AtomicBoolean _publishPending = new AtomicBoolean(false);
+
+	// the quadtree of the current iteration, kept in vectors that are reused between iterations
+	private int _numCells;
+	private double[] _cellX, _cellY, _cellSize;   // the top left corner and side of every cell
+	private double[] _cellMass, _cellSumX, _cellSumY;
+	private int[] _cellChildren;   // the first of the 4 children of every cell (-1 == a leaf)
+	private int[] _cellBody;       // the node inside a leaf (-1 == empty)
+	private int[] _stack;
+
+	/*
+	 * @param graph - the graph to lay out (copied, so it may change while the layout runs)
+	 * @param nodeX, nodeY - the current positions of the nodes, by node id
+	 * @param idealEdgeLength - the length the edges should get (the k of Fruchterman-Reingold;
+	 *                          the edges of large graphs get longer, as every node pushes all the others)
+	 * @param listener - gets the positions, on the Swing event thread
+	 */
+	public ForceLayout(LargeGraphDS graph, int[] nodeX, int[] nodeY, double idealEdgeLength, Listener listener) {
+		int numNodes = graph.getNumNodes();
+		_nodeIds = new int[numNodes];
+		int[] indexOfId = new int[graph.getNodeIdBound()];
+		int n = 0;
+		for (PrimitiveIterator.OfInt nodes = graph.nodeIds(); nodes.hasNext(); ) {
+			int nodeId = nodes.nextInt();
+			indexOfId[nodeId] = n;
+			_nodeIds[n++] = nodeId;
+		}
+		_edgeStart = new int[numNodes + 1];
+		_edgeEnd = new int[(int) graph.getNumEdges()];
+		int numEdges = 0;
+		for (int i = 0; i < numNodes; i++) {
+			_edgeStart[i] = numEdges;
+			try {
+				for (PrimitiveIterator.OfInt neighbors = graph.neighbors(_nodeIds[i]); neighbors.hasNext(); ) {
+					int j = indexOfId[neighbors.nextInt()];
+					if (j > i)
+						_edgeEnd[numEdges++] = j;
+				}
+			} catch (GraphDS.GraphException e) {
+				// Should not happen
+			}
+		}
+		_edgeStart[numNodes] = numEdges;
+
+		_x = new double[numNodes];
+		_y = new double[numNodes];
+		for (int i = 0; i < numNodes; i++) {
+			// nodes at the same position would push each other in no direction, so spread them a little
+			_x[i] = nodeX[_nodeIds[i]] + (i % 7) * 0.01;
+			_y[i] = nodeY[_nodeIds[i]] + (i % 11) * 0.01;
+		}
+		_dx = new double[numNodes];
+		_dy = new double[numNodes];
+		_k = idealEdgeLength;
+		_temperature = Math.max(idealEdgeLength, Math.sqrt(numNodes) * idealEdgeLength);
+		_listener = listener;
+
+		int maxCells = 4 * numNodes + 16;
+		_cellX = new double[maxCells];
+		_cellY = new double[maxCells];
+		_cellSize = new double[maxCells];
+		_cellMass = new double[maxCells];
+		_cellSumX = new double[maxCells];
+		_cellSumY = new double[maxCells];
+		_cellChildren = new int[maxCells];
+		_cellBody = new int[maxCells];
+		_stack = new int[64 * 3 + 4];
+
+		_thread = new Thread(this::run, "ForceLayout");
+		_thread.setDaemon(true);
+		_thread.setPriority(Thread.NORM_PRIORITY - 1);
+	}
+
+	/* Start the layout on its thread */
+	public void start() {
+		_thread.start();
+	}
+
+	/* Stop the layout (the listener is told when it stopped) */
+	public void stop() {
+		_stopped = true;
+	}
+
+	public boolean isRunning() {
+		return _thread.isAlive() && !_stopped;
+	}
+
+	/* the background thread: iterate until settled or stopped */
+	private void run() {
+		long frameNanos = 1000000000L / MAX_FRAMES_PER_SECOND;
+		long lastPublish = System.nanoTime();
+		while (!_stopped && _temperature > MIN_TEMPERATURE) {
+			iterate();
+			long now = System.nanoTime();
+			if (now - lastPublish >= frameNanos && _publishPending.compareAndSet(false, true)) {
+				publish();
+				lastPublish = now;
+			}
+		}
+		_publishPending.set(true);
+		publish();
+		SwingUtilities.invokeLater(_listener::layoutFinished);
+	}
+
+	/* send a snapshot of the positions to the event thread */
+	private void publish() {
+		int[] xs = new int[_x.length];
+		int[] ys = new int[_y.length];
+		for (int i = 0; i < xs.length; i++) {
+			xs[i] = (int) Math.round(_x[i]);
+			ys[i] = (int) Math.round(_y[i]);
+		}
+		SwingUtilities.invokeLater(() -> {
+			_publishPending.set(false);
+			_listener.positionsChanged(_nodeIds, xs, ys);
+		});
+	}
+
+	/* One iteration: calculate the forces on all the nodes and move them */
+	void iterate() {
+		int n = _x.length;
+		if (n == 0) {
+			_temperature = 0;
+			return;
+		}
+		buildQuadtree();
+		double centerX = _cellSumX[0] / _cellMass[0], centerY = _cellSumY[0] / _cellMass[0];
+		double k2 = _k * _k;
+		for (int i = 0; i < n; i++) {
+			repulse(i, k2);
+			// gravity towards the center of the graph
+			_dx[i] -= GRAVITY * (_x[i] - centerX);
+			_dy[i] -= GRAVITY * (_y[i] - centerY);
+		}
+		for (int i = 0; i < n; i++) {
+			for (int e = _edgeStart[i]; e < _edgeStart[i+1]; e++) {
+				int j = _edgeEnd[e];
+				double dx = _x[i] - _x[j], dy = _y[i] - _y[j];
+				double distance = Math.sqrt(dx * dx + dy * dy);
+				double force = distance / _k;   // (distance^2 / k) along the unit vector
+				_dx[i] -= dx * force;
+				_dy[i] -= dy * force;
+				_dx[j] += dx * force;
+				_dy[j] += dy * force;
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			double length = Math.sqrt(_dx[i] * _dx[i] + _dy[i] * _dy[i]);
+			if (length > _temperature) {
+				_dx[i] *= _temperature / length;
+				_dy[i] *= _temperature / length;
+			}
+			_x[i] += _dx[i];
+			_y[i] += _dy[i];
+			_dx[i] = 0;
+			_dy[i] = 0;
+		}
+		_temperature *= COOLING;
+	}
+
+	/* add the repulsion of all the other nodes on node i (k^2 / distance, away from them), using the quadtree */
+	private void repulse(int i, double k2) {
+		double x = _x[i], y = _y[i];
+		int top = 0;
+		_stack[top++] = 0;
+		while (top > 0) {
+			int cell = _stack[--top];
+			if (_cellMass[cell] == 0 || _cellBody[cell] == i)
+				continue;
+			double dx = x - _cellSumX[cell] / _cellMass[cell];
+			double dy = y - _cellSumY[cell] / _cellMass[cell];
+			double distance2 = Math.max(dx * dx + dy * dy, 0.01);
+			int children = _cellChildren[cell];
+			if (children < 0 || _cellSize[cell] * _cellSize[cell] < THETA * THETA * distance2) {
+				// a leaf, or far enough to count as one node at the center of mass of the cell
+				double force = k2 * _cellMass[cell] / distance2;   // (k^2 / distance) along the unit vector
+				_dx[i] += dx * force;
+				_dy[i] += dy * force;
+			} else {
+				if (top + 4 > _stack.length)
+					_stack = Arrays.copyOf(_stack, _stack.length * 2);
+				for (int c = 0; c < 4; c++)
+					_stack[top++] = children + c;
+			}
+		}
+	}
+
+	/* build the quadtree of the current positions */
+	private void buildQuadtree() {
+		double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+		for (int i = 0; i < _x.length; i++) {
+			minX = Math.min(minX, _x[i]);
+			maxX = Math.max(maxX, _x[i]);
+			minY = Math.min(minY, _y[i]);
+			maxY = Math.max(maxY, _y[i]);
+		}
+		_numCells = 0;
+		newCell(minX, minY, Math.max(maxX - minX, maxY - minY) + 1);
+		for (int i = 0; i < _x.length; i++)
+			insert(i);
+	}
+
+	private int newCell(double x, double y, double size) {
+		if (_numCells + 4 > _cellX.length)
+			growCells();
+		int cell = _numCells++;
+		_cellX[cell] = x;
+		_cellY[cell] = y;
+		_cellSize[cell] = size;
+		_cellMass[cell] = 0;
+		_cellSumX[cell] = 0;
+		_cellSumY[cell] = 0;
+		_cellChildren[cell] = -1;
+		_cellBody[cell] = -1;
+		return cell;
+	}
+
+	private void growCells() {
+		int capacity = _cellX.length * 2;
+		_cellX = Arrays.copyOf(_cellX, capacity);
+		_cellY = Arrays.copyOf(_cellY, capacity);
+		_cellSize = Arrays.copyOf(_cellSize, capacity);
+		_cellMass = Arrays.copyOf(_cellMass, capacity);
+		_cellSumX = Arrays.copyOf(_cellSumX, capacity);
+		_cellSumY = Arrays.copyOf(_cellSumY, capacity);
+		_cellChildren = Arrays.copyOf(_cellChildren, capacity);
+		_cellBody = Arrays.copyOf(_cellBody, capacity);
+	}
+
+	/* the child of the cell that contains the point */
+	private int childOf(int cell, double x, double y) {
+		double half = _cellSize[cell] / 2;
+		int quadrant = (x >= _cellX[cell] + half ? 1 : 0) + (y >= _cellY[cell] + half ? 2 : 0);
+		return _cellChildren[cell] + quadrant;
+	}
+
+	/* insert node i into the quadtree, splitting the leaf it falls into if it has nodes already */
+	private void insert(int i) {
+		double x = _x[i], y = _y[i];
+		int cell = 0;
+		while (_cellChildren[cell] >= 0 || _cellMass[cell] > 0) {
+			if (_cellChildren[cell] < 0) {
+				if (_cellSize[cell] < MIN_CELL_SIZE)
+					break;   // too close to separate: the leaf holds them all as one mass
+				split(cell);
+			}
+			addMass(cell, x, y);
+			cell = childOf(cell, x, y);
+		}
+		_cellBody[cell] = _cellMass[cell] == 0 ? i : -1;
+		addMass(cell, x, y);
+	}
+
+	/* turn a leaf into 4 children, and move its nodes into the child that contains them */
+	private void split(int cell) {
+		double half = _cellSize[cell] / 2;
+		int children = newCell(_cellX[cell], _cellY[cell], half);
+		newCell(_cellX[cell] + half, _cellY[cell], half);
+		newCell(_cellX[cell], _cellY[cell] + half, half);
+		newCell(_cellX[cell] + half, _cellY[cell] + half, half);
+		_cellChildren[cell] = children;
+		int child = childOf(cell, _cellSumX[cell] / _cellMass[cell], _cellSumY[cell] / _cellMass[cell]);
+		_cellMass[child] = _cellMass[cell];
+		_cellSumX[child] = _cellSumX[cell];
+		_cellSumY[child] = _cellSumY[cell];
+		_cellBody[child] = _cellBody[cell];
+		_cellBody[cell] = -1;
+	}
+
+	private void addMass(int cell, double x, double y) {
+		_cellMass[cell] += 1;
+		_cellSumX[cell] += x;
+		_cellSumY[cell] += y;
+	}
+
+}
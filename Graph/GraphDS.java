@@ -1,8 +1,13 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
 /* Class for representing a Character Graph data structure. 
  * (assuming only uppercase characters A-Z can be nodes) 
- * In this simple implementation, we hold a vector of booleans 
- *   that indicates which nodes are in the graph,
- * and a 2D array of booleans that indicates which edges are in the graph. 
+ * In this implementation, the nodes of the graph are the set bits of one bitmask,
+ *   and the edges of every node are the set bits of its own bitmask (its adjacency row),
+ * so neighbours are found by walking set bits and set operations on neighbourhoods
+ * (common neighbours, union) take a single word operation.
  * Various exceptions are defined at the end 
  * - they are thrown for different kinds of illegal inputs to methods.
  */
@@ -10,12 +15,11 @@ public class GraphDS {
 
 	public static final int NUM_POSSIBLE_NODES = 'Z'-'A'+1;
 	
-	private boolean _nodes[] = new boolean[NUM_POSSIBLE_NODES];
-	private boolean _edges[][] = new boolean[NUM_POSSIBLE_NODES][NUM_POSSIBLE_NODES];
-	private int _numNodes = 0;
+	private long _nodes = 0;   // bit i is set iff node i is in the graph
+	private long _adjacency[] = new long[NUM_POSSIBLE_NODES];   // bit j of _adjacency[i] is set iff edge (i,j) is in the graph
 
 	public GraphDS() {
-		// All nodes and edges are automatically initialized to false, so no need to do anything
+		// All nodes and edges are automatically initialized to 0 (empty masks), so no need to do anything
 	}
 	
 	public GraphDS(char[] nodeIds, char[][] edges) throws IllegalCharacterNodeException, NodeAlreadyExistsException, 
@@ -49,54 +53,97 @@ public class GraphDS {
 		return (char) ('A' + nodeId);
 	}
 
+	/* Convert a mask of node ids to the vector of their names */
+	private static char[] maskToNodes(long mask) {
+		char[] answer = new char[Long.bitCount(mask)];
+		int j = 0;
+		for (NodeIdIterator it = new NodeIdIterator(mask); it.hasNext(); ) {
+			answer[j++] = nodeIdToChar(it.nextInt());
+		}
+		return answer;
+	}
+
 	/* Returns true iff the graph has the node */
 	public boolean hasNode(char nodeName) throws IllegalCharacterNodeException {
 		int pos = charToNodeId(nodeName);
-		return _nodes[pos];
+		return (_nodes & (1L << pos)) != 0;
+	}
+
+	/* Returns the number of nodes in the graph */
+	public int getNumNodes() {
+		return Long.bitCount(_nodes);
 	}
 
 	/* Returns a vector with the names of the nodes in the graph */
 	public char[] getNodes() {
-		char[] answer = new char[_numNodes];
-		int j = 0;
-		for (int i=0; i<NUM_POSSIBLE_NODES; ++i) {
-			if (_nodes[i]) {
-				answer[j++] = nodeIdToChar(i);
-			}
-		}
-		return answer;
+		return maskToNodes(_nodes);
+	}
+
+	/* Returns an iterator over the ids of the nodes in the graph (see nodeIdToChar) */
+	public NodeIdIterator nodeIds() {
+		return new NodeIdIterator(_nodes);
 	}
 
 	/* Returns true iff the graph has an edge between the two nodes */
 	public boolean hasEdge(char nodeId1, char nodeId2) throws IllegalCharacterNodeException {
 		int pos1 = charToNodeId(nodeId1);
 		int pos2 = charToNodeId(nodeId2);
-		return _edges[pos1][pos2];
+		return (_adjacency[pos1] & (1L << pos2)) != 0;
+	}
+
+	/* Returns the mask of the neighbours of the node with the given id (bit j is set iff edge (id,j) exists).
+	 * No checks, for walking the graph by ids */
+	public long neighborMask(int nodeId) {
+		return _adjacency[nodeId];
+	}
+
+	/* Returns an iterator over the ids of the neighbours of the node, in the order of their ids.
+	 * It visits only the neighbours, not all the possible nodes */
+	public NodeIdIterator neighbors(char nodeId) throws IllegalCharacterNodeException {
+		return new NodeIdIterator(_adjacency[charToNodeId(nodeId)]);
+	}
+
+	/* Returns the number of neighbours of the node (a node with an edge to itself is its own neighbour) */
+	public int degree(char nodeId) throws IllegalCharacterNodeException {
+		return Long.bitCount(_adjacency[charToNodeId(nodeId)]);
+	}
+
+	/* Returns the names of the nodes that are neighbours of both nodes */
+	public char[] commonNeighbors(char nodeId1, char nodeId2) throws IllegalCharacterNodeException {
+		return maskToNodes(_adjacency[charToNodeId(nodeId1)] & _adjacency[charToNodeId(nodeId2)]);
+	}
+
+	/* Returns the number of nodes that are neighbours of both nodes */
+	public int numCommonNeighbors(char nodeId1, char nodeId2) throws IllegalCharacterNodeException {
+		return Long.bitCount(_adjacency[charToNodeId(nodeId1)] & _adjacency[charToNodeId(nodeId2)]);
+	}
+
+	/* Returns the names of the nodes that are neighbours of at least one of the nodes */
+	public char[] neighborUnion(char nodeId1, char nodeId2) throws IllegalCharacterNodeException {
+		return maskToNodes(_adjacency[charToNodeId(nodeId1)] | _adjacency[charToNodeId(nodeId2)]);
 	}
 
 	/* Adds a new node to the graph (exception if already exists) */
 	public void addNode(char nodeId) throws IllegalCharacterNodeException, NodeAlreadyExistsException {
 		int pos = charToNodeId(nodeId);
-		if (_nodes[pos]) {
+		if ((_nodes & (1L << pos)) != 0) {
 			throw new NodeAlreadyExistsException(nodeId);
 		}
-		_nodes[pos] = true;
-		_numNodes++;
+		_nodes |= 1L << pos;
 	}
 	
 	/* Deletes a node from the graph (exception if does not exist),
 	 * as well as all the edges in which it participates */
 	public void deleteNode(char nodeId) throws IllegalCharacterNodeException, NodeDoesNotExistException {
 		int pos = charToNodeId(nodeId);
-		if (!_nodes[pos]) {
+		if ((_nodes & (1L << pos)) == 0) {
 			throw new NodeDoesNotExistException(nodeId);
 		}
-		_nodes[pos] = false;
-		_numNodes--;
-		for (int p=0; p < NUM_POSSIBLE_NODES; ++p) {
-			_edges[pos][p] = false;
-			_edges[p][pos] = false;
+		_nodes &= ~(1L << pos);
+		for (NodeIdIterator it = new NodeIdIterator(_adjacency[pos]); it.hasNext(); ) {
+			_adjacency[it.nextInt()] &= ~(1L << pos);
 		}
+		_adjacency[pos] = 0;
 	}
 
 	/* Add edge to graph (exception if already exists, 
@@ -104,28 +151,147 @@ public class GraphDS {
 	public void addEdge(char nodeId1, char nodeId2) throws IllegalCharacterNodeException, EdgeAdditionForNonExistingNodeException, EdgeAlreadyExistsException {
 		int pos1 = charToNodeId(nodeId1);
 		int pos2 = charToNodeId(nodeId2);
-		if (!(_nodes[pos1])) {
+		if ((_nodes & (1L << pos1)) == 0) {
 			throw new EdgeAdditionForNonExistingNodeException(nodeId1);
 		}
-		if (!(_nodes[pos2])) {
+		if ((_nodes & (1L << pos2)) == 0) {
 			throw new EdgeAdditionForNonExistingNodeException(nodeId2);
 		}
-		if (_edges[pos1][pos2]) {
+		if ((_adjacency[pos1] & (1L << pos2)) != 0) {
 			throw new EdgeAlreadyExistsException(nodeId1, nodeId2);
 		}
-		_edges[pos1][pos2] = true;
-		_edges[pos2][pos1] = true;
+		_adjacency[pos1] |= 1L << pos2;
+		_adjacency[pos2] |= 1L << pos1;
 	}
 
 	/* Delete edge from graph (exception if does not exist) */
 	public void deleteEdge(char nodeId1, char nodeId2) throws IllegalCharacterNodeException, EdgeDoesNotExistException {
 		int pos1 = charToNodeId(nodeId1);
 		int pos2 = charToNodeId(nodeId2);
-		if (!_edges[pos1][pos2]) {
+		if ((_adjacency[pos1] & (1L << pos2)) == 0) {
 			throw new EdgeDoesNotExistException(nodeId1, nodeId2);
 		}
-		_edges[pos1][pos2] = false;
-		_edges[pos2][pos1] = false;
+		_adjacency[pos1] &= ~(1L << pos2);
+		_adjacency[pos2] &= ~(1L << pos1);
+	}
+
+	/* Returns the connected components of the graph, as masks of node ids (in the order of their lowest node).
+	 * A component grows by a whole frontier at a time: the next frontier is the OR of the adjacency rows
+	 * of the current one, without the nodes already reached */
+	public long[] getComponentMasks() {
+		long[] components = new long[getNumNodes()];
+		int numComponents = 0;
+		long remaining = _nodes;
+		while (remaining != 0) {
+			long component = reachableFrom(remaining & -remaining);
+			components[numComponents++] = component;
+			remaining &= ~component;
+		}
+		return Arrays.copyOf(components, numComponents);
+	}
+
+	/* Returns the connected components of the graph, as vectors of node names */
+	public char[][] getConnectedComponents() {
+		long[] masks = getComponentMasks();
+		char[][] answer = new char[masks.length][];
+		for (int i = 0; i < masks.length; i++) {
+			answer[i] = maskToNodes(masks[i]);
+		}
+		return answer;
+	}
+
+	/* the mask of the nodes reachable from the nodes of the mask (including them) */
+	private long reachableFrom(long start) {
+		long reached = start;
+		long frontier = start;
+		while (frontier != 0) {
+			long next = 0;
+			for (NodeIdIterator it = new NodeIdIterator(frontier); it.hasNext(); ) {
+				next |= _adjacency[it.nextInt()];
+			}
+			frontier = next & ~reached;
+			reached |= frontier;
+		}
+		return reached;
+	}
+
+	/* Returns the BFS distance (number of edges) of every node from the source node, by node id
+	 * (see nodeIdToChar), with -1 for the nodes that are not reachable from it or not in the graph.
+	 * Exception if the source node does not exist */
+	public int[] getDistances(char source) throws IllegalCharacterNodeException, NodeDoesNotExistException {
+		int[] distances = new int[NUM_POSSIBLE_NODES];
+		Arrays.fill(distances, -1);
+		int pos = charToNodeId(source);
+		if ((_nodes & (1L << pos)) == 0) {
+			throw new NodeDoesNotExistException(source);
+		}
+		long reached = 1L << pos;
+		long frontier = reached;
+		for (int distance = 0; frontier != 0; distance++) {
+			long next = 0;
+			for (NodeIdIterator it = new NodeIdIterator(frontier); it.hasNext(); ) {
+				int nodeId = it.nextInt();
+				distances[nodeId] = distance;
+				next |= _adjacency[nodeId];
+			}
+			frontier = next & ~reached;
+			reached |= frontier;
+		}
+		return distances;
+	}
+
+	/* Returns true iff the nodes can be split into two sides with no edge inside a side.
+	 * Every component is split by the parity of the BFS levels, and the split is good iff
+	 * no node of a side has a neighbour in its own side (a node with an edge to itself
+	 * is its own neighbour in its own side, so it makes the graph not bipartite) */
+	public boolean isBipartite() {
+		long even = 0, odd = 0;
+		long remaining = _nodes;
+		while (remaining != 0) {
+			long reached = remaining & -remaining;
+			long frontier = reached;
+			for (boolean isEven = true; frontier != 0; isEven = !isEven) {
+				long next = 0;
+				for (NodeIdIterator it = new NodeIdIterator(frontier); it.hasNext(); ) {
+					next |= _adjacency[it.nextInt()];
+				}
+				if (isEven)
+					even |= frontier;
+				else
+					odd |= frontier;
+				frontier = next & ~reached;
+				reached |= frontier;
+			}
+			remaining &= ~reached;
+		}
+		for (NodeIdIterator it = nodeIds(); it.hasNext(); ) {
+			int nodeId = it.nextInt();
+			long side = (even & (1L << nodeId)) != 0 ? even : odd;
+			if ((_adjacency[nodeId] & side) != 0)
+				return false;
+		}
+		return true;
+	}
+
+	/* Returns the transitive closure of the graph: a graph with the same nodes, and an edge (X,Y) iff there is
+	 * a path of one edge or more from X to Y (so every node of a component with an edge has an edge to itself).
+	 * Computed by Warshall's algorithm, where "all the nodes that reach k also reach what k reaches"
+	 * is one OR of adjacency rows per node */
+	public GraphDS getTransitiveClosure() {
+		GraphDS closure = new GraphDS();
+		closure._nodes = _nodes;
+		long[] reach = closure._adjacency;
+		System.arraycopy(_adjacency, 0, reach, 0, NUM_POSSIBLE_NODES);
+		for (NodeIdIterator k = nodeIds(); k.hasNext(); ) {
+			int via = k.nextInt();
+			long bit = 1L << via;
+			for (NodeIdIterator i = nodeIds(); i.hasNext(); ) {
+				int from = i.nextInt();
+				if ((reach[from] & bit) != 0)
+					reach[from] |= reach[via];
+			}
+		}
+		return closure;
 	}
 
 	/* Returns a string representation of the graph in the form:
@@ -134,31 +300,25 @@ public class GraphDS {
 	 */
 	@Override
 	public String toString() {
-		String nodesStr = "";
-		for (int i=0; i<NUM_POSSIBLE_NODES; ++i) {
-			if (_nodes[i]) {
-				if (!nodesStr.isEmpty()) {
-					nodesStr += ",";
-				}
-				nodesStr += nodeIdToChar(i);
-			}
+		StringBuilder result = new StringBuilder("Graph<{");
+		for (NodeIdIterator it = nodeIds(); it.hasNext(); ) {
+			result.append(nodeIdToChar(it.nextInt()));
+			if (it.hasNext())
+				result.append(',');
 		}
-		nodesStr = "{"+nodesStr+"}";
-		
-		String edgesStr = "";
-		for (int i=0; i<NUM_POSSIBLE_NODES; ++i) {
-			for (int j=i; j<NUM_POSSIBLE_NODES; ++j) {
-				if (_edges[i][j]) {
-					if (!edgesStr.isEmpty()) {
-						edgesStr += ",";
-					}
-					edgesStr += "(" + nodeIdToChar(i) + "," + nodeIdToChar(j) + ")";
-				}
+		result.append("} {");
+		boolean first = true;
+		for (NodeIdIterator it = nodeIds(); it.hasNext(); ) {
+			int i = it.nextInt();
+			// every edge once: only the neighbours j >= i
+			for (NodeIdIterator neighbors = new NodeIdIterator(_adjacency[i] & (-1L << i)); neighbors.hasNext(); ) {
+				if (!first)
+					result.append(',');
+				first = false;
+				result.append('(').append(nodeIdToChar(i)).append(',').append(nodeIdToChar(neighbors.nextInt())).append(')');
 			}
 		}
-		edgesStr = "{"+edgesStr+"}";
-		
-		return "Graph<"+nodesStr+" "+edgesStr+">";
+		return result.append("}>").toString();
 	}
 
 	/* Two graphs are equal iff they have exactly the same nodes and same edges */
@@ -167,17 +327,36 @@ public class GraphDS {
 		if (!(other instanceof GraphDS))
 			return false;
 		GraphDS graph = (GraphDS) other;
-		for (int i=0; i<NUM_POSSIBLE_NODES; ++i) {
-			if (_nodes[i] != graph._nodes[i])
-				return false;
+		return _nodes == graph._nodes && Arrays.equals(_adjacency, graph._adjacency);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Long.hashCode(_nodes) + Arrays.hashCode(_adjacency);
+	}
+
+	/* Iterates over the node ids of the set bits of a mask, from the lowest id.
+	 * Each step clears the lowest set bit, so only the set bits are visited */
+	public static class NodeIdIterator implements PrimitiveIterator.OfInt {
+		private long _remaining;
+
+		public NodeIdIterator(long mask) {
+			_remaining = mask;
 		}
-		for (int i=0; i<NUM_POSSIBLE_NODES; ++i) {
-			for (int j=i; j<NUM_POSSIBLE_NODES; ++j) {
-				if (_edges[i][j] != graph._edges[i][j])
-					return false;
-			}
+
+		@Override
+		public boolean hasNext() {
+			return _remaining != 0;
+		}
+
+		@Override
+		public int nextInt() {
+			if (_remaining == 0)
+				throw new NoSuchElementException();
+			int nodeId = Long.numberOfTrailingZeros(_remaining);
+			_remaining &= _remaining - 1;
+			return nodeId;
 		}
-		return true;
 	}
 
 	/* The parent of all the exceptions that can be thrown from the Graph class */
@@ -2,6 +2,9 @@ import java.awt.BorderLayout;
 import java.awt.FlowLayout;
 import java.awt.Font;
 import java.awt.GridLayout;
+import java.beans.PropertyChangeListener;
+import java.io.File;
+import java.io.IOException;
 
 import javax.swing.JFrame;
 import javax.swing.JLabel;
@@ -47,47 +50,98 @@ public class GraphFrame extends JFrame {
 		_graphPanel.clearGraph();
 	}
 
-	public GraphDS getGraph() {
+	/* Add an edge to the graph (repaints only the region of the edge) */
+	public void addEdge(String nodeName1, String nodeName2) throws GraphDS.GraphException {
+		_graphPanel.addEdge(nodeName1, nodeName2);
+	}
+
+	/* Delete an edge from the graph (repaints only the region of the edge) */
+	public void deleteEdge(String nodeName1, String nodeName2) throws GraphDS.GraphException {
+		_graphPanel.deleteEdge(nodeName1, nodeName2);
+	}
+
+	/* Delete a node and its edges from the graph (repaints only the region they covered) */
+	public void deleteNode(String nodeName) throws GraphDS.GraphException {
+		_graphPanel.deleteNode(nodeName);
+	}
+
+	/* Colour the nodes by their connected component (or all in the same colour) */
+	public void setShowComponents(boolean showComponents) {
+		_graphPanel.setShowComponents(showComponents);
+	}
+
+	/* Start or stop laying out the graph automatically */
+	public void setLayoutRunning(boolean running) {
+		if (running)
+			_graphPanel.startLayout();
+		else
+			_graphPanel.stopLayout();
+	}
+
+	public boolean isLayoutRunning() {
+		return _graphPanel.isLayoutRunning();
+	}
+
+	/* Listen to the automatic layout starting and stopping (a change of its "running" property) */
+	public void addLayoutListener(PropertyChangeListener listener) {
+		_graphPanel.addPropertyChangeListener(GraphPanel.LAYOUT_RUNNING_PROPERTY, listener);
+	}
+
+	public LargeGraphDS getGraph() {
 		return _graphPanel.getGraph();
 	}
+
+	/* Write the graph and the positions of its nodes into a file (the format is chosen by its extension) */
+	public void saveGraph(File file) throws IOException {
+		GraphIO.save(_graphPanel.getGraph(), _graphPanel.getNodeXs(), _graphPanel.getNodeYs(), file);
+	}
+
+	/* Show the graph read from a file instead of the current one (the format is chosen by its extension) */
+	public void loadGraph(File file) throws IOException, GraphDS.GraphException {
+		GraphIO.LoadedGraph loaded = GraphIO.load(file);
+		_graphPanel.setGraph(loaded.getGraph(), loaded.getXs(), loaded.getYs());
+	}
 	
-	/* Returns true iff input contains "X,Y" where X and Y are single chars.
+	/* Returns the two node names of input in the format "X,Y" (surrounding spaces removed),
+	 * or null if it is not a legal edge.
 	 * Also shows error messages to the user if needed.	 */
-	public static boolean isValidEdgeName(String input)
+	public static String[] splitEdgeName(String input)
 	{
 		if (input == null) {
-			return false;
+			return null;
 		}
 		
-		if (input.length() != 3 || input.charAt(1) != ',') {
+		String[] nodeNames = input.split(",", -1);
+		if (nodeNames.length != 2) {
 			JOptionPane.showMessageDialog(null, "Illegal format", "Error", JOptionPane.ERROR_MESSAGE);
-			return false;
+			return null;
 		} 
 		
-		char nodeName1 = input.charAt(0);
-		char nodeName2 = input.charAt(2);
-		input = input.toUpperCase();
-    	
-		if (!Character.isLetter(nodeName1) || !Character.isLetter(nodeName2)) {
-			JOptionPane.showMessageDialog(null, "Node name must be one alphabetic letter", "Error", JOptionPane.ERROR_MESSAGE);
-			return false;
+		nodeNames[0] = nodeNames[0].trim();
+		nodeNames[1] = nodeNames[1].trim();
+		if (!LargeGraphDS.isValidLabel(nodeNames[0]) || !LargeGraphDS.isValidLabel(nodeNames[1])) {
+			JOptionPane.showMessageDialog(null, "Node name must not be empty", "Error", JOptionPane.ERROR_MESSAGE);
+			return null;
 		}
-		return true;
+		return nodeNames;
 	}
 
-	/* Returns true iff input contains a legal node name.
+	/* Returns true iff input contains "X,Y" where X and Y are legal node names.
+	 * Also shows error messages to the user if needed.	 */
+	public static boolean isValidEdgeName(String input)
+	{
+		return splitEdgeName(input) != null;
+	}
+
+	/* Returns true iff input contains a legal node name
+	 * (not empty and without commas - surrounding spaces are ignored).
 	 * Also shows error messages to the user if needed.	 */
 	public static boolean isValidNodeName(String input){
 		if (input == null){
     		return false;
 		}
-		if (input.length() != 1) {
-			JOptionPane.showMessageDialog(null, "Node name must be one alphabetic letter", "Error", JOptionPane.ERROR_MESSAGE);
-			return false;
-		}
-		char nodeName = input.toUpperCase().charAt(0);
-		if (!Character.isLetter(nodeName)) {
-			JOptionPane.showMessageDialog(null, "Node name must be one alphabetic letter", "Error", JOptionPane.ERROR_MESSAGE);
+		if (!LargeGraphDS.isValidLabel(input.trim())) {
+			JOptionPane.showMessageDialog(null, "Node name must not be empty or contain commas", "Error", JOptionPane.ERROR_MESSAGE);
 			return false;
 		}
 		return true;
@@ -0,0 +1,719 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+
+/* Reading and writing graphs (LargeGraphDS, with the positions of their nodes if given) in three formats:
+ * - an edge list: a line "label" for every node, then a line "label1,label2" for every edge
+ *   (the same form the edges are typed in the editor)
+ * - Graphviz DOT: an undirected "graph { ... }", with the positions in "pos" attributes
+ * - a compact binary adjacency format: the labels and positions of the nodes, then for every node
+ *   the neighbours that come after it, as variable-length gaps between their indices
+ * Everything is streamed through buffers of a fixed size, so a graph is written and read in linear time
+ * without building it as one string or one byte array.
+ * Illegal input throws an IllegalFormatException (which extends GraphDS.GraphException). */
+public class GraphIO {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final int BINARY_MAGIC = 0x47525048;   // "GRPH"
+	private static final int BINARY_VERSION = 1;
+	private static final int BINARY_HAS_POSITIONS = 1;
+	private static final int MAX_BINARY_LABEL_BYTES = 1 << 20;   // longer labels are taken as a damaged file
+
+	/* The formats, chosen by the extension of the file name */
+	public enum Format {
+		EDGE_LIST, DOT, BINARY;
+
+		/* ".dot" / ".gv" == DOT, ".txt" / ".edges" / ".csv" == EDGE_LIST, anything else == BINARY */
+		public static Format ofFile(File file) {
+			String name = file.getName().toLowerCase();
+			if (name.endsWith(".dot") || name.endsWith(".gv"))
+				return DOT;
+			if (name.endsWith(".txt") || name.endsWith(".edges") || name.endsWith(".csv"))
+				return EDGE_LIST;
+			return BINARY;
+		}
+	}
+
+	/* A graph that was read, with the positions of its nodes (by node id) if the input had them */
+	public static class LoadedGraph {
+		private final LargeGraphDS _graph;
+		private final int[] _xs, _ys;
+
+		LoadedGraph(LargeGraphDS graph, int[] xs, int[] ys) {
+			_graph = graph;
+			_xs = xs;
+			_ys = ys;
+		}
+
+		public LargeGraphDS getGraph() {
+			return _graph;
+		}
+
+		public boolean hasPositions() {
+			return _xs != null;
+		}
+
+		/* the x coordinate of every node by node id (null if there are no positions) */
+		public int[] getXs() {
+			return _xs;
+		}
+
+		public int[] getYs() {
+			return _ys;
+		}
+	}
+
+	/* Returns a LargeGraphDS with the nodes (labelled by their letters) and edges of a GraphDS, for writing it */
+	public static LargeGraphDS toLargeGraph(GraphDS graph) {
+		LargeGraphDS answer = new LargeGraphDS();
+		int[] ids = new int[GraphDS.NUM_POSSIBLE_NODES];
+		try {
+			for (GraphDS.NodeIdIterator it = graph.nodeIds(); it.hasNext(); ) {
+				int nodeId = it.nextInt();
+				ids[nodeId] = answer.addNode(String.valueOf(GraphDS.nodeIdToChar(nodeId)));
+			}
+			for (GraphDS.NodeIdIterator it = graph.nodeIds(); it.hasNext(); ) {
+				int nodeId = it.nextInt();
+				long laterNeighbors = graph.neighborMask(nodeId) & (-1L << nodeId);
+				for (GraphDS.NodeIdIterator neighbors = new GraphDS.NodeIdIterator(laterNeighbors); neighbors.hasNext(); ) {
+					answer.addEdge(ids[nodeId], ids[neighbors.nextInt()]);
+				}
+			}
+		} catch (GraphDS.GraphException e) {
+			// This is not supposed to happend, the graph is legal
+		}
+		return answer;
+	}
+
+	/* Write the graph into the file, in the format of its extension (see Format.ofFile).
+	 * The positions (by node id) may be null */
+	public static void save(LargeGraphDS graph, int[] xs, int[] ys, File file) throws IOException {
+		Format format = Format.ofFile(file);
+		if (format == Format.BINARY) {
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				writeBinary(graph, xs, ys, channel);
+			}
+			return;
+		}
+		try (Writer out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+			if (format == Format.DOT)
+				writeDot(graph, xs, ys, out);
+			else
+				writeEdgeList(graph, out);
+		}
+	}
+
+	/* Read a graph from the file, in the format of its extension (see Format.ofFile) */
+	public static LoadedGraph load(File file) throws IOException, GraphDS.GraphException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			switch (Format.ofFile(file)) {
+			case DOT:
+				return readDot(channel);
+			case EDGE_LIST:
+				return readEdgeList(channel);
+			default:
+				return readBinary(channel);
+			}
+		}
+	}
+
+	/* ---------------------------------------- Edge list ---------------------------------------- */
+
+	/* Write the graph as an edge list: every node on a line, then every edge on a line as "label1,label2" */
+	public static void writeEdgeList(LargeGraphDS graph, Appendable out) throws IOException {
+		try {
+			for (PrimitiveIterator.OfInt nodes = graph.nodeIds(); nodes.hasNext(); ) {
+				out.append(graph.getLabel(nodes.nextInt())).append('\n');
+			}
+			for (PrimitiveIterator.OfInt nodes = graph.nodeIds(); nodes.hasNext(); ) {
+				int nodeId = nodes.nextInt();
+				String label = graph.getLabel(nodeId);
+				for (PrimitiveIterator.OfInt neighbors = graph.neighbors(nodeId); neighbors.hasNext(); ) {
+					int neighbor = neighbors.nextInt();
+					if (neighbor >= nodeId)
+						out.append(label).append(',').append(graph.getLabel(neighbor)).append('\n');
+				}
+			}
+		} catch (GraphDS.GraphException e) {
+			// This is not supposed to happend, all the ids come from the graph
+		}
+	}
+
+	/* Read an edge list: a line with a label adds a node, a line "label1,label2" adds an edge
+	 * (and its nodes, if they were not added before). Empty lines, and edges that appear again
+	 * (also as "label2,label1"), are skipped */
+	public static LoadedGraph readEdgeList(ReadableByteChannel channel) throws IOException, GraphDS.GraphException {
+		BufferedReader in = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), BUFFER_SIZE), BUFFER_SIZE);
+		LargeGraphDS graph = new LargeGraphDS();
+		int lineNumber = 0;
+		for (String line = in.readLine(); line != null; line = in.readLine()) {
+			lineNumber++;
+			line = line.trim();
+			if (line.isEmpty())
+				continue;
+			int comma = line.indexOf(',');
+			if (comma < 0) {
+				nodeOf(graph, line, lineNumber);
+				continue;
+			}
+			if (line.indexOf(',', comma + 1) >= 0)
+				throw new IllegalFormatException(lineNumber, "an edge must have exactly two nodes");
+			int nodeId1 = nodeOf(graph, line.substring(0, comma).trim(), lineNumber);
+			int nodeId2 = nodeOf(graph, line.substring(comma + 1).trim(), lineNumber);
+			if (!graph.hasEdge(nodeId1, nodeId2))
+				graph.addEdge(nodeId1, nodeId2);
+		}
+		return new LoadedGraph(graph, null, null);
+	}
+
+	/* the id of the node with the label, which is added if it is not in the graph yet */
+	private static int nodeOf(LargeGraphDS graph, String label, int lineNumber) throws GraphDS.GraphException {
+		int nodeId = graph.getNodeId(label);
+		if (nodeId >= 0)
+			return nodeId;
+		if (!LargeGraphDS.isValidLabel(label))
+			throw new IllegalFormatException(lineNumber, "illegal node label \"" + label + "\"");
+		return graph.addNode(label);
+	}
+
+	/* ---------------------------------------- DOT ---------------------------------------- */
+
+	/* Write the graph in Graphviz DOT (an undirected graph with quoted labels).
+	 * The positions (by node id, may be null) are written as pos="x,y" attributes of the nodes */
+	public static void writeDot(LargeGraphDS graph, int[] xs, int[] ys, Appendable out) throws IOException {
+		try {
+			out.append("graph {\n");
+			for (PrimitiveIterator.OfInt nodes = graph.nodeIds(); nodes.hasNext(); ) {
+				int nodeId = nodes.nextInt();
+				out.append("  ");
+				appendDotId(out, graph.getLabel(nodeId));
+				if (xs != null)
+					out.append(" [pos=\"").append(Integer.toString(xs[nodeId])).append(',').append(Integer.toString(ys[nodeId])).append("\"]");
+				out.append(";\n");
+			}
+			for (PrimitiveIterator.OfInt nodes = graph.nodeIds(); nodes.hasNext(); ) {
+				int nodeId = nodes.nextInt();
+				String label = graph.getLabel(nodeId);
+				for (PrimitiveIterator.OfInt neighbors = graph.neighbors(nodeId); neighbors.hasNext(); ) {
+					int neighbor = neighbors.nextInt();
+					if (neighbor < nodeId)
+						continue;
+					out.append("  ");
+					appendDotId(out, label);
+					out.append(" -- ");
+					appendDotId(out, graph.getLabel(neighbor));
+					out.append(";\n");
+				}
+			}
+			out.append("}\n");
+		} catch (GraphDS.GraphException e) {
+			// This is not supposed to happend, all the ids come from the graph
+		}
+	}
+
+	/* a quoted DOT id (quotes and backslashes are escaped) */
+	private static void appendDotId(Appendable out, String label) throws IOException {
+		out.append('"');
+		for (int i = 0; i < label.length(); i++) {
+			char c = label.charAt(i);
+			if (c == '"' || c == '\\')
+				out.append('\\');
+			out.append(c);
+		}
+		out.append('"');
+	}
+
+	/* Read an undirected graph in DOT. The statements understood are nodes ("a" [attributes]),
+	 * chains of edges ("a" -- "b" -- "c" [attributes]) and graph attributes (which are skipped),
+	 * and the only attribute used is the pos="x,y" of a node. Nodes are added when they first appear,
+	 * and edges that appear again are skipped. Subgraphs and directed graphs are not supported */
+	public static LoadedGraph readDot(ReadableByteChannel channel) throws IOException, GraphDS.GraphException {
+		DotTokenizer in = new DotTokenizer(Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), BUFFER_SIZE));
+		LargeGraphDS graph = new LargeGraphDS();
+		int[] xs = new int[0], ys = new int[0];
+		boolean hasPositions = false;
+
+		String token = in.next();
+		if ("strict".equalsIgnoreCase(token) && !in.isQuoted())
+			token = in.next();
+		if (!"graph".equalsIgnoreCase(token) || in.isQuoted())
+			throw new IllegalFormatException(in.getLine(), "expected an undirected \"graph\"");
+		token = in.next();
+		if (!"{".equals(token) || in.isQuoted())
+			token = in.next();   // the name of the graph
+		in.expect(token, "{");
+
+		for (token = in.next(); !in.isSymbol(token, "}"); token = in.next()) {
+			if (token == null)
+				throw new IllegalFormatException(in.getLine(), "missing \"}\"");
+			if (in.isSymbol(token, ";"))
+				continue;
+			if (!in.isQuoted() && (token.equalsIgnoreCase("graph") || token.equalsIgnoreCase("node") || token.equalsIgnoreCase("edge"))) {
+				in.expect(in.next(), "[");
+				readAttributes(in, null);   // default attributes
+				continue;
+			}
+			if (in.isSymbolToken())
+				throw new IllegalFormatException(in.getLine(), "unexpected \"" + token + "\"");
+			String label = token;
+			token = in.next();
+			if (in.isSymbol(token, "=")) {   // a graph attribute
+				in.next();
+				continue;
+			}
+			int nodeId = nodeOf(graph, label, in.getLine());
+			if (in.isSymbol(token, "--")) {
+				while (in.isSymbol(token, "--")) {
+					String next = in.next();
+					if (next == null || in.isSymbolToken())
+						throw new IllegalFormatException(in.getLine(), "expected a node after \"--\"");
+					int nextId = nodeOf(graph, next, in.getLine());
+					if (!graph.hasEdge(nodeId, nextId))
+						graph.addEdge(nodeId, nextId);
+					nodeId = nextId;
+					token = in.next();
+				}
+				if (in.isSymbol(token, "["))
+					readAttributes(in, null);   // edge attributes are not used
+				else
+					in.pushBack(token);
+				continue;
+			}
+			if (in.isSymbol(token, "->"))
+				throw new IllegalFormatException(in.getLine(), "directed edges are not supported");
+			if (in.isSymbol(token, "[")) {
+				String[] pos = new String[1];
+				readAttributes(in, pos);
+				if (pos[0] != null) {
+					if (nodeId >= xs.length) {
+						xs = Arrays.copyOf(xs, Math.max(nodeId + 1, xs.length * 2));
+						ys = Arrays.copyOf(ys, xs.length);
+					}
+					parsePosition(pos[0], nodeId, xs, ys, in.getLine());
+					hasPositions = true;
+				}
+			} else {
+				in.pushBack(token);
+			}
+		}
+		if (!hasPositions)
+			return new LoadedGraph(graph, null, null);
+		return new LoadedGraph(graph, Arrays.copyOf(xs, graph.getNodeIdBound()), Arrays.copyOf(ys, graph.getNodeIdBound()));
+	}
+
+	/* read "name=value" pairs until "]" (the "[" was read); the value of pos goes into pos[0] (if pos is not null) */
+	private static void readAttributes(DotTokenizer in, String[] pos) throws IOException, GraphDS.GraphException {
+		for (String token = in.next(); !in.isSymbol(token, "]"); token = in.next()) {
+			if (token == null)
+				throw new IllegalFormatException(in.getLine(), "missing \"]\"");
+			if (in.isSymbol(token, ",") || in.isSymbol(token, ";"))
+				continue;
+			String name = token;
+			in.expect(in.next(), "=");
+			String value = in.next();
+			if (value == null)
+				throw new IllegalFormatException(in.getLine(), "missing attribute value");
+			if (pos != null && name.equals("pos"))
+				pos[0] = value;
+		}
+	}
+
+	/* parse "x,y" (or "x,y!"), rounded to integers */
+	private static void parsePosition(String value, int nodeId, int[] xs, int[] ys, int line) throws GraphDS.GraphException {
+		String[] parts = value.replace("!", "").split(",");
+		try {
+			if (parts.length < 2)
+				throw new NumberFormatException();
+			xs[nodeId] = (int) Math.round(Double.parseDouble(parts[0].trim()));
+			ys[nodeId] = (int) Math.round(Double.parseDouble(parts[1].trim()));
+		} catch (NumberFormatException e) {
+			throw new IllegalFormatException(line, "illegal position \"" + value + "\"");
+		}
+	}
+
+	/* Splits DOT into tokens: ids (alphanumeric, numerals or quoted), and the symbols { } [ ] ; , = -- -> .
+	 * Comments (// and # to the end of the line, and block comments) are skipped */
+	private static class DotTokenizer {
+		private final PushbackReader _in;
+		private int _line = 1;
+		private boolean _quoted;       // the last token was a quoted id
+		private boolean _symbol;       // the last token was a symbol
+		private String _pushedBack = null;
+		private boolean _pushedBackQuoted, _pushedBackSymbol;
+		private final StringBuilder _token = new StringBuilder();
+
+		DotTokenizer(Reader in) {
+			_in = new PushbackReader(new BufferedReader(in, BUFFER_SIZE), 2);
+		}
+
+		int getLine() {
+			return _line;
+		}
+
+		boolean isQuoted() {
+			return _quoted;
+		}
+
+		boolean isSymbolToken() {
+			return _symbol;
+		}
+
+		/* true iff the token is the given symbol (and not a quoted id with the same text) */
+		boolean isSymbol(String token, String symbol) {
+			return token != null && _symbol && token.equals(symbol);
+		}
+
+		void expect(String token, String symbol) throws GraphDS.GraphException {
+			if (!isSymbol(token, symbol))
+				throw new IllegalFormatException(_line, "expected \"" + symbol + "\"");
+		}
+
+		/* return the last token, so next() returns it again */
+		void pushBack(String token) {
+			_pushedBack = token;
+			_pushedBackQuoted = _quoted;
+			_pushedBackSymbol = _symbol;
+		}
+
+		private int read() throws IOException {
+			int c = _in.read();
+			if (c == '\n')
+				_line++;
+			return c;
+		}
+
+		private int peek() throws IOException {
+			int c = _in.read();
+			if (c >= 0)
+				_in.unread(c);
+			return c;
+		}
+
+		/* Returns the next token, or null at the end of the input */
+		String next() throws IOException, GraphDS.GraphException {
+			if (_pushedBack != null) {
+				String token = _pushedBack;
+				_pushedBack = null;
+				_quoted = _pushedBackQuoted;
+				_symbol = _pushedBackSymbol;
+				return token;
+			}
+			_quoted = false;
+			_symbol = false;
+			int c = skipSpacesAndComments();
+			if (c < 0)
+				return null;
+			_token.setLength(0);
+			if (c == '"') {
+				_quoted = true;
+				for (c = read(); c != '"'; c = read()) {
+					if (c < 0)
+						throw new IllegalFormatException(_line, "unterminated string");
+					if (c == '\\') {
+						int escaped = read();
+						if (escaped != '"' && escaped != '\\' && escaped != '\n')
+							_token.append('\\');
+						if (escaped != '\n' && escaped >= 0)
+							_token.append((char) escaped);
+						continue;
+					}
+					_token.append((char) c);
+				}
+				return _token.toString();
+			}
+			if (c == '-' && (peek() == '-' || peek() == '>')) {
+				_symbol = true;
+				return read() == '-' ? "--" : "->";
+			}
+			if ("{}[];,=".indexOf(c) >= 0) {
+				_symbol = true;
+				return String.valueOf((char) c);
+			}
+			_token.append((char) c);
+			if (isIdStart(c)) {   // letters, digits and '_', not starting with a digit
+				while (isIdStart(peek()) || isDigit(peek()))
+					_token.append((char) read());
+				return _token.toString();
+			}
+			// a numeral: [-](.digits | digits[.digits]), so "1--2" is an edge and not one id
+			if (c == '-' && (isDigit(peek()) || peek() == '.'))
+				_token.append((char) (c = read()));
+			boolean dot = c == '.';
+			if (!isDigit(c) && !(dot && isDigit(peek())))
+				throw new IllegalFormatException(_line, "unexpected character '" + (char) c + "'");
+			while (isDigit(peek()) || (!dot && peek() == '.')) {
+				c = read();
+				dot |= c == '.';
+				_token.append((char) c);
+			}
+			return _token.toString();
+		}
+
+		private static boolean isIdStart(int c) {
+			return c >= 0 && (Character.isLetter(c) || c == '_' || c >= 0x80);
+		}
+
+		private static boolean isDigit(int c) {
+			return c >= '0' && c <= '9';
+		}
+
+		/* skip white space and comments, and return the next character (or -1 at the end) */
+		private int skipSpacesAndComments() throws IOException {
+			while (true) {
+				int c = read();
+				if (c < 0)
+					return c;
+				if (Character.isWhitespace(c))
+					continue;
+				if (c == '#' || (c == '/' && peek() == '/')) {
+					while (c >= 0 && c != '\n')
+						c = read();
+					continue;
+				}
+				if (c == '/' && peek() == '*') {
+					read();
+					int previous = 0;
+					for (c = read(); c >= 0 && !(previous == '*' && c == '/'); c = read())
+						previous = c;
+					continue;
+				}
+				return c;
+			}
+		}
+	}
+
+	/* ---------------------------------------- Binary ---------------------------------------- */
+
+	/*
+	 * Write the graph in the binary adjacency format:
+	 * [magic][version][flags][number of nodes], then for every node its label (a length and UTF-8 bytes)
+	 * and position (if flags has BINARY_HAS_POSITIONS), then for every node i (by its index in this order)
+	 * the number of its neighbours j >= i and the gaps between them (the first from i), all as variable-length numbers.
+	 * The positions (by node id) may be null
+	 */
+	public static void writeBinary(LargeGraphDS graph, int[] xs, int[] ys, WritableByteChannel channel) throws IOException {
+		ChannelOutput out = new ChannelOutput(channel);
+		int[] indexOfId = new int[graph.getNodeIdBound()];
+		out.putInt(BINARY_MAGIC);
+		out.putInt(BINARY_VERSION);
+		out.putByte(xs != null ? BINARY_HAS_POSITIONS : 0);
+		out.putVarLong(graph.getNumNodes());
+		try {
+			int index = 0;
+			for (PrimitiveIterator.OfInt nodes = graph.nodeIds(); nodes.hasNext(); ) {
+				int nodeId = nodes.nextInt();
+				indexOfId[nodeId] = index++;
+				byte[] label = graph.getLabel(nodeId).getBytes(StandardCharsets.UTF_8);
+				if (label.length > MAX_BINARY_LABEL_BYTES)
+					throw new IOException("The label of node " + nodeId + " is too long for the binary format");
+				out.putVarLong(label.length);
+				out.putBytes(label);
+				if (xs != null) {
+					out.putInt(xs[nodeId]);
+					out.putInt(ys[nodeId]);
+				}
+			}
+			for (PrimitiveIterator.OfInt nodes = graph.nodeIds(); nodes.hasNext(); ) {
+				int nodeId = nodes.nextInt();
+				int[] neighbors = graph.neighborIds(nodeId);   // sorted by id, and so by index
+				int first = Arrays.binarySearch(neighbors, nodeId);
+				if (first < 0)
+					first = -first - 1;
+				out.putVarLong(neighbors.length - first);
+				int previous = indexOfId[nodeId];
+				for (int i = first; i < neighbors.length; i++) {
+					int neighbor = indexOfId[neighbors[i]];
+					out.putVarLong(neighbor - previous);
+					previous = neighbor;
+				}
+			}
+		} catch (GraphDS.GraphException e) {
+			// This is not supposed to happend, all the ids come from the graph
+		}
+		out.flush();
+	}
+
+	/* Read a graph in the binary adjacency format (see writeBinary) */
+	public static LoadedGraph readBinary(ReadableByteChannel channel) throws IOException, GraphDS.GraphException {
+		ChannelInput in = new ChannelInput(channel);
+		try {
+			if (in.getInt() != BINARY_MAGIC || in.getInt() != BINARY_VERSION)
+				throw new IllegalFormatException(0, "not a binary graph file");
+			boolean hasPositions = (in.getByte() & BINARY_HAS_POSITIONS) != 0;
+			int numNodes = in.getCount(Integer.MAX_VALUE);
+			LargeGraphDS graph = new LargeGraphDS();
+			// the arrays grow with the nodes that are actually read, so a damaged count cannot allocate too much
+			int capacity = Math.min(numNodes, 1024);
+			int[] xs = hasPositions ? new int[capacity] : null;
+			int[] ys = hasPositions ? new int[capacity] : null;
+			byte[] label = new byte[64];
+			for (int i = 0; i < numNodes; i++) {
+				int length = in.getCount(MAX_BINARY_LABEL_BYTES);
+				if (length > label.length)
+					label = new byte[Math.max(length, label.length * 2)];
+				in.getBytes(label, length);
+				String text = new String(label, 0, length, StandardCharsets.UTF_8);
+				if (!LargeGraphDS.isValidLabel(text) || graph.hasNode(text))
+					throw new IllegalFormatException(0, "illegal or repeated node label \"" + text + "\"");
+				graph.addNode(text);   // the ids of a new graph are 0, 1, 2 ..., the same as the indices
+				if (hasPositions) {
+					if (i == xs.length) {
+						xs = Arrays.copyOf(xs, (int) Math.min(numNodes, xs.length * 2L));
+						ys = Arrays.copyOf(ys, xs.length);
+					}
+					xs[i] = in.getInt();
+					ys[i] = in.getInt();
+				}
+			}
+			for (int i = 0; i < numNodes; i++) {
+				int degree = in.getCount(numNodes);
+				int neighbor = i;
+				for (int k = 0; k < degree; k++) {
+					neighbor += in.getCount(numNodes - 1 - neighbor);
+					if ((k > 0 && neighbor == i) || graph.hasEdge(i, neighbor))
+						throw new IllegalFormatException(0, "illegal adjacency of node " + i);
+					graph.addEdge(i, neighbor);
+				}
+			}
+			return new LoadedGraph(graph, xs, ys);
+		} catch (EOFException e) {
+			throw new IllegalFormatException(0, "the file ends in the middle of the graph");
+		}
+	}
+
+	/* Buffered output of numbers into a channel */
+	private static class ChannelOutput {
+		private final WritableByteChannel _channel;
+		private final ByteBuffer _buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+		ChannelOutput(WritableByteChannel channel) {
+			_channel = channel;
+		}
+
+		private void ensure(int bytes) throws IOException {
+			if (_buffer.remaining() < bytes)
+				flush();
+		}
+
+		void putByte(int value) throws IOException {
+			ensure(1);
+			_buffer.put((byte) value);
+		}
+
+		void putInt(int value) throws IOException {
+			ensure(4);
+			_buffer.putInt(value);
+		}
+
+		/* a non-negative number in 7-bit groups, the lowest first (the high bit of a byte == more groups follow) */
+		void putVarLong(long value) throws IOException {
+			ensure(10);
+			while ((value & ~0x7FL) != 0) {
+				_buffer.put((byte) ((value & 0x7F) | 0x80));
+				value >>>= 7;
+			}
+			_buffer.put((byte) value);
+		}
+
+		void putBytes(byte[] bytes) throws IOException {
+			for (int offset = 0; offset < bytes.length; ) {
+				ensure(1);
+				int length = Math.min(_buffer.remaining(), bytes.length - offset);
+				_buffer.put(bytes, offset, length);
+				offset += length;
+			}
+		}
+
+		void flush() throws IOException {
+			_buffer.flip();
+			while (_buffer.hasRemaining())
+				_channel.write(_buffer);
+			_buffer.clear();
+		}
+	}
+
+	/* Buffered input of numbers from a channel */
+	private static class ChannelInput {
+		private final ReadableByteChannel _channel;
+		private final ByteBuffer _buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+		ChannelInput(ReadableByteChannel channel) {
+			_channel = channel;
+			_buffer.flip();   // empty
+		}
+
+		/* make sure the buffer has at least the given number of bytes (EOFException at the end of the input) */
+		private void ensure(int bytes) throws IOException {
+			if (_buffer.remaining() >= bytes)
+				return;
+			_buffer.compact();
+			while (_buffer.position() < bytes) {
+				if (_channel.read(_buffer) < 0)
+					throw new EOFException();
+			}
+			_buffer.flip();
+		}
+
+		int getByte() throws IOException {
+			ensure(1);
+			return _buffer.get() & 0xFF;
+		}
+
+		int getInt() throws IOException {
+			ensure(4);
+			return _buffer.getInt();
+		}
+
+		long getVarLong() throws IOException, GraphDS.GraphException {
+			long result = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				int b = getByte();
+				result |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0)
+					return result;
+			}
+			throw new IllegalFormatException(0, "illegal number");
+		}
+
+		/* a variable-length number in [0, max] */
+		int getCount(int max) throws IOException, GraphDS.GraphException {
+			long value = getVarLong();
+			if (value < 0 || value > max)
+				throw new IllegalFormatException(0, "illegal number " + value);
+			return (int) value;
+		}
+
+		void getBytes(byte[] bytes, int length) throws IOException {
+			for (int offset = 0; offset < length; ) {
+				ensure(1);
+				int count = Math.min(_buffer.remaining(), length - offset);
+				_buffer.get(bytes, offset, count);
+				offset += count;
+			}
+		}
+	}
+
+	public static class IllegalFormatException extends GraphDS.GraphException {
+		public IllegalFormatException(int line, String message) {
+			super(line > 0 ? "Line " + line + ": " + message : message);
+		}
+	}
+
+}
@@ -1,3 +1,9 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
 import javax.swing.JFrame;
 
 /* The main application class */
@@ -30,8 +36,22 @@ public class GraphMain {
 		}
 	}
 	
+	/* Just for testing class GraphIO: compact DOT edges ("a--b", "1--2") must be read as edges, not as one node */
+	public static void testGraphIO() {
+		String[] inputs = {"graph { a--b; }", "graph { 1--2 }", "graph { -1--2.5 -- .5 }"};
+		for (String input : inputs) {
+			try {
+				ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)));
+				System.out.println(input + ": " + GraphIO.readDot(channel).getGraph());
+			} catch (IOException | GraphDS.GraphException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
 	public static void main(String[] args) {
 		//testGraph();
+		//testGraphIO();
         JFrame frame = new GraphFrame();
         frame.setLocationRelativeTo(null);
         frame.setVisible(true);
@@ -1,155 +1,553 @@
 import java.awt.*;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
+import java.awt.event.MouseMotionListener;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.MouseWheelListener;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
 
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 
-/* A panel that draws a Graph */
+/* A panel that draws a Graph.
+ * The edges and the nodes are drawn into two cached images (layers), which are copied to the screen on every paint.
+ * The layers are redrawn only where the graph changed (the changes made through this panel redraw and repaint
+ * just the region they affect), or completely if the graph was changed from outside, the panel was resized
+ * or the view moved.
+ * The nodes have positions in world coordinates, and the panel shows a view of the world that can be
+ * panned (dragging the background) and zoomed (the mouse wheel). The nodes are kept in a NodeGrid,
+ * so finding the node under the mouse and the nodes inside the view does not look at all the nodes.
+ * The nodes can be laid out automatically by a ForceLayout, which runs in the background and sends the
+ * positions to the panel as it goes (the "layoutRunning" property tells when it starts and stops).
+ * The nodes can be coloured by their connected component, instead of all in red. */
 public class GraphPanel extends JPanel {
 
 	private static final int NODE_RADIUS = 24;
 	private static final int FONT_SIZE = 20;
 	private static final Font NODE_FONT = new Font("TimesRoman", Font.BOLD, FONT_SIZE);
-	
-	private GraphDS _graph;
-	private int[][] _nodePositions;   // 2D array from nodeIds to vector of coordinates x,y of the node
+	private static final int EDGE_WIDTH = 5;
+	private static final BasicStroke EDGE_STROKE = new BasicStroke(EDGE_WIDTH);
+	private static final int GRID_CELL_SIZE = NODE_RADIUS*4;
+	private static final double MIN_ZOOM = 0.01, MAX_ZOOM = 10;
+	private static final double MIN_LABEL_ZOOM = 0.4;   // the labels are not drawn below this zoom (they are not readable)
+	private static final double IDEAL_EDGE_LENGTH = NODE_RADIUS*3;
+	public static final String LAYOUT_RUNNING_PROPERTY = "layoutRunning";
+	private static final Color[] COMPONENT_COLORS = new Color[64];
+	static {
+		// hues spread by the golden ratio, so the colours of consecutive components are far apart
+		for (int i = 0; i < COMPONENT_COLORS.length; i++)
+			COMPONENT_COLORS[i] = Color.getHSBColor((i * 0.618034f) % 1, 0.75f, 0.95f);
+	}
+
+	private LargeGraphDS _graph;
+	private int[] _nodeX = new int[0];   // the x coordinate of every node, by node id (grows with the graph)
+	private int[] _nodeY = new int[0];   // the y coordinate of every node, by node id
+	private int[] _labelWidths = new int[0];   // the width of the label of every node in NODE_FONT (0 == not measured yet)
+	private int _maxLabelWidth = 0;
+	private NodeGrid _grid = new NodeGrid(GRID_CELL_SIZE);
+
+	private double _viewX = 0, _viewY = 0;   // the world coordinates shown at the top left corner of the panel
+	private double _zoom = 1;                // screen pixels per world unit
+
+	private BufferedImage _edgeLayer;    // the edges drawn on a transparent background
+	private BufferedImage _nodeLayer;    // the nodes drawn on a transparent background
+	private long _layersModCount = -1;   // the modCount of the graph when the layers were drawn
+
+	private boolean _showComponents = false;
+	private int[] _componentIds = null;  // the component of every node id, when they are shown
+	private long _componentsModCount = -1;
+
+	private ForceLayout _layout = null;  // the running layout (null == none)
+	private long _layoutModCount;        // the modCount of the graph when the layout started
 
 	public GraphPanel() {
 		initGraph();
-		addMouseListener(new Listener());
+		Listener listener = new Listener();
+		addMouseListener(listener);
+		addMouseMotionListener(listener);
+		addMouseWheelListener(listener);
 	}
 
 	private void initGraph() {
-		_nodePositions = new int[GraphDS.NUM_POSSIBLE_NODES][2];
+		_graph = new LargeGraphDS();
 
 		/* This is just to initialize the graph with some example to show */
-		char nodes[] = {'B', 'D'};
-		char edges[][] = {{'B', 'D'}};
 		try {
-			_graph = new GraphDS(nodes, edges);
-			_nodePositions[GraphDS.charToNodeId('B')][0] = 50;
-			_nodePositions[GraphDS.charToNodeId('B')][1] = 50;
-			_nodePositions[GraphDS.charToNodeId('D')][0] = 170;
-			_nodePositions[GraphDS.charToNodeId('D')][1] = 130;
+			setNodePosition(_graph.addNode("B"), 50, 50);
+			setNodePosition(_graph.addNode("D"), 170, 130);
+			_graph.addEdge("B", "D");
 		} catch (GraphDS.GraphException e) {
-			_graph = new GraphDS();
+			_graph = new LargeGraphDS();
+			_grid.clear();
 		}
 	}
 
+	/* Set the position of a node (in world coordinates), growing the position vectors if the graph grew.
+	 * The layers are not redrawn (see invalidateLayers) */
+	public void setNodePosition(int nodeId, int x, int y) {
+		if (nodeId >= _nodeX.length) {
+			int capacity = Math.max(nodeId + 1, _nodeX.length * 2);
+			_nodeX = Arrays.copyOf(_nodeX, capacity);
+			_nodeY = Arrays.copyOf(_nodeY, capacity);
+			_labelWidths = Arrays.copyOf(_labelWidths, capacity);
+		}
+		_grid.move(nodeId, _nodeX[nodeId], _nodeY[nodeId], x, y);
+		_nodeX[nodeId] = x;
+		_nodeY[nodeId] = y;
+	}
+
+	/* Redraw the layers completely on the next paint (after the nodes were moved) */
+	public void invalidateLayers() {
+		_layersModCount = -1;
+		repaint();
+	}
+
+	/* Show the world from the given top left corner, with the given zoom (screen pixels per world unit) */
+	public void setView(double viewX, double viewY, double zoom) {
+		_viewX = viewX;
+		_viewY = viewY;
+		_zoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom));
+		invalidateLayers();
+	}
+
+	/* Returns the id of the node under the point of the panel, or -1 if there is none */
+	public int getNodeAt(int screenX, int screenY) {
+		int nodeId = _grid.findNearest((int) Math.round(_viewX + screenX / _zoom), (int) Math.round(_viewY + screenY / _zoom), NODE_RADIUS);
+		return _graph.isNode(nodeId) ? nodeId : -1;
+	}
+
+	private Rectangle worldToScreen(Rectangle world) {
+		int x1 = (int) Math.floor((world.x - _viewX) * _zoom);
+		int y1 = (int) Math.floor((world.y - _viewY) * _zoom);
+		int x2 = (int) Math.ceil((world.x + world.width - _viewX) * _zoom);
+		int y2 = (int) Math.ceil((world.y + world.height - _viewY) * _zoom);
+		return new Rectangle(x1, y1, x2 - x1 + 1, y2 - y1 + 1);
+	}
+
+	private Rectangle screenToWorld(Rectangle screen) {
+		int x1 = (int) Math.floor(_viewX + screen.x / _zoom);
+		int y1 = (int) Math.floor(_viewY + screen.y / _zoom);
+		int x2 = (int) Math.ceil(_viewX + (screen.x + screen.width) / _zoom);
+		int y2 = (int) Math.ceil(_viewY + (screen.y + screen.height) / _zoom);
+		return new Rectangle(x1, y1, x2 - x1 + 1, y2 - y1 + 1);
+	}
+
 	@Override
 	protected void paintComponent(Graphics g) {
 		super.paintComponent(g);
-		paintEdges(g);
-		paintNodes(g);
+		int width = Math.max(1, getWidth());
+		int height = Math.max(1, getHeight());
+		if (_edgeLayer == null || _edgeLayer.getWidth() != width || _edgeLayer.getHeight() != height) {
+			_edgeLayer = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+			_nodeLayer = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+			_layersModCount = -1;
+		}
+		if (_layersModCount != _graph.getModCount()) {
+			drawLayers(new Rectangle(0, 0, width, height));
+		}
+		g.drawImage(_edgeLayer, 0, 0, null);
+		g.drawImage(_nodeLayer, 0, 0, null);
 	}
 
-	/* Paint all the graph edges */
-	private void paintEdges(Graphics g) {
-		char[] nodeNames = _graph.getNodes();
-	
-		try {
-			for (int pos1=0; pos1<nodeNames.length; ++pos1) {
-				char nodeName1 = nodeNames[pos1];
-				for (int pos2=pos1; pos2<nodeNames.length; ++pos2) {
-					char nodeName2 = nodeNames[pos2];
-					if (_graph.hasEdge(nodeNames[pos1], nodeNames[pos2])) {
-						paintEdge(g, _nodePositions[GraphDS.charToNodeId(nodeName1)], _nodePositions[GraphDS.charToNodeId(nodeName2)]);
+	/* Redraw the part of the layers inside the region of the panel (the rest of the layers is kept).
+	 * Only the edges and nodes that cross the region are drawn */
+	private void drawLayers(Rectangle region) {
+		_layersModCount = _graph.getModCount();
+		if (_edgeLayer == null)
+			return;   // not painted yet
+		Rectangle worldRegion = screenToWorld(region);
+		if (_showComponents && _componentsModCount != _graph.getModCount()) {
+			_componentIds = _graph.getComponentIds();
+			_componentsModCount = _graph.getModCount();
+		}
+		Graphics2D edges = prepareLayer(_edgeLayer, region);
+		Graphics2D nodes = prepareLayer(_nodeLayer, region);
+		nodes.setFont(NODE_FONT);
+		paintEdges(edges, worldRegion);
+		paintNodes(nodes, worldRegion);
+		edges.dispose();
+		nodes.dispose();
+	}
+
+	/* Clear the region of the layer, and return a graphics that draws only inside it, in world coordinates */
+	private Graphics2D prepareLayer(BufferedImage layer, Rectangle region) {
+		Graphics2D g2 = layer.createGraphics();
+		g2.setComposite(AlphaComposite.Clear);
+		g2.fill(region);
+		g2.setComposite(AlphaComposite.SrcOver);
+		g2.setClip(region);
+		g2.scale(_zoom, _zoom);
+		g2.translate(-_viewX, -_viewY);
+		return g2;
+	}
+
+	/* Paint all the graph edges that cross the region (every edge once, by walking the neighbours of every node).
+	 * An edge may cross the region with both its nodes outside it, so all the edges are checked,
+	 * but only by their bounding boxes */
+	private void paintEdges(Graphics2D g2, Rectangle region) {
+		g2.setColor(Color.BLUE);
+		g2.setStroke(EDGE_STROKE);
+		int minX = region.x - EDGE_WIDTH, maxX = region.x + region.width + EDGE_WIDTH;
+		int minY = region.y - EDGE_WIDTH, maxY = region.y + region.height + EDGE_WIDTH;
+		for (PrimitiveIterator.OfInt nodes = _graph.nodeIds(); nodes.hasNext(); ) {
+			int nodeId1 = nodes.nextInt();
+			int x1 = _nodeX[nodeId1], y1 = _nodeY[nodeId1];
+			try {
+				for (PrimitiveIterator.OfInt neighbors = _graph.neighbors(nodeId1); neighbors.hasNext(); ) {
+					int nodeId2 = neighbors.nextInt();
+					if (nodeId2 < nodeId1)
+						continue;
+					int x2 = nodeId2 == nodeId1 ? x1 + NODE_RADIUS*2 : _nodeX[nodeId2];
+					int y2 = nodeId2 == nodeId1 ? y1 + NODE_RADIUS*2 : _nodeY[nodeId2];
+					if (Math.max(x1, x2) >= minX && Math.min(x1, x2) <= maxX && Math.max(y1, y2) >= minY && Math.min(y1, y2) <= maxY) {
+						paintEdge(g2, x1, y1, _nodeX[nodeId2], _nodeY[nodeId2]);
 					}
 				}
+			} catch (GraphDS.GraphException e) {
+				// Should not happen
 			}
-		} catch (GraphDS.GraphException e) {
-			// Should not happen
 		}
 	}
 
 	/* Paint one graph edge between the two positions */
-	private void paintEdge(Graphics g, int[] position1, int[] position2) {
-		Graphics2D g2 = (Graphics2D)g;
-		g.setColor(Color.BLUE);
-		g2.setStroke(new BasicStroke(5));
-		if (position1[0] == position2[0] && position1[1] == position2[1]){ // draw an 'ovalic' edge from the node to itself
-			g2.drawOval(position1[0], position1[1], NODE_RADIUS*2, NODE_RADIUS*2);
+	private void paintEdge(Graphics2D g2, int x1, int y1, int x2, int y2) {
+		if (x1 == x2 && y1 == y2){ // draw an 'ovalic' edge from the node to itself
+			g2.drawOval(x1, y1, NODE_RADIUS*2, NODE_RADIUS*2);
 		} else {
-			g2.drawLine(position1[0], position1[1], position2[0], position2[1]);
+			g2.drawLine(x1, y1, x2, y2);
 		}
 	}
-	
-	/* Paint all the graph nodes */
-	private void paintNodes(Graphics g) {
-		for (char nodeName : _graph.getNodes()) {
-			try {
-				if (_graph.hasNode(nodeName)) {
-					paintNode(g, nodeName, _nodePositions[GraphDS.charToNodeId(nodeName)]);
-				}
-			} catch (GraphDS.GraphException e) {
-				// Should not happen
+
+	/* Paint all the graph nodes inside the region (found in the grid) */
+	private void paintNodes(Graphics2D g2, Rectangle region) {
+		int margin = Math.max(NODE_RADIUS, _maxLabelWidth/2 + 1);
+		_grid.forEachInRect(region.x - margin, region.y - margin, region.x + region.width + margin, region.y + region.height + margin, nodeId -> {
+			if (_graph.isNode(nodeId) && getNodeBounds(nodeId).intersects(region)) {
+				paintNode(g2, nodeId);
 			}
+		});
+	}
+
+	/* Paint one graph node, with its label centered on it (if the zoom is large enough to read it) */
+	private void paintNode(Graphics2D g2, int nodeId) {
+		int x = _nodeX[nodeId];
+		int y = _nodeY[nodeId];
+		g2.setColor(_showComponents ? COMPONENT_COLORS[_componentIds[nodeId] % COMPONENT_COLORS.length] : Color.RED);
+		if (NODE_RADIUS*_zoom < 1) {
+			g2.fillRect(x-NODE_RADIUS, y-NODE_RADIUS, NODE_RADIUS*2, NODE_RADIUS*2);   // smaller than a pixel, so it is not round anyway
+			return;
+		}
+		g2.fillOval(x-NODE_RADIUS, y-NODE_RADIUS, NODE_RADIUS*2, NODE_RADIUS*2);
+		if (_zoom < MIN_LABEL_ZOOM)
+			return;
+		try {
+			String label = _graph.getLabel(nodeId);
+			if (_labelWidths[nodeId] == 0)
+				measureLabel(nodeId, label, g2.getFontMetrics());
+			g2.setColor(Color.BLACK);
+			g2.drawString(label, x - _labelWidths[nodeId]/2, (int)(y+FONT_SIZE/2.5));
+		} catch (GraphDS.GraphException e) {
+			// Should not happen
+		}
+	}
+
+	private void measureLabel(int nodeId, String label, FontMetrics metrics) {
+		_labelWidths[nodeId] = metrics.stringWidth(label);
+		_maxLabelWidth = Math.max(_maxLabelWidth, _labelWidths[nodeId]);
+	}
+
+	/* The region covered by a node in world coordinates (including its label, which may be wider than the node) */
+	private Rectangle getNodeBounds(int nodeId) {
+		int halfWidth = Math.max(NODE_RADIUS, _labelWidths[nodeId]/2 + 1);
+		return new Rectangle(_nodeX[nodeId] - halfWidth, _nodeY[nodeId] - NODE_RADIUS, halfWidth*2 + 1, NODE_RADIUS*2 + 1);
+	}
+
+	/* The region covered by an edge in world coordinates (with the width of its stroke) */
+	private Rectangle getEdgeBounds(int nodeId1, int nodeId2) {
+		int x1 = _nodeX[nodeId1], y1 = _nodeY[nodeId1], x2 = _nodeX[nodeId2], y2 = _nodeY[nodeId2];
+		if (nodeId1 == nodeId2) {
+			x2 = x1 + NODE_RADIUS*2;
+			y2 = y1 + NODE_RADIUS*2;
+		}
+		Rectangle bounds = new Rectangle(Math.min(x1, x2), Math.min(y1, y2), Math.abs(x2 - x1) + 1, Math.abs(y2 - y1) + 1);
+		bounds.grow(EDGE_WIDTH, EDGE_WIDTH);
+		return bounds;
+	}
+
+	/* The region covered by a node and all its edges in world coordinates */
+	private Rectangle getNodeAndEdgesBounds(int nodeId) throws GraphDS.GraphException {
+		Rectangle bounds = getNodeBounds(nodeId);
+		for (PrimitiveIterator.OfInt neighbors = _graph.neighbors(nodeId); neighbors.hasNext(); ) {
+			bounds.add(getEdgeBounds(nodeId, neighbors.nextInt()));
+		}
+		return bounds;
+	}
+
+	/* Redraw the layers in the region (in world coordinates) after the graph changed there, and repaint just the region.
+	 * If the graph was changed from outside before, it is all redrawn on the next paint. */
+	private void graphChanged(Rectangle worldRegion, long previousModCount) {
+		if (_layersModCount != previousModCount || (_showComponents && _graph.getModCount() != previousModCount)) {
+			// (a change of the graph may recolour whole components; moving a node does not)
+			_layersModCount = -1;
+			repaint();
+			return;
+		}
+		Rectangle region = worldToScreen(worldRegion).intersection(new Rectangle(0, 0, getWidth(), getHeight()));
+		if (region.isEmpty()) {
+			_layersModCount = _graph.getModCount();   // nothing to redraw in the view
+			return;
 		}
+		drawLayers(region);
+		repaint(region);
+	}
+
+	/* Add a node at the given position (in world coordinates), and repaint it */
+	public int addNode(String label, int x, int y) throws GraphDS.GraphException {
+		long modCount = _graph.getModCount();
+		int nodeId = _graph.addNode(label);
+		setNodePosition(nodeId, x, y);
+		measureLabel(nodeId, label, getFontMetrics(NODE_FONT));
+		graphChanged(getNodeBounds(nodeId), modCount);
+		return nodeId;
+	}
+
+	/* Move a node (to world coordinates), and repaint where it and its edges were and are */
+	public void moveNode(int nodeId, int x, int y) throws GraphDS.GraphException {
+		long modCount = _graph.getModCount();
+		Rectangle region = getNodeAndEdgesBounds(nodeId);
+		setNodePosition(nodeId, x, y);
+		region.add(getNodeAndEdgesBounds(nodeId));
+		graphChanged(region, modCount);
+	}
+
+	/* Add an edge between two nodes, and repaint it */
+	public void addEdge(String label1, String label2) throws GraphDS.GraphException {
+		long modCount = _graph.getModCount();
+		int nodeId1 = _graph.requireNodeId(label1);
+		int nodeId2 = _graph.requireNodeId(label2);
+		_graph.addEdge(nodeId1, nodeId2);
+		graphChanged(getEdgeBounds(nodeId1, nodeId2), modCount);
 	}
 
-	/* Paint one graph node */
-	private void paintNode(Graphics g, char nodeName, int[] position) {
-		g.setColor(Color.RED);
-		g.fillOval(position[0]-NODE_RADIUS, position[1]-NODE_RADIUS, NODE_RADIUS*2, NODE_RADIUS*2);
-		g.setColor(Color.BLACK);
-		g.setFont(NODE_FONT);
-		g.drawString(""+nodeName, (int)(position[0]-FONT_SIZE/3.5), (int)(position[1]+FONT_SIZE/2.5));
+	/* Delete an edge, and repaint where it was */
+	public void deleteEdge(String label1, String label2) throws GraphDS.GraphException {
+		long modCount = _graph.getModCount();
+		int nodeId1 = _graph.requireNodeId(label1);
+		int nodeId2 = _graph.requireNodeId(label2);
+		_graph.deleteEdge(nodeId1, nodeId2);
+		graphChanged(getEdgeBounds(nodeId1, nodeId2), modCount);
+	}
+
+	/* Delete a node with its edges, and repaint where they were */
+	public void deleteNode(String label) throws GraphDS.GraphException {
+		long modCount = _graph.getModCount();
+		int nodeId = _graph.requireNodeId(label);
+		Rectangle region = getNodeAndEdgesBounds(nodeId);
+		_graph.deleteNode(nodeId);
+		_grid.remove(nodeId, _nodeX[nodeId], _nodeY[nodeId]);
+		graphChanged(region, modCount);
+	}
+
+	/* Colour the nodes by their connected component (or all in the same colour) */
+	public void setShowComponents(boolean showComponents) {
+		_showComponents = showComponents;
+		_componentsModCount = -1;
+		invalidateLayers();
+	}
+
+	public boolean isShowingComponents() {
+		return _showComponents;
+	}
+
+	/* Start laying out the graph automatically in the background (stops when it settles, or the graph changes) */
+	public void startLayout() {
+		stopLayout();
+		LayoutListener listener = new LayoutListener();
+		_layout = new ForceLayout(_graph, _nodeX, _nodeY, IDEAL_EDGE_LENGTH, listener);
+		listener._layout = _layout;
+		_layoutModCount = _graph.getModCount();
+		_layout.start();
+		firePropertyChange(LAYOUT_RUNNING_PROPERTY, false, true);
+	}
+
+	/* Stop the automatic layout, if it runs */
+	public void stopLayout() {
+		if (_layout == null)
+			return;
+		_layout.stop();
+		_layout = null;
+		firePropertyChange(LAYOUT_RUNNING_PROPERTY, true, false);
+	}
+
+	public boolean isLayoutRunning() {
+		return _layout != null;
+	}
+
+	/* Gets the positions from the layout, on the event thread */
+	private class LayoutListener implements ForceLayout.Listener {
+		private ForceLayout _layout;
+
+		@Override
+		public void positionsChanged(int[] nodeIds, int[] xs, int[] ys) {
+			if (_layout != GraphPanel.this._layout)
+				return;   // stopped already
+			if (_graph.getModCount() != _layoutModCount) {
+				stopLayout();   // the layout has an old copy of the graph
+				return;
+			}
+			for (int i = 0; i < nodeIds.length; i++) {
+				setNodePosition(nodeIds[i], xs[i], ys[i]);
+			}
+			invalidateLayers();
+		}
+
+		@Override
+		public void layoutFinished() {
+			if (_layout == GraphPanel.this._layout)
+				stopLayout();
+		}
 	}
 
 	/* Clear the graph (use a new Graph instance) */
 	public void clearGraph() {
-		_graph = new GraphDS();
-		repaint();
+		stopLayout();
+		_graph = new LargeGraphDS();
+		_nodeX = new int[0];
+		_nodeY = new int[0];
+		_labelWidths = new int[0];
+		_maxLabelWidth = 0;
+		_grid.clear();
+		invalidateLayers();
+	}
+
+	/* Show another graph (use the given instance), with the positions of its nodes by node id.
+	 * If there are no positions (null), the nodes are placed on a square grid.
+	 * The view is moved and zoomed to show the whole graph */
+	public void setGraph(LargeGraphDS graph, int[] xs, int[] ys) {
+		clearGraph();
+		_graph = graph;
+		_componentsModCount = -1;   // the modCounts of the new graph are not comparable to the old one
+		int columns = (int) Math.ceil(Math.sqrt(graph.getNumNodes()));
+		int index = 0;
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+		for (PrimitiveIterator.OfInt nodes = graph.nodeIds(); nodes.hasNext(); index++) {
+			int nodeId = nodes.nextInt();
+			int x = xs != null ? xs[nodeId] : NODE_RADIUS*2 + (index % columns) * (int) IDEAL_EDGE_LENGTH;
+			int y = ys != null ? ys[nodeId] : NODE_RADIUS*2 + (index / columns) * (int) IDEAL_EDGE_LENGTH;
+			setNodePosition(nodeId, x, y);
+			minX = Math.min(minX, x);
+			minY = Math.min(minY, y);
+			maxX = Math.max(maxX, x);
+			maxY = Math.max(maxY, y);
+		}
+		if (index == 0) {
+			setView(0, 0, 1);
+			return;
+		}
+		double width = maxX - minX + NODE_RADIUS*4, height = maxY - minY + NODE_RADIUS*4;
+		double zoom = Math.min(1, Math.min(Math.max(1, getWidth()) / width, Math.max(1, getHeight()) / height));
+		setView(minX - NODE_RADIUS*2, minY - NODE_RADIUS*2, zoom);
+	}
+
+	/* Returns a copy of the x coordinates of the nodes, by node id */
+	public int[] getNodeXs() {
+		return Arrays.copyOf(_nodeX, _graph.getNodeIdBound());
 	}
 
-	/* Listener for mouse click:
-	 * ask user for new node name and create it in mouse click position */
-    private class Listener implements MouseListener
+	/* Returns a copy of the y coordinates of the nodes, by node id */
+	public int[] getNodeYs() {
+		return Arrays.copyOf(_nodeY, _graph.getNodeIdBound());
+	}
+
+	/* Listener for the mouse:
+	 * - click on the background: ask user for new node name and create it in mouse click position
+	 * - drag a node: move it
+	 * - drag the background: pan the view
+	 * - wheel: zoom the view around the mouse */
+    private class Listener implements MouseListener, MouseMotionListener, MouseWheelListener
     {
+		private int _draggedNode = -1;
+		private Point _lastDrag = null;   // the last mouse position while dragging (null == not dragging)
+
 		@Override
 		public void mouseClicked(MouseEvent e) {
-			int x = e.getX();
-			int y = e.getY();
+			if (getNodeAt(e.getX(), e.getY()) >= 0) {
+				return;   // do not put a node on another
+			}
+			int x = (int) Math.round(_viewX + e.getX() / _zoom);
+			int y = (int) Math.round(_viewY + e.getY() / _zoom);
 			try {
-				String newName = JOptionPane.showInputDialog(null, "Enter new node name (one character)", "Input", JOptionPane.QUESTION_MESSAGE);
+				String newName = JOptionPane.showInputDialog(null, "Enter new node name", "Input", JOptionPane.QUESTION_MESSAGE);
 				if(!GraphFrame.isValidNodeName(newName)){
 					return;
 				}
-				char nodeName = newName.toUpperCase().charAt(0);
+				String nodeName = newName.trim();
 				if (_graph.hasNode(nodeName)) {
 					JOptionPane.showMessageDialog(null, "Node already exists in the graph", "Error", JOptionPane.ERROR_MESSAGE);
 					return;
 				}
-				_graph.addNode(nodeName);
-				int nodeId = GraphDS.charToNodeId(nodeName);
-				_nodePositions[nodeId][0] = x;
-				_nodePositions[nodeId][1] = y;
+				addNode(nodeName, x, y);
 			} catch (GraphDS.GraphException e1) {
 				// Should not happen
 			}
-			repaint();
 		}
 
 		@Override
-		public void mouseEntered(MouseEvent arg0) {
+		public void mousePressed(MouseEvent e) {
+			_draggedNode = getNodeAt(e.getX(), e.getY());
+			_lastDrag = e.getPoint();
+			if (_draggedNode >= 0)
+				stopLayout();   // the user places the node
 		}
 
 		@Override
-		public void mouseExited(MouseEvent arg0) {
+		public void mouseDragged(MouseEvent e) {
+			if (_lastDrag == null)
+				return;
+			if (_draggedNode >= 0 && _graph.isNode(_draggedNode)) {
+				try {
+					moveNode(_draggedNode, (int) Math.round(_viewX + e.getX() / _zoom), (int) Math.round(_viewY + e.getY() / _zoom));
+				} catch (GraphDS.GraphException e1) {
+					// Should not happen (the dragged node exists)
+				}
+			} else {
+				setView(_viewX - (e.getX() - _lastDrag.x) / _zoom, _viewY - (e.getY() - _lastDrag.y) / _zoom, _zoom);
+			}
+			_lastDrag = e.getPoint();
+		}
+
+		@Override
+		public void mouseReleased(MouseEvent e) {
+			_draggedNode = -1;
+			_lastDrag = null;
+		}
+
+		@Override
+		public void mouseWheelMoved(MouseWheelEvent e) {
+			double zoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, _zoom * Math.pow(1.1, -e.getPreciseWheelRotation())));
+			// keep the world point under the mouse in place
+			double worldX = _viewX + e.getX() / _zoom;
+			double worldY = _viewY + e.getY() / _zoom;
+			setView(worldX - e.getX() / zoom, worldY - e.getY() / zoom, zoom);
 		}
 
 		@Override
-		public void mousePressed(MouseEvent arg0) {
+		public void mouseMoved(MouseEvent e) {
 		}
 
 		@Override
-		public void mouseReleased(MouseEvent arg0) {
+		public void mouseEntered(MouseEvent arg0) {
+		}
+
+		@Override
+		public void mouseExited(MouseEvent arg0) {
 		}
     }
 
-	public GraphDS getGraph() {
+	public LargeGraphDS getGraph() {
 		return _graph;
 	}
-	
+
 }
@@ -0,0 +1,580 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/* Class for representing a large undirected graph, that grows as nodes are added.
+ * Every node has an integer id (the ids of deleted nodes are reused) and a unique string label.
+ * The neighbours of a node are kept in a sorted int vector, or in a bitset over all the node ids
+ * once the node is connected to a large part of the graph (1/32 of the ids or more),
+ * whichever is smaller - so the memory stays proportional to the number of nodes and edges.
+ * A node may have an edge to itself, as in GraphDS.
+ * The exceptions thrown are defined at the end, and extend GraphDS.GraphException.
+ */
+public class LargeGraphDS {
+
+	private static final int INITIAL_CAPACITY = 16;
+	private static final int MIN_BITSET_DEGREE = 64;   // nodes with fewer neighbours always use a sorted vector
+
+	private int _idBound = 0;                  // all the ids ever used are below this bound
+	private int _numNodes = 0;
+	private long _numEdges = 0;
+	private long _modCount = 0;                // incremented on every change of the graph
+	private String[] _labels = new String[INITIAL_CAPACITY];   // null == no such node
+	private HashMap<String, Integer> _idsByLabel = new HashMap<>();
+	private int[] _freeIds = new int[0];       // stack of the ids of deleted nodes, to be reused
+	private int _numFreeIds = 0;
+
+	private int[] _degrees = new int[INITIAL_CAPACITY];
+	private int[][] _sortedNeighbors = new int[INITIAL_CAPACITY][];   // the neighbours of sparse nodes (first _degrees[id] entries)
+	private long[][] _neighborBits = new long[INITIAL_CAPACITY][];    // the neighbours of dense nodes (null for sparse nodes)
+
+	private static final int[] NO_NEIGHBORS = new int[0];
+
+	public LargeGraphDS() {
+	}
+
+	/* Returns the number of nodes in the graph */
+	public int getNumNodes() {
+		return _numNodes;
+	}
+
+	/* Returns the number of edges in the graph */
+	public long getNumEdges() {
+		return _numEdges;
+	}
+
+	/* Returns a counter that changes whenever a node or an edge is added or deleted
+	 * (for caches of the graph, to know they are out of date) */
+	public long getModCount() {
+		return _modCount;
+	}
+
+	/* Returns a bound on the node ids: all the ids in the graph are in [0, bound)
+	 * (for sizing vectors indexed by node id) */
+	public int getNodeIdBound() {
+		return _idBound;
+	}
+
+	/* Returns true iff the id belongs to a node in the graph */
+	public boolean isNode(int nodeId) {
+		return nodeId >= 0 && nodeId < _idBound && _labels[nodeId] != null;
+	}
+
+	/* Returns true iff the graph has a node with the label */
+	public boolean hasNode(String label) {
+		return label != null && _idsByLabel.containsKey(label);
+	}
+
+	/* Returns the id of the node with the label, or -1 if there is none */
+	public int getNodeId(String label) {
+		Integer nodeId = label == null ? null : _idsByLabel.get(label);
+		return nodeId == null ? -1 : nodeId;
+	}
+
+	/* Returns the id of the node with the label (exception if there is none) */
+	public int requireNodeId(String label) throws NodeDoesNotExistException {
+		int nodeId = getNodeId(label);
+		if (nodeId < 0) {
+			throw new NodeDoesNotExistException(label);
+		}
+		return nodeId;
+	}
+
+	/* Returns the label of the node (exception if there is no such node) */
+	public String getLabel(int nodeId) throws NodeDoesNotExistException {
+		checkNode(nodeId);
+		return _labels[nodeId];
+	}
+
+	/* Returns an iterator over the ids of the nodes in the graph, in increasing order */
+	public PrimitiveIterator.OfInt nodeIds() {
+		return new PrimitiveIterator.OfInt() {
+			private int _next = advance(0);
+
+			private int advance(int from) {
+				while (from < _idBound && _labels[from] == null)
+					from++;
+				return from;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return _next < _idBound;
+			}
+
+			@Override
+			public int nextInt() {
+				if (_next >= _idBound)
+					throw new NoSuchElementException();
+				int nodeId = _next;
+				_next = advance(_next + 1);
+				return nodeId;
+			}
+		};
+	}
+
+	/* Adds a new node with the given label (exception if the label is illegal or already exists).
+	 * Returns the id of the new node */
+	public int addNode(String label) throws IllegalNodeLabelException, NodeAlreadyExistsException {
+		if (!isValidLabel(label)) {
+			throw new IllegalNodeLabelException(label);
+		}
+		if (_idsByLabel.containsKey(label)) {
+			throw new NodeAlreadyExistsException(label);
+		}
+		int nodeId;
+		if (_numFreeIds > 0) {
+			nodeId = _freeIds[--_numFreeIds];
+		} else {
+			nodeId = _idBound++;
+			ensureCapacity(_idBound);
+		}
+		_labels[nodeId] = label;
+		_idsByLabel.put(label, nodeId);
+		_degrees[nodeId] = 0;
+		_sortedNeighbors[nodeId] = NO_NEIGHBORS;
+		_neighborBits[nodeId] = null;
+		_numNodes++;
+		_modCount++;
+		return nodeId;
+	}
+
+	/* A legal label is not empty, has no surrounding spaces and no commas (which separate the nodes of an edge) */
+	public static boolean isValidLabel(String label) {
+		return label != null && !label.isEmpty() && label.trim().equals(label) && label.indexOf(',') < 0;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity <= _labels.length)
+			return;
+		int newCapacity = Math.max(capacity, _labels.length * 2);
+		_labels = Arrays.copyOf(_labels, newCapacity);
+		_degrees = Arrays.copyOf(_degrees, newCapacity);
+		_sortedNeighbors = Arrays.copyOf(_sortedNeighbors, newCapacity);
+		_neighborBits = Arrays.copyOf(_neighborBits, newCapacity);
+	}
+
+	/* Deletes a node from the graph (exception if does not exist),
+	 * as well as all the edges in which it participates */
+	public void deleteNode(int nodeId) throws NodeDoesNotExistException {
+		checkNode(nodeId);
+		for (int neighbor : neighborIds(nodeId)) {
+			if (neighbor != nodeId)
+				removeNeighbor(neighbor, nodeId);
+			_numEdges--;
+		}
+		_idsByLabel.remove(_labels[nodeId]);
+		_labels[nodeId] = null;
+		_degrees[nodeId] = 0;
+		_sortedNeighbors[nodeId] = null;
+		_neighborBits[nodeId] = null;
+		if (_numFreeIds == _freeIds.length)
+			_freeIds = Arrays.copyOf(_freeIds, Math.max(INITIAL_CAPACITY, _freeIds.length * 2));
+		_freeIds[_numFreeIds++] = nodeId;
+		_numNodes--;
+		_modCount++;
+	}
+
+	public void deleteNode(String label) throws NodeDoesNotExistException {
+		deleteNode(requireNodeId(label));
+	}
+
+	/* Returns true iff the graph has an edge between the two nodes */
+	public boolean hasEdge(int nodeId1, int nodeId2) {
+		if (!isNode(nodeId1) || !isNode(nodeId2))
+			return false;
+		long[] bits = _neighborBits[nodeId1];
+		if (bits != null)
+			return (nodeId2 >> 6) < bits.length && (bits[nodeId2 >> 6] & (1L << nodeId2)) != 0;
+		return Arrays.binarySearch(_sortedNeighbors[nodeId1], 0, _degrees[nodeId1], nodeId2) >= 0;
+	}
+
+	public boolean hasEdge(String label1, String label2) {
+		return hasEdge(getNodeId(label1), getNodeId(label2));
+	}
+
+	/* Add edge to graph (exception if already exists,
+	 * or if one of the nodes does not exist) */
+	public void addEdge(int nodeId1, int nodeId2) throws NodeDoesNotExistException, EdgeAlreadyExistsException {
+		checkNode(nodeId1);
+		checkNode(nodeId2);
+		if (hasEdge(nodeId1, nodeId2)) {
+			throw new EdgeAlreadyExistsException(_labels[nodeId1], _labels[nodeId2]);
+		}
+		addNeighbor(nodeId1, nodeId2);
+		if (nodeId1 != nodeId2)
+			addNeighbor(nodeId2, nodeId1);
+		_numEdges++;
+		_modCount++;
+	}
+
+	public void addEdge(String label1, String label2) throws NodeDoesNotExistException, EdgeAlreadyExistsException {
+		addEdge(requireNodeId(label1), requireNodeId(label2));
+	}
+
+	/* Delete edge from graph (exception if does not exist) */
+	public void deleteEdge(int nodeId1, int nodeId2) throws NodeDoesNotExistException, EdgeDoesNotExistException {
+		checkNode(nodeId1);
+		checkNode(nodeId2);
+		if (!hasEdge(nodeId1, nodeId2)) {
+			throw new EdgeDoesNotExistException(_labels[nodeId1], _labels[nodeId2]);
+		}
+		removeNeighbor(nodeId1, nodeId2);
+		if (nodeId1 != nodeId2)
+			removeNeighbor(nodeId2, nodeId1);
+		_numEdges--;
+		_modCount++;
+	}
+
+	public void deleteEdge(String label1, String label2) throws NodeDoesNotExistException, EdgeDoesNotExistException {
+		deleteEdge(requireNodeId(label1), requireNodeId(label2));
+	}
+
+	/* Returns the number of neighbours of the node (a node with an edge to itself is its own neighbour) */
+	public int degree(int nodeId) throws NodeDoesNotExistException {
+		checkNode(nodeId);
+		return _degrees[nodeId];
+	}
+
+	/* Returns an iterator over the ids of the neighbours of the node, in increasing order */
+	public PrimitiveIterator.OfInt neighbors(int nodeId) throws NodeDoesNotExistException {
+		checkNode(nodeId);
+		long[] bits = _neighborBits[nodeId];
+		if (bits != null)
+			return new BitsIterator(bits);
+		return new SortedIterator(_sortedNeighbors[nodeId], _degrees[nodeId]);
+	}
+
+	/* Returns the ids of the neighbours of the node, in increasing order (a new vector) */
+	public int[] neighborIds(int nodeId) throws NodeDoesNotExistException {
+		checkNode(nodeId);
+		long[] bits = _neighborBits[nodeId];
+		if (bits == null)
+			return Arrays.copyOf(_sortedNeighbors[nodeId], _degrees[nodeId]);
+		int[] answer = new int[_degrees[nodeId]];
+		int j = 0;
+		for (BitsIterator it = new BitsIterator(bits); it.hasNext(); )
+			answer[j++] = it.nextInt();
+		return answer;
+	}
+
+	/* Returns the neighbours of the node as a bitset over the node ids (bit j of word j/64 is set iff edge (id,j) exists).
+	 * The result is a new vector of (getNodeIdBound()+63)/64 words */
+	public long[] neighborBits(int nodeId) throws NodeDoesNotExistException {
+		checkNode(nodeId);
+		long[] answer = new long[(_idBound + 63) >>> 6];
+		long[] bits = _neighborBits[nodeId];
+		if (bits != null) {
+			System.arraycopy(bits, 0, answer, 0, Math.min(bits.length, answer.length));
+		} else {
+			int[] neighbors = _sortedNeighbors[nodeId];
+			for (int i = 0; i < _degrees[nodeId]; i++)
+				answer[neighbors[i] >>> 6] |= 1L << neighbors[i];
+		}
+		return answer;
+	}
+
+	/* Returns true iff the neighbours of the node are kept in a bitset (for testing the representation) */
+	boolean isDense(int nodeId) {
+		return _neighborBits[nodeId] != null;
+	}
+
+	private void checkNode(int nodeId) throws NodeDoesNotExistException {
+		if (!isNode(nodeId)) {
+			throw new NodeDoesNotExistException(nodeId);
+		}
+	}
+
+	/* add neighbour to the set of node (the edge must not exist), switching it to a bitset if it became dense
+	 * (or back to a sorted vector, if the ids grew past it and its bitset would have to grow) */
+	private void addNeighbor(int nodeId, int neighbor) {
+		int degree = _degrees[nodeId]++;
+		long[] bits = _neighborBits[nodeId];
+		if (bits != null && (neighbor >> 6) >= bits.length && (long) degree * 64 < _idBound) {
+			toSorted(nodeId);
+			bits = null;
+		}
+		if (bits != null) {
+			if ((neighbor >> 6) >= bits.length)
+				bits = _neighborBits[nodeId] = Arrays.copyOf(bits, Math.max((neighbor >> 6) + 1, bits.length * 2));
+			bits[neighbor >> 6] |= 1L << neighbor;
+			return;
+		}
+		int[] neighbors = _sortedNeighbors[nodeId];
+		int pos = -Arrays.binarySearch(neighbors, 0, degree, neighbor) - 1;
+		if (degree == neighbors.length)
+			neighbors = _sortedNeighbors[nodeId] = Arrays.copyOf(neighbors, Math.max(4, degree * 2));
+		System.arraycopy(neighbors, pos, neighbors, pos + 1, degree - pos);
+		neighbors[pos] = neighbor;
+		if (degree + 1 >= MIN_BITSET_DEGREE && (long) (degree + 1) * 32 >= _idBound)
+			toBits(nodeId);
+	}
+
+	/* remove neighbour from the set of node (the edge must exist), switching it back to a sorted vector if it became sparse */
+	private void removeNeighbor(int nodeId, int neighbor) {
+		int degree = --_degrees[nodeId];
+		long[] bits = _neighborBits[nodeId];
+		if (bits != null) {
+			bits[neighbor >> 6] &= ~(1L << neighbor);
+			if ((long) degree * 64 < _idBound || degree < MIN_BITSET_DEGREE / 2)
+				toSorted(nodeId);
+			return;
+		}
+		int[] neighbors = _sortedNeighbors[nodeId];
+		int pos = Arrays.binarySearch(neighbors, 0, degree + 1, neighbor);
+		System.arraycopy(neighbors, pos + 1, neighbors, pos, degree - pos);
+		if (degree < neighbors.length / 4)
+			_sortedNeighbors[nodeId] = Arrays.copyOf(neighbors, Math.max(4, degree * 2));
+	}
+
+	private void toBits(int nodeId) {
+		long[] bits = new long[(_idBound + 63) >>> 6];
+		int[] neighbors = _sortedNeighbors[nodeId];
+		for (int i = 0; i < _degrees[nodeId]; i++)
+			bits[neighbors[i] >>> 6] |= 1L << neighbors[i];
+		_neighborBits[nodeId] = bits;
+		_sortedNeighbors[nodeId] = null;
+	}
+
+	private void toSorted(int nodeId) {
+		int[] neighbors = new int[Math.max(4, _degrees[nodeId])];
+		int j = 0;
+		for (BitsIterator it = new BitsIterator(_neighborBits[nodeId]); it.hasNext(); )
+			neighbors[j++] = it.nextInt();
+		_sortedNeighbors[nodeId] = neighbors;
+		_neighborBits[nodeId] = null;
+	}
+
+	/* Returns the number of the connected component of every node, by node id (the components are numbered
+	 * from 0, in the order of their lowest node id), with -1 for the ids that are not nodes */
+	public int[] getComponentIds() {
+		int[] components = new int[_idBound];
+		Arrays.fill(components, -1);
+		long[] reached = new long[(_idBound + 63) >>> 6];
+		int[] queue = new int[_idBound];
+		int numComponents = 0;
+		for (PrimitiveIterator.OfInt it = nodeIds(); it.hasNext(); ) {
+			int nodeId = it.nextInt();
+			if ((reached[nodeId >>> 6] & (1L << nodeId)) == 0)
+				bfs(nodeId, reached, queue, null, components, numComponents++);
+		}
+		return components;
+	}
+
+	/* Returns the BFS distance (number of edges) of every node from the source node, by node id,
+	 * with -1 for the nodes that are not reachable from it and the ids that are not nodes.
+	 * Exception if the source node does not exist */
+	public int[] getDistances(int source) throws NodeDoesNotExistException {
+		checkNode(source);
+		int[] distances = new int[_idBound];
+		Arrays.fill(distances, -1);
+		bfs(source, new long[(_idBound + 63) >>> 6], new int[_idBound], distances, null, 0);
+		return distances;
+	}
+
+	/* Returns true iff the nodes can be split into two sides with no edge inside a side
+	 * (the sides are the even and odd BFS levels of every component) */
+	public boolean isBipartite() {
+		int[] levels = new int[_idBound];
+		long[] reached = new long[(_idBound + 63) >>> 6];
+		int[] queue = new int[_idBound];
+		for (PrimitiveIterator.OfInt it = nodeIds(); it.hasNext(); ) {
+			int nodeId = it.nextInt();
+			if ((reached[nodeId >>> 6] & (1L << nodeId)) == 0)
+				bfs(nodeId, reached, queue, levels, null, 0);
+		}
+		long[] odd = new long[reached.length];   // the nodes in odd levels
+		for (PrimitiveIterator.OfInt it = nodeIds(); it.hasNext(); ) {
+			int nodeId = it.nextInt();
+			if ((levels[nodeId] & 1) != 0)
+				odd[nodeId >>> 6] |= 1L << nodeId;
+		}
+		for (PrimitiveIterator.OfInt it = nodeIds(); it.hasNext(); ) {
+			int nodeId = it.nextInt();
+			int parity = levels[nodeId] & 1;
+			long[] bits = _neighborBits[nodeId];
+			if (bits != null) {
+				// no neighbour in the same side, a word of the side at a time
+				for (int w = 0; w < Math.min(bits.length, odd.length); w++) {
+					if ((bits[w] & (parity != 0 ? odd[w] : ~odd[w])) != 0)
+						return false;
+				}
+			} else {
+				int[] neighbors = _sortedNeighbors[nodeId];
+				for (int i = 0; i < _degrees[nodeId]; i++) {
+					if ((levels[neighbors[i]] & 1) == parity)
+						return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Breadth-first search from the source over the nodes that are not reached yet, a level at a time.
+	 * The reached bitset is updated with the nodes found. The neighbours of a dense node are filtered
+	 * against it a word at a time (64 nodes with one AND), and only the new ones are queued.
+	 * @param queue - a vector of getNodeIdBound() entries to use as the queue
+	 * @param levels - gets the distance of every node reached from the source (may be null)
+	 * @param components - gets the label for every node reached (may be null)
+	 * Returns the number of nodes reached
+	 */
+	private int bfs(int source, long[] reached, int[] queue, int[] levels, int[] components, int label) {
+		reached[source >>> 6] |= 1L << source;
+		queue[0] = source;
+		int head = 0, tail = 1;
+		for (int level = 0; head < tail; level++) {
+			int levelEnd = tail;
+			for (; head < levelEnd; head++) {
+				int nodeId = queue[head];
+				if (levels != null)
+					levels[nodeId] = level;
+				if (components != null)
+					components[nodeId] = label;
+				long[] bits = _neighborBits[nodeId];
+				if (bits != null) {
+					for (int w = 0; w < Math.min(bits.length, reached.length); w++) {
+						long found = bits[w] & ~reached[w];
+						reached[w] |= found;
+						for (; found != 0; found &= found - 1)
+							queue[tail++] = (w << 6) + Long.numberOfTrailingZeros(found);
+					}
+				} else {
+					int[] neighbors = _sortedNeighbors[nodeId];
+					for (int i = 0; i < _degrees[nodeId]; i++) {
+						int neighbor = neighbors[i];
+						if ((reached[neighbor >>> 6] & (1L << neighbor)) == 0) {
+							reached[neighbor >>> 6] |= 1L << neighbor;
+							queue[tail++] = neighbor;
+						}
+					}
+				}
+			}
+		}
+		return tail;
+	}
+
+	/* Returns a string representation of the graph in the same form as GraphDS:
+	 * "Graph<{label1,label2,...} {(label1,label2),(label3,label4),...}>"
+	 */
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder("Graph<{");
+		for (PrimitiveIterator.OfInt it = nodeIds(); it.hasNext(); ) {
+			result.append(_labels[it.nextInt()]);
+			if (it.hasNext())
+				result.append(',');
+		}
+		result.append("} {");
+		boolean first = true;
+		for (PrimitiveIterator.OfInt it = nodeIds(); it.hasNext(); ) {
+			int i = it.nextInt();
+			try {
+				for (PrimitiveIterator.OfInt neighbors = neighbors(i); neighbors.hasNext(); ) {
+					int j = neighbors.nextInt();
+					if (j < i)
+						continue;
+					if (!first)
+						result.append(',');
+					first = false;
+					result.append('(').append(_labels[i]).append(',').append(_labels[j]).append(')');
+				}
+			} catch (NodeDoesNotExistException e) {
+				// Should not happen
+			}
+		}
+		return result.append("}>").toString();
+	}
+
+	/* Iterates over the first size entries of a sorted vector of node ids */
+	private static class SortedIterator implements PrimitiveIterator.OfInt {
+		private final int[] _ids;
+		private final int _size;
+		private int _next = 0;
+
+		SortedIterator(int[] ids, int size) {
+			_ids = ids;
+			_size = size;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return _next < _size;
+		}
+
+		@Override
+		public int nextInt() {
+			if (_next >= _size)
+				throw new NoSuchElementException();
+			return _ids[_next++];
+		}
+	}
+
+	/* Iterates over the indices of the set bits of a bitset, in increasing order */
+	private static class BitsIterator implements PrimitiveIterator.OfInt {
+		private final long[] _bits;
+		private int _word = -1;
+		private long _remaining = 0;
+
+		BitsIterator(long[] bits) {
+			_bits = bits;
+			skipEmptyWords();
+		}
+
+		private void skipEmptyWords() {
+			while (_remaining == 0 && ++_word < _bits.length)
+				_remaining = _bits[_word];
+		}
+
+		@Override
+		public boolean hasNext() {
+			return _remaining != 0;
+		}
+
+		@Override
+		public int nextInt() {
+			if (_remaining == 0)
+				throw new NoSuchElementException();
+			int index = (_word << 6) + Long.numberOfTrailingZeros(_remaining);
+			_remaining &= _remaining - 1;
+			skipEmptyWords();
+			return index;
+		}
+	}
+
+	public static class IllegalNodeLabelException extends GraphDS.GraphException {
+		public IllegalNodeLabelException(String label) {
+			super("Illegal node label: \""+label+"\"");
+		}
+	}
+
+	public static class NodeAlreadyExistsException extends GraphDS.GraphException {
+		public NodeAlreadyExistsException(String label) {
+			super("Node "+label+" already in the graph");
+		}
+	}
+
+	public static class NodeDoesNotExistException extends GraphDS.GraphException {
+		public NodeDoesNotExistException(String label) {
+			super("Node "+label+" does not exist in the graph");
+		}
+
+		public NodeDoesNotExistException(int nodeId) {
+			super("Node id "+nodeId+" does not exist in the graph");
+		}
+	}
+
+	public static class EdgeAlreadyExistsException extends GraphDS.GraphException {
+		public EdgeAlreadyExistsException(String label1, String label2) {
+			super("Edge ("+label1+","+label2+") already exists in the graph");
+		}
+	}
+
+	public static class EdgeDoesNotExistException extends GraphDS.GraphException {
+		public EdgeDoesNotExistException(String label1, String label2) {
+			super("Edge ("+label1+","+label2+") does not exist in the graph");
+		}
+	}
+
+}
@@ -0,0 +1,141 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.function.IntConsumer;
+
+/* A spatial index over the positions of the nodes of a graph: a uniform grid of square cells,
+ * where every cell keeps the ids and positions of the nodes inside it.
+ * Only the cells that have nodes are allocated (in a hash map), so the positions may be anywhere.
+ * Finding the nodes in a rectangle or near a point looks only at the cells around it,
+ * so it takes time proportional to the nodes there rather than to the whole graph. */
+public class NodeGrid {
+
+	private final int _cellSize;
+	private HashMap<Long, Cell> _cells = new HashMap<>();
+	private int _numNodes = 0;
+
+	/* The nodes inside one cell (the first _size entries) */
+	private static class Cell {
+		int[] _ids = new int[4];
+		int[] _xs = new int[4];
+		int[] _ys = new int[4];
+		int _size = 0;
+	}
+
+	public NodeGrid(int cellSize) {
+		assert cellSize > 0;
+		_cellSize = cellSize;
+	}
+
+	/* Returns the number of nodes in the grid */
+	public int getNumNodes() {
+		return _numNodes;
+	}
+
+	private static long key(int cellX, int cellY) {
+		return ((long) cellX << 32) | (cellY & 0xFFFFFFFFL);
+	}
+
+	private int cellOf(int coordinate) {
+		return Math.floorDiv(coordinate, _cellSize);
+	}
+
+	/* Add a node at the given position */
+	public void add(int nodeId, int x, int y) {
+		Cell cell = _cells.computeIfAbsent(key(cellOf(x), cellOf(y)), k -> new Cell());
+		if (cell._size == cell._ids.length) {
+			cell._ids = Arrays.copyOf(cell._ids, cell._size * 2);
+			cell._xs = Arrays.copyOf(cell._xs, cell._size * 2);
+			cell._ys = Arrays.copyOf(cell._ys, cell._size * 2);
+		}
+		cell._ids[cell._size] = nodeId;
+		cell._xs[cell._size] = x;
+		cell._ys[cell._size] = y;
+		cell._size++;
+		_numNodes++;
+	}
+
+	/* Remove a node that was added at the given position.
+	 * Returns false if it is not there */
+	public boolean remove(int nodeId, int x, int y) {
+		long key = key(cellOf(x), cellOf(y));
+		Cell cell = _cells.get(key);
+		if (cell == null)
+			return false;
+		for (int i = 0; i < cell._size; i++) {
+			if (cell._ids[i] == nodeId) {
+				int last = --cell._size;
+				cell._ids[i] = cell._ids[last];
+				cell._xs[i] = cell._xs[last];
+				cell._ys[i] = cell._ys[last];
+				if (last == 0)
+					_cells.remove(key);
+				_numNodes--;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/* Move a node from the position it was added at to a new position (or add it, if it is not there) */
+	public void move(int nodeId, int oldX, int oldY, int x, int y) {
+		remove(nodeId, oldX, oldY);
+		add(nodeId, x, y);
+	}
+
+	/* Remove all the nodes */
+	public void clear() {
+		_cells.clear();
+		_numNodes = 0;
+	}
+
+	/* Call action with the id of every node whose position is in the rectangle [minX,maxX] x [minY,maxY] */
+	public void forEachInRect(int minX, int minY, int maxX, int maxY, IntConsumer action) {
+		int minCellX = cellOf(minX), maxCellX = cellOf(maxX);
+		int minCellY = cellOf(minY), maxCellY = cellOf(maxY);
+		if ((long) (maxCellX - minCellX + 1) * (maxCellY - minCellY + 1) > _cells.size()) {
+			// the rectangle covers more cells than there are, so look at the cells there are
+			for (Cell cell : _cells.values())
+				forEachInCell(cell, minX, minY, maxX, maxY, action);
+			return;
+		}
+		for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+			for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+				Cell cell = _cells.get(key(cellX, cellY));
+				if (cell != null)
+					forEachInCell(cell, minX, minY, maxX, maxY, action);
+			}
+		}
+	}
+
+	private static void forEachInCell(Cell cell, int minX, int minY, int maxX, int maxY, IntConsumer action) {
+		for (int i = 0; i < cell._size; i++) {
+			int x = cell._xs[i], y = cell._ys[i];
+			if (x >= minX && x <= maxX && y >= minY && y <= maxY)
+				action.accept(cell._ids[i]);
+		}
+	}
+
+	/* Returns the id of the node nearest to the point, among the nodes at distance at most radius from it,
+	 * or -1 if there is none */
+	public int findNearest(int x, int y, int radius) {
+		int nearest = -1;
+		long nearestDistance = (long) radius * radius;
+		for (int cellX = cellOf(x - radius); cellX <= cellOf(x + radius); cellX++) {
+			for (int cellY = cellOf(y - radius); cellY <= cellOf(y + radius); cellY++) {
+				Cell cell = _cells.get(key(cellX, cellY));
+				if (cell == null)
+					continue;
+				for (int i = 0; i < cell._size; i++) {
+					long dx = cell._xs[i] - x, dy = cell._ys[i] - y;
+					long distance = dx * dx + dy * dy;
+					if (distance <= nearestDistance) {
+						nearest = cell._ids[i];
+						nearestDistance = distance;
+					}
+				}
+			}
+		}
+		return nearest;
+	}
+
+}
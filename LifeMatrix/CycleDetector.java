@@ -0,0 +1,64 @@
+/**
+ * Detects that a simulation reached a still life or an oscillator, from the fingerprints of its generations.
+ * The fingerprints of the last historySize generations are kept in a ring buffer, indexed by a hash map
+ * from every fingerprint to its latest position in the buffer, so every new fingerprint is looked up
+ * in constant time, and a cycle whose period is at most historySize is found on the first generation
+ * that repeats, without comparing any matrices.
+ * (Two different generations could have the same 64-bit fingerprint, but it is extremely unlikely.)
+ */
+public class CycleDetector {
+
+	private long[] _fingerprints;
+	private long[] _generations;
+	private LongIntHashMap _positions;   // fingerprint -> its latest position in the ring buffer
+	private int _count = 0, _next = 0;
+	private long _period = 0;
+	private long _cycleStart = -1;
+
+	/* Throws exception if illegal input */
+	public CycleDetector(int historySize) throws Exception {
+		if (historySize <= 0)
+			throw new Exception("historySize must be positive");
+		_fingerprints = new long[historySize];
+		_generations = new long[historySize];
+		_positions = new LongIntHashMap(historySize);
+	}
+
+	/* Record the fingerprint of a generation. Returns true iff it repeats a generation in the history
+	 * (the period and start of the first cycle found are kept) */
+	public boolean record(long generation, long fingerprint) {
+		boolean found = _positions.containsKey(fingerprint);
+		if (found && _cycleStart < 0) {
+			long previous = _generations[_positions.get(fingerprint)];
+			_cycleStart = previous;
+			_period = generation - previous;
+		}
+		if (_count == _fingerprints.length) {
+			// the oldest fingerprint is overwritten; it leaves the index unless it was seen again since
+			long oldest = _fingerprints[_next];
+			if (_positions.get(oldest) == _next)
+				_positions.remove(oldest);
+		}
+		_positions.put(fingerprint, _next);
+		_fingerprints[_next] = fingerprint;
+		_generations[_next] = generation;
+		_next = (_next + 1) % _fingerprints.length;
+		_count = Math.min(_count + 1, _fingerprints.length);
+		return found;
+	}
+
+	public boolean isCycleDetected() {
+		return _cycleStart >= 0;
+	}
+
+	/* the period of the cycle (1 == still life), or 0 if no cycle was detected */
+	public long getPeriod() {
+		return _period;
+	}
+
+	/* the first generation of the cycle, or -1 if no cycle was detected */
+	public long getCycleStart() {
+		return _cycleStart;
+	}
+
+}
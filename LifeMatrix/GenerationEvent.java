@@ -0,0 +1,38 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A Java Flight Recorder event for one generation of a LifeSimulator with metrics enabled.
+ * The event has a duration (the step itself), so it can be seen on the JFR timeline.
+ */
+@Name("life.Generation")
+@Label("Life Generation")
+@Category("Life")
+@Description("One step of a LifeSimulator")
+@StackTrace(false)
+public class GenerationEvent extends jdk.jfr.Event {
+
+	@Label("Generation")
+	long generation;
+
+	@Label("Population")
+	long population;
+
+	@Label("Births")
+	long births;
+
+	@Label("Deaths")
+	long deaths;
+
+	@Label("Cells Evaluated")
+	long cellsEvaluated;
+
+	@Label("Step Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long stepNanos;
+
+}
@@ -0,0 +1,400 @@
+/**
+ * A HashLife engine, for jumping very far ahead in the life of a pattern.
+ *
+ * The board is an unbounded plane, held as a quadtree whose nodes are canonical:
+ * every distinct square of cells is represented by exactly one Node, so repeated
+ * regions (in space or in time) share their nodes. Every node also remembers the
+ * future of its center, so a pattern that repeats itself is advanced 2^j generations
+ * in a number of operations proportional to j rather than to 2^j.
+ *
+ * The number of canonical nodes is bounded: when the table grows over the limit,
+ * all the nodes that are not part of the current generation are dropped together
+ * with all the memoized futures, and are rebuilt on demand. The limit is checked
+ * on every new node, so a single long jump collects as often as it needs to.
+ */
+public class HashLife implements LifeEngine {
+
+	/* the default limit on the number of canonical nodes */
+	public final static int DEFAULT_MAX_NODES = 1 << 22;
+
+	/* the smallest level of the root, so the root always has grandchildren */
+	private final static int MIN_ROOT_LEVEL = 3;
+
+	/* A canonical square of 2^level x 2^level cells.
+	 * Level 0 nodes are single cells and have no children. */
+	private static final class Node {
+		final Node _nw, _ne, _sw, _se;
+		final int _level;
+		final long _population;
+		final int _hash;
+		Node _nextInBucket;   // the chain of the hash table bucket
+		Node[] _results;      // _results[j] == the center of this node, 2^j generations later
+
+		/* a single cell */
+		Node(boolean alive) {
+			_nw = _ne = _sw = _se = null;
+			_level = 0;
+			_population = alive ? 1 : 0;
+			_hash = alive ? 1 : 0;
+		}
+
+		Node(Node nw, Node ne, Node sw, Node se, int hash) {
+			_nw = nw;
+			_ne = ne;
+			_sw = sw;
+			_se = se;
+			_level = nw._level + 1;
+			_population = nw._population + ne._population + sw._population + se._population;
+			_hash = hash;
+		}
+	}
+
+	private final Node _dead = new Node(false);
+	private final Node _alive = new Node(true);
+	private Node[] _emptyNodes = new Node[64];   // _emptyNodes[k] == the empty node of level k
+
+	private Node[] _table = new Node[1 << 10];
+	private int _size = 0;
+	private int _maxNodes;
+	private int _collectAt;   // the table size that triggers the next collection (at least _maxNodes)
+
+	private Node _root;
+	private long _originRow, _originColumn;   // the board coordinates of the root's top-left cell
+	private long _generation = 0;
+	private int _numRows, _numColumns;        // the size of the board that was loaded (used by printMatrix)
+	private LifeRule _rule;
+
+	/* Loads the given matrix (its top-left cell is at row 0, column 0 of the plane) */
+	public HashLife(LifeMatrix initial) throws Exception {
+		this(initial, DEFAULT_MAX_NODES);
+	}
+
+	/*
+	 * @param initial - the first generation (its top-left cell is at row 0, column 0 of the plane)
+	 * @param maxNodes - the number of canonical nodes that triggers a collection of the unused ones
+	 * Throws exception if illegal input
+	 */
+	public HashLife(LifeMatrix initial, int maxNodes) throws Exception {
+		this(initial, maxNodes, LifeRule.CONWAY);
+	}
+
+	/*
+	 * @param initial - the first generation (its top-left cell is at row 0, column 0 of the plane)
+	 * @param maxNodes - the number of canonical nodes that triggers a collection of the unused ones
+	 * @param rule - the rule of the pattern (a rule with births on 0 neighbours cannot be used on an unbounded plane)
+	 * Throws exception if illegal input
+	 */
+	public HashLife(LifeMatrix initial, int maxNodes, LifeRule rule) throws Exception {
+		if (initial == null || rule == null)
+			throw new Exception("initial matrix and rule must be given");
+		if (maxNodes <= 0)
+			throw new Exception("maxNodes must be positive");
+		if (rule.hasBirthWithoutNeighbors())
+			throw new Exception("Rule " + rule + " cannot be used on an unbounded plane");
+		_maxNodes = maxNodes;
+		_collectAt = maxNodes;
+		_rule = rule;
+		_emptyNodes[0] = _dead;
+		_numRows = initial.getNumRows();
+		_numColumns = initial.getNumColumns();
+		int level = MIN_ROOT_LEVEL;
+		while ((1L << level) < Math.max(_numRows, _numColumns))
+			level++;
+		_root = build(initial, level, 0, 0);
+		_originRow = 0;
+		_originColumn = 0;
+	}
+
+	/* build the node of the given level whose top-left cell is (top, left) in the matrix */
+	private Node build(LifeMatrix matrix, int level, int top, int left) throws Exception {
+		if (top >= _numRows || left >= _numColumns)
+			return empty(level);
+		if (level == 0)
+			return matrix.getCellValue(top, left) ? _alive : _dead;
+		int half = 1 << (level-1);
+		return join(build(matrix, level-1, top, left), build(matrix, level-1, top, left+half),
+				build(matrix, level-1, top+half, left), build(matrix, level-1, top+half, left+half));
+	}
+
+	/* returns the canonical node with the given four children */
+	private Node join(Node nw, Node ne, Node sw, Node se) {
+		if (_size >= _collectAt)
+			collect();
+		int hash = hash(nw, ne, sw, se);
+		int bucket = hash & (_table.length-1);
+		for (Node node = _table[bucket]; node != null; node = node._nextInBucket) {
+			if (node._nw == nw && node._ne == ne && node._sw == sw && node._se == se)
+				return node;
+		}
+		Node node = new Node(nw, ne, sw, se, hash);
+		node._nextInBucket = _table[bucket];
+		_table[bucket] = node;
+		if (++_size > _table.length - (_table.length >>> 2))
+			resizeTable(_table.length * 2);
+		return node;
+	}
+
+	private static int hash(Node nw, Node ne, Node sw, Node se) {
+		int h = nw._hash;
+		h = h * 1000003 ^ ne._hash;
+		h = h * 1000003 ^ sw._hash;
+		h = h * 1000003 ^ se._hash;
+		h = h * 1000003 ^ (nw._level + 1);
+		return h ^ (h >>> 16);
+	}
+
+	/* rehash all the nodes into a table of the given size */
+	private void resizeTable(int newLength) {
+		Node[] oldTable = _table;
+		_table = new Node[newLength];
+		for (Node head : oldTable) {
+			Node node = head;
+			while (node != null) {
+				Node next = node._nextInBucket;
+				int bucket = node._hash & (newLength-1);
+				node._nextInBucket = _table[bucket];
+				_table[bucket] = node;
+				node = next;
+			}
+		}
+	}
+
+	/* returns the empty node of the given level */
+	private Node empty(int level) {
+		if (_emptyNodes[level] == null) {
+			Node child = empty(level-1);
+			_emptyNodes[level] = join(child, child, child, child);
+		}
+		return _emptyNodes[level];
+	}
+
+	/* the node of level k-1 in the center of the given node of level k */
+	private Node center(Node node) {
+		return join(node._nw._se, node._ne._sw, node._sw._ne, node._se._nw);
+	}
+
+	/* the root with an empty border around it (one level bigger, the old root in the center) */
+	private void expand() {
+		int level = _root._level;
+		Node e = empty(level-1);
+		_root = join(join(e, e, e, _root._nw), join(e, e, _root._ne, e),
+					 join(e, _root._sw, e, e), join(_root._se, e, e, e));
+		_originRow -= 1L << (level-1);
+		_originColumn -= 1L << (level-1);
+	}
+
+	/* Returns the center of the given node (level k >= 2), 2^j generations later (0 <= j <= k-2) */
+	private Node successor(Node node, int j) {
+		int level = node._level;
+		if (node._population == 0)
+			return empty(level-1);
+		if (node._results != null && node._results[j] != null)
+			return node._results[j];
+
+		Node result;
+		if (level == 2) {
+			result = stepLevel2(node);
+		} else {
+			// the 9 overlapping sub-squares of level k-1
+			Node n00 = node._nw, n02 = node._ne, n20 = node._sw, n22 = node._se;
+			Node n01 = join(n00._ne, n02._nw, n00._se, n02._sw);
+			Node n10 = join(n00._sw, n00._se, n20._nw, n20._ne);
+			Node n11 = join(n00._se, n02._sw, n20._ne, n22._nw);
+			Node n12 = join(n02._sw, n02._se, n22._nw, n22._ne);
+			Node n21 = join(n20._ne, n22._nw, n20._se, n22._sw);
+
+			// at full speed (j == k-2) both halves advance 2^(k-3) generations,
+			// otherwise the first half takes only the centers, and the second half advances 2^j
+			boolean fullSpeed = (j == level-2);
+			Node r00 = fullSpeed ? successor(n00, level-3) : center(n00);
+			Node r01 = fullSpeed ? successor(n01, level-3) : center(n01);
+			Node r02 = fullSpeed ? successor(n02, level-3) : center(n02);
+			Node r10 = fullSpeed ? successor(n10, level-3) : center(n10);
+			Node r11 = fullSpeed ? successor(n11, level-3) : center(n11);
+			Node r12 = fullSpeed ? successor(n12, level-3) : center(n12);
+			Node r20 = fullSpeed ? successor(n20, level-3) : center(n20);
+			Node r21 = fullSpeed ? successor(n21, level-3) : center(n21);
+			Node r22 = fullSpeed ? successor(n22, level-3) : center(n22);
+
+			int secondStep = fullSpeed ? level-3 : j;
+			result = join(successor(join(r00, r01, r10, r11), secondStep),
+						  successor(join(r01, r02, r11, r12), secondStep),
+						  successor(join(r10, r11, r20, r21), secondStep),
+						  successor(join(r11, r12, r21, r22), secondStep));
+		}
+
+		if (node._results == null)
+			node._results = new Node[level-1];
+		node._results[j] = result;
+		return result;
+	}
+
+	/* the center 2x2 cells of a 4x4 node, one generation later */
+	private Node stepLevel2(Node node) {
+		boolean[][] cells = new boolean[4][4];
+		Node[] quadrants = {node._nw, node._ne, node._sw, node._se};
+		for (int q=0; q<4; ++q) {
+			Node quadrant = quadrants[q];
+			int top = (q / 2) * 2, left = (q % 2) * 2;
+			cells[top][left] = quadrant._nw == _alive;
+			cells[top][left+1] = quadrant._ne == _alive;
+			cells[top+1][left] = quadrant._sw == _alive;
+			cells[top+1][left+1] = quadrant._se == _alive;
+		}
+		return join(nextCell(cells, 1, 1), nextCell(cells, 1, 2), nextCell(cells, 2, 1), nextCell(cells, 2, 2));
+	}
+
+	/* the next state of an inner cell of a 4x4 square */
+	private Node nextCell(boolean[][] cells, int row, int column) {
+		int numNeighbors = 0;
+		for (int r=row-1; r<=row+1; ++r) {
+			for (int c=column-1; c<=column+1; ++c) {
+				if ((r != row || c != column) && cells[r][c])
+					numNeighbors++;
+			}
+		}
+		return _rule.nextState(cells[row][column], numNeighbors) ? _alive : _dead;
+	}
+
+	/* Advance the pattern the given number of generations.
+	 * Each set bit j of 'generations' is one jump of 2^j generations. */
+	public void advance(long generations) throws Exception {
+		if (generations < 0)
+			throw new Exception("generations must not be negative");
+		for (int j=0; generations != 0; ++j, generations >>>= 1) {
+			if ((generations & 1) == 0)
+				continue;
+			// the pattern must be in the center half of the root, and the root big enough for a 2^j jump;
+			// one more border then guarantees that nothing escapes the center that successor() returns
+			while (_root._level < j+2 || _root._population != center(_root)._population)
+				expand();
+			expand();
+			long shift = 1L << (_root._level-2);
+			_root = successor(_root, j);
+			_originRow += shift;
+			_originColumn += shift;
+			_generation += 1L << j;
+		}
+	}
+
+	/* Drop all the nodes that are not part of the current generation, and all the memoized futures.
+	 * This may happen in the middle of a jump: the nodes that the successor() recursion still holds
+	 * stay valid but are no longer canonical, so they only lose their sharing with new equal nodes. */
+	private void collect() {
+		_table = new Node[_table.length];
+		_size = 0;
+		for (int level=0; level<_emptyNodes.length; ++level) {
+			if (_emptyNodes[level] != null)
+				reinsert(_emptyNodes[level]);
+		}
+		if (_root != null)   // null while the first generation is built
+			reinsert(_root);
+		// if the current generation alone is near the limit, let the table grow before collecting again
+		_collectAt = Math.max(_maxNodes, 2 * _size);
+	}
+
+	/* put the node and its descendants back in the table (if not already there) */
+	private void reinsert(Node node) {
+		if (node._level == 0)
+			return;
+		int bucket = node._hash & (_table.length-1);
+		for (Node other = _table[bucket]; other != null; other = other._nextInBucket) {
+			if (other == node)
+				return;
+		}
+		reinsert(node._nw);
+		reinsert(node._ne);
+		reinsert(node._sw);
+		reinsert(node._se);
+		node._results = null;
+		node._nextInBucket = _table[bucket];
+		_table[bucket] = node;
+		_size++;
+	}
+
+	/* calculate the next generation */
+	@Override
+	public void doStep() {
+		try {
+			advance(1);
+		} catch (Exception e) {
+			// This is not supposed to happend because we advance a positive number of generations
+		}
+	}
+
+	public long getGeneration() {
+		return _generation;
+	}
+
+	@Override
+	public long getPopulation() {
+		return _root._population;
+	}
+
+	/* returns the number of canonical nodes currently in the table */
+	public int getNumNodes() {
+		return _size;
+	}
+
+	/* returns the value of the cell at the given coordinates of the plane */
+	public boolean getCellValue(long row, long column) {
+		Node node = _root;
+		long top = _originRow, left = _originColumn;
+		long size = 1L << node._level;
+		if (row < top || column < left || row - top >= size || column - left >= size)
+			return false;
+		while (node._level > 0) {
+			if (node._population == 0)
+				return false;
+			size >>>= 1;
+			boolean south = row - top >= size, east = column - left >= size;
+			if (south)
+				top += size;
+			if (east)
+				left += size;
+			node = south ? (east ? node._se : node._sw) : (east ? node._ne : node._nw);
+		}
+		return node == _alive;
+	}
+
+	/* Copy the given window of the plane into a new LifeMatrix */
+	public LifeMatrix getViewport(long top, long left, int numRows, int numColumns) throws Exception {
+		LifeMatrix matrix = new LifeMatrix(numRows, numColumns);
+		fill(matrix, _root, _originRow, _originColumn, top, left);
+		return matrix;
+	}
+
+	/* Copy the window of the plane that was originally loaded into a new LifeMatrix */
+	public LifeMatrix toLifeMatrix() throws Exception {
+		return getViewport(0, 0, _numRows, _numColumns);
+	}
+
+	/* set the live cells of the node (whose top-left cell is nodeTop, nodeLeft) that fall inside the matrix window */
+	private void fill(LifeMatrix matrix, Node node, long nodeTop, long nodeLeft, long top, long left) throws Exception {
+		long size = 1L << node._level;
+		if (node._population == 0
+				|| nodeTop >= top + matrix.getNumRows() || nodeTop + size <= top
+				|| nodeLeft >= left + matrix.getNumColumns() || nodeLeft + size <= left)
+			return;
+		if (node._level == 0) {
+			matrix.setCellValue((int) (nodeTop - top), (int) (nodeLeft - left), true);
+			return;
+		}
+		long half = size >>> 1;
+		fill(matrix, node._nw, nodeTop, nodeLeft, top, left);
+		fill(matrix, node._ne, nodeTop, nodeLeft + half, top, left);
+		fill(matrix, node._sw, nodeTop + half, nodeLeft, top, left);
+		fill(matrix, node._se, nodeTop + half, nodeLeft + half, top, left);
+	}
+
+	/* display the window of the plane that was originally loaded */
+	@Override
+	public void printMatrix() {
+		try {
+			toLifeMatrix().printMatrix();
+		} catch (Exception e) {
+			// This is not supposed to happend because the loaded window has a legal size
+		}
+	}
+
+}
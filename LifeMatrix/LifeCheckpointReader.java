@@ -0,0 +1,240 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reads a checkpoint file written by LifeCheckpointWriter, and rebuilds the latest generation in it:
+ * the newest snapshot, with the deltas that follow it applied in order.
+ * Only the compressed records after the newest snapshot are kept while the file is scanned.
+ * The file is read up to its first record that is cut short or fails its CRC (left by a crash):
+ * that record and everything after it are ignored (and cut off when the file is appended to again).
+ */
+public class LifeCheckpointReader {
+
+	private DataInputStream _in;
+	private CountingInputStream _counter;
+	private long _fileLength;
+	private long _validLength;   // the offset just after the last complete record that was read
+	private int _numRows, _numColumns;
+	private boolean _torus;
+	private LifeRule _rule;
+
+	/* Open the file and read its header.
+	 * Throws exception if the file cannot be read or is not a checkpoint file */
+	public LifeCheckpointReader(File file) throws Exception {
+		_fileLength = file.length();
+		_counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+		_in = new DataInputStream(_counter);
+		try {
+			if (_in.readInt() != LifeCheckpointWriter.MAGIC || _in.readInt() != LifeCheckpointWriter.VERSION)
+				throw new Exception("Not a checkpoint file: " + file);
+			_numRows = _in.readInt();
+			_numColumns = _in.readInt();
+			_torus = _in.readBoolean();
+			_rule = LifeRule.parse(_in.readUTF());
+			_validLength = _counter._count;
+		} catch (Exception e) {
+			_in.close();
+			throw e instanceof EOFException ? new Exception("Not a checkpoint file: " + file) : e;
+		}
+	}
+
+	public int getNumRows() {
+		return _numRows;
+	}
+
+	public int getNumColumns() {
+		return _numColumns;
+	}
+
+	public boolean isTorus() {
+		return _torus;
+	}
+
+	public LifeRule getRule() {
+		return _rule;
+	}
+
+	/* Rebuild the simulation at the latest generation of the file (with its rule and edges).
+	 * Throws exception if the file has no snapshot or cannot be read */
+	public static LifeSimulator resume(File file) throws Exception {
+		LifeCheckpointReader reader = new LifeCheckpointReader(file);
+		try {
+			return reader.readLatest();
+		} finally {
+			reader.close();
+		}
+	}
+
+	/* A record of the file, still compressed */
+	private static class Record {
+		final byte _type;
+		final long _generation;
+		final byte[] _payload;
+
+		Record(byte type, long generation, byte[] payload) {
+			_type = type;
+			_generation = generation;
+			_payload = payload;
+		}
+	}
+
+	/* Returns the length of the file up to the end of its last complete record (after its header if it has none),
+	 * after which new records can be appended.
+	 * Throws exception if the file cannot be read */
+	long readValidLength() throws Exception {
+		while (readRecord() != null) {
+			// only the length is needed
+		}
+		return _validLength;
+	}
+
+	/* Read the next record, or return null at the end of the file
+	 * or at a record that is cut short or fails its CRC */
+	private Record readRecord() throws IOException {
+		byte[] header = new byte[LifeCheckpointWriter.RECORD_HEADER_SIZE];
+		try {
+			_in.readFully(header);
+			ByteBuffer fields = ByteBuffer.wrap(header);
+			byte type = fields.get();
+			long generation = fields.getLong();
+			int length = fields.getInt();
+			if (length < 0 || length > _fileLength - _counter._count)
+				return null;   // cut short (or a damaged length)
+			byte[] payload = new byte[length];
+			_in.readFully(payload);
+			CRC32 crc = new CRC32();
+			crc.update(header);
+			crc.update(payload);
+			if (_in.readInt() != (int) crc.getValue())
+				return null;   // not completely written, or damaged
+			_validLength = _counter._count;
+			return new Record(type, generation, payload);
+		} catch (EOFException e) {
+			return null;   // the end of the file, or a record that was not completely written
+		}
+	}
+
+	private LifeSimulator readLatest() throws Exception {
+		Record snapshot = null;
+		List<Record> deltas = new ArrayList<>();   // the deltas that follow the snapshot, one generation after another
+		for (Record record = readRecord(); record != null; record = readRecord()) {
+			byte type = record._type;
+			long generation = record._generation;
+			if (type == LifeCheckpointWriter.SNAPSHOT) {
+				snapshot = record;
+				deltas.clear();
+			} else if (type == LifeCheckpointWriter.DELTA) {
+				// a delta counts only if it continues the snapshot without a gap
+				if (snapshot != null) {
+					long previous = deltas.isEmpty() ? snapshot._generation : deltas.get(deltas.size()-1)._generation;
+					if (generation == previous + 1)
+						deltas.add(record);
+				}
+			} else {
+				throw new Exception("Illegal record type " + type + " in the checkpoint file");
+			}
+		}
+		if (snapshot == null)
+			throw new Exception("The checkpoint file has no snapshot");
+
+		LifeMatrix matrix = new LifeMatrix(_numRows, _numColumns, _torus);
+		readSnapshot(snapshot._payload, matrix);
+		long generation = snapshot._generation;
+		for (Record delta : deltas) {
+			applyDelta(delta._payload, matrix);
+			generation = delta._generation;
+		}
+		LifeSimulator simulator = new LifeSimulator(matrix);
+		simulator.setRule(_rule);
+		simulator.restoreGeneration(generation);
+		return simulator;
+	}
+
+	private void readSnapshot(byte[] payload, LifeMatrix matrix) throws IOException {
+		try (DataInputStream data = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(payload)))) {
+			long word = 0;
+			long index = 0;
+			for (int row=0; row<_numRows; ++row) {
+				boolean[] cells = matrix.getRow(row);
+				for (int column=1; column<=_numColumns; ++column, ++index) {
+					if ((index & 63) == 0)
+						word = data.readLong();
+					cells[column] = (word & (1L << index)) != 0;
+				}
+			}
+		}
+	}
+
+	/* toggle the cells that changed */
+	private void applyDelta(byte[] payload, LifeMatrix matrix) throws IOException {
+		try (DataInputStream data = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(payload)))) {
+			long numChanges = readVarLong(data);
+			long index = -1;
+			for (long i=0; i<numChanges; ++i) {
+				index += readVarLong(data) + 1;
+				boolean[] cells = matrix.getRow((int) (index / _numColumns));
+				int column = (int) (index % _numColumns) + 1;
+				cells[column] = !cells[column];
+			}
+		}
+	}
+
+	private static long readVarLong(DataInputStream in) throws IOException {
+		long result = 0;
+		for (int shift=0; ; shift+=7) {
+			int b = in.readUnsignedByte();
+			result |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return result;
+		}
+	}
+
+	public void close() throws IOException {
+		_in.close();
+	}
+
+	/* Counts the bytes read through it, for the offsets of the records */
+	private static class CountingInputStream extends FilterInputStream {
+		long _count = 0;
+
+		CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0)
+				_count++;
+			return b;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) throws IOException {
+			int n = super.read(bytes, offset, length);
+			if (n > 0)
+				_count += n;
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			_count += skipped;
+			return skipped;
+		}
+	}
+
+}
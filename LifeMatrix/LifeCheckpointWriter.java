@@ -0,0 +1,220 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes checkpoints of a simulation into an append-only file, so a long run can be resumed
+ * after a crash or a redeploy (see LifeCheckpointReader).
+ *
+ * The file starts with a header (the size of the board, whether it is a torus and its rule),
+ * followed by records of [type][generation][length][payload][crc], where the payload is deflated:
+ * a SNAPSHOT holds all the cells of a generation, 64 per long, and a DELTA holds the indices of the cells
+ * that changed in one generation, as variable-length gaps between them.
+ * The crc (a CRC-32 of the rest of the record) tells a record that was cut short or damaged by a crash,
+ * and such a tail is cut off the file before new records are appended to it.
+ *
+ * The records are compressed and written on a background thread, behind a queue of at most MAX_QUEUED_RECORDS,
+ * so the simulation waits for the disk only when it is that far behind.
+ */
+public class LifeCheckpointWriter {
+
+	final static int MAGIC = 0x4C434B50;   // "LCKP"
+	final static int VERSION = 2;
+	final static byte SNAPSHOT = 1, DELTA = 2;
+	final static int RECORD_HEADER_SIZE = 1 + 8 + 4;   // type, generation, length
+	final static int MAX_QUEUED_RECORDS = 16;
+
+	private File _file;
+	private int _numRows, _numColumns;
+	private DataOutputStream _out;
+	private FileOutputStream _fileOut;
+	private BlockingQueue<Record> _queue = new LinkedBlockingQueue<>(MAX_QUEUED_RECORDS);
+	private Thread _thread;
+	private volatile Exception _failure;   // the first failure of the background thread
+	private long _lastGeneration = -1;     // the generation of the last record that was queued
+
+	/* A record waiting in the queue (a record with null cells ends the queue) */
+	private static class Record {
+		final byte _type;
+		final long _generation;
+		final long[] _cells;     // the packed cells (SNAPSHOT) or the indices of the changed cells (DELTA)
+
+		Record(byte type, long generation, long[] cells) {
+			_type = type;
+			_generation = generation;
+			_cells = cells;
+		}
+	}
+
+	/*
+	 * Open the checkpoint file of the given board for appending (a new file gets a header,
+	 * an existing one must be of a board of the same size, edges and rule, and is cut after its last complete record)
+	 * and start the background thread.
+	 * Throws exception if the file cannot be opened or is of another board
+	 */
+	public LifeCheckpointWriter(File file, int numRows, int numColumns, boolean torus, LifeRule rule) throws Exception {
+		_file = file;
+		_numRows = numRows;
+		_numColumns = numColumns;
+		boolean exists = file.length() > 0;
+		long validLength = 0;
+		if (exists) {
+			LifeCheckpointReader reader = new LifeCheckpointReader(file);
+			try {
+				if (reader.getNumRows() != numRows || reader.getNumColumns() != numColumns)
+					throw new Exception("The checkpoint file " + file + " is of a board of another size");
+				if (reader.isTorus() != torus || !reader.getRule().equals(rule))
+					throw new Exception("The checkpoint file " + file + " is of a board with other edges or rule");
+				validLength = reader.readValidLength();
+			} finally {
+				reader.close();
+			}
+		}
+		_fileOut = new FileOutputStream(file, true);
+		if (exists)
+			_fileOut.getChannel().truncate(validLength);   // the records after it could not be read back
+		_out = new DataOutputStream(new BufferedOutputStream(_fileOut, 1 << 16));
+		if (!exists) {
+			_out.writeInt(MAGIC);
+			_out.writeInt(VERSION);
+			_out.writeInt(numRows);
+			_out.writeInt(numColumns);
+			_out.writeBoolean(torus);
+			_out.writeUTF(rule.toString());
+			_out.flush();
+		}
+		_thread = new Thread(this::writeRecords, "LifeCheckpointWriter");
+		_thread.setDaemon(true);
+		_thread.start();
+	}
+
+	public File getFile() {
+		return _file;
+	}
+
+	/* the generation of the last queued record, or -1 if none */
+	public long getLastGeneration() {
+		return _lastGeneration;
+	}
+
+	/* Queue a snapshot of the given generation (the cells are packed on the calling thread, the rest is done in the background).
+	 * Throws exception if writing an earlier record failed */
+	public void writeSnapshot(long generation, LifeMatrix matrix) throws Exception {
+		checkFailure();
+		long[] words = new long[(int) (((long) _numRows * _numColumns + 63) >>> 6)];
+		long index = 0;
+		for (int row=0; row<_numRows; ++row) {
+			boolean[] cells = matrix.getRow(row);
+			for (int column=1; column<=_numColumns; ++column, ++index) {
+				if (cells[column])
+					words[(int) (index >>> 6)] |= 1L << index;
+			}
+		}
+		enqueue(new Record(SNAPSHOT, generation, words));
+		_lastGeneration = generation;
+	}
+
+	/* Queue the delta of the given generation: the indices (row * numColumns + column) of the cells
+	 * that changed since the previous generation, in any order.
+	 * Throws exception if writing an earlier record failed */
+	public void writeDelta(long generation, long[] changes, int numChanges) throws Exception {
+		checkFailure();
+		enqueue(new Record(DELTA, generation, Arrays.copyOf(changes, numChanges)));
+		_lastGeneration = generation;
+	}
+
+	/* wait for room in the queue (throws exception if the background thread failed, so it does not wait forever) */
+	private void enqueue(Record record) throws Exception {
+		while (!_queue.offer(record, 100, TimeUnit.MILLISECONDS))
+			checkFailure();
+	}
+
+	private void checkFailure() throws Exception {
+		if (_failure != null)
+			throw new Exception("Writing the checkpoint file " + _file + " failed", _failure);
+	}
+
+	/* the background thread: compress and append the queued records until the end of the queue */
+	private void writeRecords() {
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		ByteArrayOutputStream payload = new ByteArrayOutputStream();
+		ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+		CRC32 crc = new CRC32();
+		try {
+			while (true) {
+				Record record = _queue.take();
+				if (record._cells == null)
+					break;
+				payload.reset();
+				deflater.reset();
+				DataOutputStream data = new DataOutputStream(new DeflaterOutputStream(payload, deflater, 1 << 16));
+				if (record._type == SNAPSHOT) {
+					for (long word : record._cells)
+						data.writeLong(word);
+				} else {
+					long[] changes = record._cells;
+					Arrays.sort(changes);   // sorted, so the gaps are small and positive
+					writeVarLong(data, changes.length);
+					long previous = -1;
+					for (long index : changes) {
+						writeVarLong(data, index - previous - 1);
+						previous = index;
+					}
+				}
+				data.close();   // finishes the deflater (but not the ByteArrayOutputStream)
+
+				header.clear();
+				header.put(record._type).putLong(record._generation).putInt(payload.size());
+				crc.reset();
+				crc.update(header.array());
+				byte[] bytes = payload.toByteArray();
+				crc.update(bytes);
+				_out.write(header.array());
+				_out.write(bytes);
+				_out.writeInt((int) crc.getValue());
+				if (record._type == SNAPSHOT || _queue.isEmpty())
+					_out.flush();
+				if (record._type == SNAPSHOT)
+					_fileOut.getFD().sync();   // a snapshot is a point that survives a crash of the machine
+			}
+			_out.flush();
+		} catch (Exception e) {
+			_failure = e;
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/* write a non-negative number in 7-bit groups, the lowest first (the high bit of a byte == more groups follow) */
+	private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	/* Write all the queued records and close the file.
+	 * Throws exception if writing failed */
+	public void close() throws Exception {
+		try {
+			enqueue(new Record(DELTA, -1, null));
+			_thread.join();
+		} finally {
+			_out.close();
+		}
+		checkFailure();
+	}
+
+}
@@ -0,0 +1,327 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.function.ObjIntConsumer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a simulation on several worker processes on the same machine, for boards that need more
+ * memory or cores than one JVM has.
+ *
+ * The board is split into strips of consecutive rows, and every strip is owned by a LifeWorker process.
+ * The workers exchange their edge rows with their neighbours directly, over local TCP sockets,
+ * so the coordinator is not on the path of the per-generation traffic. It starts the workers,
+ * tells them how to fill their strips, and then acts as the barrier: every command is sent to all the workers,
+ * and completes when all of them answered.
+ *
+ * The whole board is held by a single process only when it is asked for: by the constructor that
+ * takes a LifeMatrix, and by collect(). Random boards and pattern files are filled by every worker for its own strip,
+ * checkpoints are written by every worker into its own file (see saveCheckpoint), and printMatrix gathers only
+ * the rows it displays, so the board may be larger than the memory of any one process.
+ */
+public class LifeCoordinator implements LifeEngine {
+
+	/* how long to wait for the workers to connect */
+	private final static int CONNECT_TIMEOUT_MILLIS = 60000;
+
+	/* the maximal number of rows and columns that printMatrix displays */
+	private final static int PRINT_LIMIT = 100;
+
+	private int _numRows, _numColumns;
+	private boolean _torus;
+	private LifeRule _rule;
+	private int[] _firstRows;             // _firstRows[i] == the first row of the strip of worker i (plus numRows at the end)
+	private Process[] _processes;
+	private Socket[] _sockets;
+	private DataInputStream[] _ins;
+	private DataOutputStream[] _outs;
+	private long _generation = 0;
+	private long _population;
+
+	/* Distribute the given board over numWorkers worker processes
+	 * (for boards that fit in this process; see the other constructors for larger ones) */
+	public LifeCoordinator(LifeMatrix initial, int numWorkers, LifeRule rule) throws Exception {
+		this(initial.getNumRows(), initial.getNumColumns(), numWorkers, initial.isTorus(), rule, initial, 0, null);
+	}
+
+	/* Distribute a random board (each cell alive with 50% chance) over numWorkers worker processes.
+	 * Every worker fills its own strip, so the board is never held by a single process.
+	 * The same seed and number of workers give the same board. */
+	public LifeCoordinator(int numRows, int numColumns, long seed, int numWorkers, boolean torus, LifeRule rule) throws Exception {
+		this(numRows, numColumns, numWorkers, torus, rule, null, seed, null);
+	}
+
+	/* Distribute the pattern in a file (see LifePatternIO) over numWorkers worker processes, on a board of its size.
+	 * Every worker reads only its own rows of the file, so the board is never held by a single process.
+	 * Throws exception if the file names a rule other than the given one */
+	public LifeCoordinator(File patternFile, int numWorkers, boolean torus, LifeRule rule) throws Exception {
+		this(LifePatternIO.readSize(patternFile, rule), patternFile.getAbsoluteFile(), numWorkers, torus, rule);
+	}
+
+	private LifeCoordinator(int[] size, File patternFile, int numWorkers, boolean torus, LifeRule rule) throws Exception {
+		this(Math.max(1, size[0]), Math.max(1, size[1]), numWorkers, torus, rule, null, 0, patternFile);
+	}
+
+	private LifeCoordinator(int numRows, int numColumns, int numWorkers, boolean torus, LifeRule rule,
+			LifeMatrix initial, long seed, File patternFile) throws Exception {
+		if (numRows <= 0 || numColumns <= 0)
+			throw new Exception("numRows and numColumns must be positive");
+		if (numWorkers <= 0 || numWorkers > numRows)
+			throw new Exception("numWorkers must be positive and at most numRows");
+		if (rule == null)
+			throw new Exception("rule must be given");
+		_numRows = numRows;
+		_numColumns = numColumns;
+		_torus = torus;
+		_rule = rule;
+		_firstRows = new int[numWorkers+1];
+		for (int i=0; i<=numWorkers; ++i)
+			_firstRows[i] = (int) ((long) numRows * i / numWorkers);
+		_processes = new Process[numWorkers];
+		_sockets = new Socket[numWorkers];
+		_ins = new DataInputStream[numWorkers];
+		_outs = new DataOutputStream[numWorkers];
+
+		try (ServerSocket server = new ServerSocket(0, numWorkers, InetAddress.getLoopbackAddress())) {
+			server.setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+			startWorkers(server.getLocalPort());
+			int[] peerPorts = new int[numWorkers];
+			for (int i=0; i<numWorkers; ++i) {
+				Socket socket = server.accept();
+				socket.setTcpNoDelay(true);
+				DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+				int index = in.readInt();
+				peerPorts[index] = in.readInt();
+				_sockets[index] = socket;
+				_ins[index] = in;
+				_outs[index] = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			}
+			for (int i=0; i<numWorkers; ++i)
+				sendStrip(i, torus, rule, peerPorts, initial, seed, patternFile);
+			for (int i=0; i<numWorkers; ++i)
+				_ins[i].readBoolean();   // linked with its neighbours
+		} catch (Exception e) {
+			shutdown();
+			throw e;
+		}
+		_population = initial != null ? countPopulation(initial) : step(0);
+	}
+
+	/* start the worker processes with the same java and class path as this one */
+	private void startWorkers(int port) throws Exception {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		for (int i=0; i<_processes.length; ++i) {
+			ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+					"LifeWorker", Integer.toString(port), Integer.toString(i));
+			builder.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+			builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+			_processes[i] = builder.start();
+		}
+	}
+
+	/* send worker i its part of the board (or how to fill it) and the port of the worker below it */
+	private void sendStrip(int i, boolean torus, LifeRule rule, int[] peerPorts, LifeMatrix initial, long seed,
+			File patternFile) throws Exception {
+		int numWorkers = _processes.length;
+		DataOutputStream out = _outs[i];
+		out.writeInt(_firstRows[i+1] - _firstRows[i]);
+		out.writeInt(_numColumns);
+		out.writeBoolean(torus);
+		out.writeUTF(rule.toString());
+		out.writeBoolean(torus || i > 0);                                   // has a neighbour above
+		out.writeInt(torus || i < numWorkers-1 ? peerPorts[(i+1) % numWorkers] : -1);   // the neighbour below
+		if (initial != null) {
+			out.writeInt(LifeWorker.INIT_ROWS);
+			byte[] bytes = new byte[(_numColumns + 2 + 7) / 8];
+			for (int row=_firstRows[i]; row<_firstRows[i+1]; ++row) {
+				LifeWorker.packRow(initial.getRow(row), bytes);
+				out.write(bytes);
+			}
+		} else if (patternFile != null) {
+			out.writeInt(LifeWorker.INIT_PATTERN);
+			out.writeUTF(patternFile.getPath());
+			out.writeInt(_firstRows[i]);
+		} else {
+			out.writeInt(LifeWorker.INIT_RANDOM);
+			out.writeLong(seed + _firstRows[i]);
+		}
+		out.flush();
+	}
+
+	private static long countPopulation(LifeMatrix matrix) {
+		long result = 0;
+		for (int row=0; row<matrix.getNumRows(); ++row) {
+			boolean[] cells = matrix.getRow(row);
+			for (int column=1; column<=matrix.getNumColumns(); ++column)
+				result += cells[column] ? 1 : 0;
+		}
+		return result;
+	}
+
+	/* Let all the workers calculate the given number of generations, and wait for all of them.
+	 * Returns the population of the board. */
+	private long step(long generations) throws Exception {
+		for (DataOutputStream out : _outs) {
+			out.writeInt(LifeWorker.CMD_STEP);
+			out.writeLong(generations);
+			out.flush();
+		}
+		long population = 0;
+		for (DataInputStream in : _ins)
+			population += in.readLong();
+		return population;
+	}
+
+	/* Advance the board the given number of generations (the workers exchange their edges every generation,
+	 * and report to the coordinator only at the end).
+	 * Throws exception if a worker failed */
+	public void advance(long generations) throws Exception {
+		if (generations < 0)
+			throw new Exception("generations must not be negative");
+		_population = step(generations);
+		_generation += generations;
+	}
+
+	@Override
+	public void doStep() {
+		try {
+			advance(1);
+		} catch (Exception e) {
+			System.out.println("Unexpected Error in doStep()");
+		}
+	}
+
+	/* Collect the strips of all the workers into one matrix in this process.
+	 * Only for boards that fit in its memory: larger boards are written by the workers (see saveCheckpoint).
+	 * Throws exception if a worker failed */
+	public LifeMatrix collect() throws Exception {
+		LifeMatrix matrix = new LifeMatrix(_numRows, _numColumns, _torus);
+		collectRows(_numRows, (bytes, row) -> LifeWorker.unpackRow(bytes, matrix.getRow(row)));
+		matrix.refreshHalo();   // the collected rows carry the halo columns of the workers
+		return matrix;
+	}
+
+	/* pass the first numRows rows of the board, packed by LifeWorker.packRow, to the consumer
+	 * (only the workers that own them are asked) */
+	private void collectRows(int numRows, ObjIntConsumer<byte[]> consumer) throws Exception {
+		byte[] bytes = new byte[(_numColumns + 2 + 7) / 8];
+		for (int i=0; i<_outs.length && _firstRows[i] < numRows; ++i) {
+			_outs[i].writeInt(LifeWorker.CMD_GET);
+			_outs[i].writeInt(0);
+			_outs[i].writeInt(Math.min(numRows, _firstRows[i+1]) - _firstRows[i]);
+			_outs[i].flush();
+		}
+		for (int i=0; i<_ins.length && _firstRows[i] < numRows; ++i) {
+			for (int row=_firstRows[i]; row<Math.min(numRows, _firstRows[i+1]); ++row) {
+				_ins[i].readFully(bytes);
+				consumer.accept(bytes, row);
+			}
+		}
+	}
+
+	/* Let every worker write its strip of the current generation into its own pattern file
+	 * (see partFile and LifePatternIO), so the board is never gathered in one process.
+	 * Throws exception if a worker failed or could not write its file */
+	public void saveCheckpoint(File file) throws Exception {
+		for (int i=0; i<_outs.length; ++i) {
+			_outs[i].writeInt(LifeWorker.CMD_SAVE);
+			_outs[i].writeUTF(partFile(file, i).getAbsolutePath());
+			_outs[i].flush();
+		}
+		String error = "";
+		for (DataInputStream in : _ins) {
+			String message = in.readUTF();
+			if (error.isEmpty())
+				error = message;
+		}
+		if (!error.isEmpty())
+			throw new Exception(error);
+	}
+
+	/* The file that worker i writes its strip into by saveCheckpoint: the index is put before the extension
+	 * (board.rle -> board.0.rle), so the strips are patterns of the same format, to be stacked in this order */
+	public static File partFile(File file, int i) {
+		String name = file.getName();
+		int dot = name.lastIndexOf('.');
+		String partName = dot > 0 ? name.substring(0, dot) + "." + i + name.substring(dot) : name + "." + i;
+		return new File(file.getAbsoluteFile().getParentFile(), partName);
+	}
+
+	public int getNumRows() {
+		return _numRows;
+	}
+
+	public int getNumColumns() {
+		return _numColumns;
+	}
+
+	public int getNumWorkers() {
+		return _processes.length;
+	}
+
+	public long getGeneration() {
+		return _generation;
+	}
+
+	@Override
+	public long getPopulation() {
+		return _population;
+	}
+
+	public LifeRule getRule() {
+		return _rule;
+	}
+
+	/* display the top-left corner of the board (at most PRINT_LIMIT rows and columns),
+	 * gathering only those rows from the workers */
+	@Override
+	public void printMatrix() {
+		try {
+			int numRows = Math.min(PRINT_LIMIT, _numRows);
+			int numColumns = Math.min(PRINT_LIMIT, _numColumns);
+			StringBuilder rowStr = new StringBuilder(numColumns * 3);
+			collectRows(numRows, (bytes, row) -> {
+				rowStr.setLength(0);
+				for (int column=1; column<=numColumns; ++column) {
+					// "[+]" == alive cell, "[ ]" == not alive cell
+					rowStr.append((bytes[column >>> 3] & (1 << (column & 7))) != 0 ? "[+]" : "[ ]");
+				}
+				System.out.println(rowStr);
+			});
+		} catch (Exception e) {
+			System.out.println("Could not collect the board: " + e.getMessage());
+		}
+	}
+
+	/* Stop the worker processes */
+	public void shutdown() {
+		for (int i=0; i<_processes.length; ++i) {
+			try {
+				if (_outs[i] != null) {
+					_outs[i].writeInt(LifeWorker.CMD_QUIT);
+					_outs[i].flush();
+				}
+				if (_sockets[i] != null)
+					_sockets[i].close();
+			} catch (Exception e) {
+				// the worker is gone already
+			}
+		}
+		for (Process process : _processes) {
+			if (process == null)
+				continue;
+			try {
+				if (!process.waitFor(5, TimeUnit.SECONDS))
+					process.destroyForcibly();
+			} catch (InterruptedException e) {
+				process.destroyForcibly();
+			}
+		}
+	}
+
+}
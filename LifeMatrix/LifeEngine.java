@@ -0,0 +1,16 @@
+/**
+ * The common surface of all the Life simulation engines:
+ * calculating the next generation, displaying the board and counting live cells.
+ */
+public interface LifeEngine {
+
+	/* calculate the next generation */
+	void doStep();
+
+	/* display the current generation */
+	void printMatrix();
+
+	/* returns the number of alive cells in the current generation */
+	long getPopulation();
+
+}
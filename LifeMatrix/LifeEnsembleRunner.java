@@ -0,0 +1,241 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Runs many independent random boards of the same size, for statistics about how they end:
+ * when they settle (their lifetime), their final population, and the period of the cycle they reach.
+ *
+ * The runs are spread over a work-stealing pool with one thread per core (every run is a serial
+ * LifeSimulator, so there is no contention between them). The seed of every run is drawn in order
+ * from a SplittableRandom of the ensemble seed before the runs start, so an ensemble gives the same
+ * results however many threads run it and in whatever order they finish.
+ */
+public class LifeEnsembleRunner {
+
+	private int _numRows, _numColumns;
+	private long _maxGenerations;
+	private int _cycleHistory = 64;
+	private LifeRule _rule = LifeRule.CONWAY;
+	private boolean _torus = false;
+	private int _numThreads = Runtime.getRuntime().availableProcessors();
+
+	/* The result of one run */
+	public static class RunResult {
+		private final int _index;
+		private final long _seed;
+		private final long _lifetime;      // the generation where the cycle starts, or the last generation if none was found
+		private final long _period;        // the period of the cycle (1 == still life), or 0 if none was found
+		private final long _finalPopulation;
+
+		RunResult(int index, long seed, long lifetime, long period, long finalPopulation) {
+			_index = index;
+			_seed = seed;
+			_lifetime = lifetime;
+			_period = period;
+			_finalPopulation = finalPopulation;
+		}
+
+		public int getIndex() {
+			return _index;
+		}
+
+		public long getSeed() {
+			return _seed;
+		}
+
+		public long getLifetime() {
+			return _lifetime;
+		}
+
+		public long getPeriod() {
+			return _period;
+		}
+
+		public long getFinalPopulation() {
+			return _finalPopulation;
+		}
+
+		public boolean isCycleFound() {
+			return _period > 0;
+		}
+	}
+
+	/* The aggregated results of the runs done so far */
+	public static class Summary {
+		private long _numRuns, _numCycles, _numDied;
+		private long _minLifetime = Long.MAX_VALUE, _maxLifetime, _totalLifetime;
+		private long _minPopulation = Long.MAX_VALUE, _maxPopulation, _totalPopulation;
+		private TreeMap<Long, Long> _periods = new TreeMap<>();     // period -> number of runs (0 == no cycle found)
+		private TreeMap<Long, Long> _lifetimes = new TreeMap<>();   // lifetime rounded down to a power of 2 -> number of runs
+
+		void add(RunResult result) {
+			_numRuns++;
+			if (result.isCycleFound())
+				_numCycles++;
+			if (result._finalPopulation == 0)
+				_numDied++;
+			_minLifetime = Math.min(_minLifetime, result._lifetime);
+			_maxLifetime = Math.max(_maxLifetime, result._lifetime);
+			_totalLifetime += result._lifetime;
+			_minPopulation = Math.min(_minPopulation, result._finalPopulation);
+			_maxPopulation = Math.max(_maxPopulation, result._finalPopulation);
+			_totalPopulation += result._finalPopulation;
+			_periods.merge(result._period, 1L, Long::sum);
+			_lifetimes.merge(Long.highestOneBit(result._lifetime), 1L, Long::sum);
+		}
+
+		public long getNumRuns() {
+			return _numRuns;
+		}
+
+		/* the number of runs that reached a still life or an oscillator (including the runs that died out) */
+		public long getNumCycles() {
+			return _numCycles;
+		}
+
+		public long getNumDied() {
+			return _numDied;
+		}
+
+		public double getMeanLifetime() {
+			return _numRuns == 0 ? 0 : (double) _totalLifetime / _numRuns;
+		}
+
+		public long getMinLifetime() {
+			return _numRuns == 0 ? 0 : _minLifetime;
+		}
+
+		public long getMaxLifetime() {
+			return _maxLifetime;
+		}
+
+		public double getMeanPopulation() {
+			return _numRuns == 0 ? 0 : (double) _totalPopulation / _numRuns;
+		}
+
+		public long getMinPopulation() {
+			return _numRuns == 0 ? 0 : _minPopulation;
+		}
+
+		public long getMaxPopulation() {
+			return _maxPopulation;
+		}
+
+		/* the number of runs for every period (0 == no cycle was found) */
+		public Map<Long, Long> getPeriodCounts() {
+			return new TreeMap<>(_periods);
+		}
+
+		/* the number of runs for every lifetime range [2^k, 2^(k+1)), keyed by 2^k (0 == a lifetime of 0) */
+		public Map<Long, Long> getLifetimeCounts() {
+			return new TreeMap<>(_lifetimes);
+		}
+
+		/* print the summary */
+		public void print(PrintStream out) {
+			out.printf("Runs:             %d%n", _numRuns);
+			out.printf("Cycles found:     %d (%d died out)%n", _numCycles, _numDied);
+			out.printf("Lifetime:         min %d, mean %.1f, max %d%n", getMinLifetime(), getMeanLifetime(), _maxLifetime);
+			out.printf("Final population: min %d, mean %.1f, max %d%n", getMinPopulation(), getMeanPopulation(), _maxPopulation);
+			out.println("Lifetimes:");
+			for (Map.Entry<Long, Long> entry : _lifetimes.entrySet()) {
+				long from = entry.getKey();
+				out.printf("  %8d-%-8d %d%n", from, Math.max(from, from * 2 - 1), entry.getValue());
+			}
+			out.println("Periods:");
+			for (Map.Entry<Long, Long> entry : _periods.entrySet())
+				out.printf("  %-17s %d%n", entry.getKey() == 0 ? "none" : entry.getKey().toString(), entry.getValue());
+		}
+	}
+
+	/*
+	 * @param numRows - the number of rows of every board
+	 * @param numColumns - the number of columns of every board
+	 * @param maxGenerations - the number of generations after which a run that did not reach a cycle is stopped
+	 * Throws exception if illegal input
+	 */
+	public LifeEnsembleRunner(int numRows, int numColumns, long maxGenerations) throws Exception {
+		if (numRows <= 0 || numColumns <= 0 || maxGenerations < 0)
+			throw new Exception("numRows and numColumns must be positive and maxGenerations not negative");
+		_numRows = numRows;
+		_numColumns = numColumns;
+		_maxGenerations = maxGenerations;
+	}
+
+	/* the longest period of the cycles that are detected (default 64) */
+	public void setCycleHistory(int cycleHistory) throws Exception {
+		if (cycleHistory <= 0)
+			throw new Exception("cycleHistory must be positive");
+		_cycleHistory = cycleHistory;
+	}
+
+	public void setRule(LifeRule rule) throws Exception {
+		if (rule == null)
+			throw new Exception("rule must be given");
+		_rule = rule;
+	}
+
+	public void setTorus(boolean torus) {
+		_torus = torus;
+	}
+
+	/* the number of runs done at once (default: the number of cores) */
+	public void setNumThreads(int numThreads) throws Exception {
+		if (numThreads <= 0)
+			throw new Exception("numThreads must be positive");
+		_numThreads = numThreads;
+	}
+
+	/* Do numRuns runs with seeds drawn from the given ensemble seed, and return their summary.
+	 * The listener (may be null) gets every result as soon as the run is done (one at a time, in the order they finish).
+	 * Throws exception if a run failed */
+	public Summary run(int numRuns, long seed, Consumer<RunResult> listener) throws Exception {
+		if (numRuns < 0)
+			throw new Exception("numRuns must not be negative");
+		SplittableRandom random = new SplittableRandom(seed);
+		Summary summary = new Summary();
+		List<Callable<Void>> runs = new ArrayList<>(numRuns);
+		for (int i=0; i<numRuns; ++i) {
+			final int index = i;
+			final long runSeed = random.nextLong();
+			runs.add(() -> {
+				RunResult result = runOne(index, runSeed);
+				synchronized (summary) {
+					summary.add(result);
+					if (listener != null)
+						listener.accept(result);
+				}
+				return null;
+			});
+		}
+		ForkJoinPool pool = new ForkJoinPool(_numThreads);
+		try {
+			for (Future<Void> run : pool.invokeAll(runs))
+				run.get();   // rethrows the failure of a run, if any
+		} finally {
+			pool.shutdown();
+		}
+		return summary;
+	}
+
+	/* run one board until it reaches a cycle or maxGenerations */
+	private RunResult runOne(int index, long seed) throws Exception {
+		LifeSimulator simulator = new LifeSimulator(_numRows, _numColumns, seed);
+		simulator.setRule(_rule);
+		simulator.setTorus(_torus);
+		simulator.setCycleDetection(_cycleHistory, true);
+		while (!simulator.isStopped() && simulator.getGeneration() < _maxGenerations)
+			simulator.doStep();
+		long lifetime = simulator.isCycleDetected() ? simulator.getCycleStartGeneration() : simulator.getGeneration();
+		return new RunResult(index, seed, lifetime, simulator.getCyclePeriod(), simulator.getPopulation());
+	}
+
+}
@@ -1,11 +1,19 @@
+import java.util.Arrays;
+
 /**
  * @author Liora Ferrero
  *
  * Data structure to hold the cells of the matrix, and accessor methods
+ *
+ * The cells are surrounded by a halo: one extra row above and below and one extra column on each side,
+ * so every cell has 8 neighbours in the array and the stepping kernels need no bounds checks.
+ * On a bounded board the halo stays dead. On a torus (the edges wrap around) it holds copies
+ * of the opposite edges, refreshed once per generation by refreshHalo.
  */
 public class LifeMatrix {
 	private int _numRows, _numColumns;
-	private boolean[][] _content;
+	private boolean[][] _content;   // _content[row+1][column+1] == the cell (row, column); the rest is the halo
+	private boolean _torus = false;
 	
 	/*
 	 * @param numRows - the number of rows
@@ -17,7 +25,18 @@ public class LifeMatrix {
 			throw new Exception("numRows and numColumns must be positive");
 		_numRows = numRows;
 		_numColumns = numColumns;
-		_content = new boolean[numRows][numColumns];
+		_content = new boolean[numRows+2][numColumns+2];
+	}
+
+	/*
+	 * @param numRows - the number of rows
+	 * @param numColumns - the number of columns
+	 * @param torus - true == the edges wrap around, false == the cells beyond the edges are dead
+	 * Throws exception if illegal input
+	 */
+	public LifeMatrix(int numRows, int numColumns, boolean torus) throws Exception {
+		this(numRows, numColumns);
+		setTorus(torus);
 	}
 
 	public int getNumRows() {
@@ -28,6 +47,47 @@ public class LifeMatrix {
 		return _numColumns;
 	}
 
+	public boolean isTorus() {
+		return _torus;
+	}
+
+	/* Make the edges wrap around (torus) or not */
+	public void setTorus(boolean torus) {
+		_torus = torus;
+		refreshHalo();
+	}
+
+	/* Direct access to the cells of a row, for the stepping kernels (no index checks).
+	 * The row is padded: the cell of the given column is at index column+1.
+	 * Rows -1 and numRows are the halo rows above and below the board. */
+	boolean[] getRow(int row) {
+		return _content[row+1];
+	}
+
+	/* Copy the opposite edges of the board into the halo (on a torus), or clear it (on a bounded board) */
+	void refreshHalo() {
+		refreshHaloColumns();
+		boolean[] top = _content[0], bottom = _content[_numRows+1];
+		if (_torus) {
+			// the halo rows are copied after the columns, so they include the corners
+			System.arraycopy(_content[_numRows], 0, top, 0, _numColumns+2);
+			System.arraycopy(_content[1], 0, bottom, 0, _numColumns+2);
+		} else {
+			Arrays.fill(top, false);
+			Arrays.fill(bottom, false);
+		}
+	}
+
+	/* Refresh only the halo columns of the rows of the board (the halo rows are left as they are,
+	 * for a board that is a strip of a larger one and gets them from its neighbours) */
+	void refreshHaloColumns() {
+		for (int row=1; row<=_numRows; ++row) {
+			boolean[] cells = _content[row];
+			cells[0] = _torus && cells[_numColumns];
+			cells[_numColumns+1] = _torus && cells[1];
+		}
+	}
+
 	/* Returns true iff the row and column indices are legal for the matrix. */
 	private boolean isLegalIndex(int row, int column) {
 		if (row < 0 || column < 0)
@@ -48,13 +108,13 @@ public class LifeMatrix {
 	 * (if the cell indices are legal) */
 	public boolean getCellValue(int row, int column) throws Exception {
 		verifyLegalIndex(row, column);
-		return _content[row][column];
+		return _content[row+1][column+1];
 	}
 
 	/* sets the given cell (if legal indices) to be alive(true) or not-alive(false) */
 	public boolean setCellValue(int row, int column, boolean value) throws Exception {
 		verifyLegalIndex(row, column);
-		return _content[row][column] = value;
+		return _content[row+1][column+1] = value;
 	}
 
 	/* returns the number of alive neighbors of the given cell (if legal indices) */
@@ -63,32 +123,35 @@ public class LifeMatrix {
 		
 		verifyLegalIndex(row, column);
 
-		/* go over all 8 neighbors of the center cell(row,column), and consider only the legal ones */
+		/* go over all 8 neighbors of the center cell(row,column); on a bounded board the halo is dead,
+		 * and on a torus the indices wrap around (the halo may be stale between generations) */
 		for (int rowIndex=row-1; rowIndex<=row+1; ++rowIndex) {
 			for (int colIndex=column-1; colIndex<=column+1; ++colIndex) {
-				if (!(rowIndex == row && colIndex == column) &&  isLegalIndex(rowIndex, colIndex)) {
-					if (getCellValue(rowIndex, colIndex))
-						result += 1;
+				if (rowIndex == row && colIndex == column)
+					continue;
+				int r = rowIndex, c = colIndex;
+				if (_torus) {
+					r = (r + _numRows) % _numRows;
+					c = (c + _numColumns) % _numColumns;
 				}
+				if (_content[r+1][c+1])
+					result += 1;
 			}
 		}
 		return result;		
 	}
 	
-	/* a function to display the matrix */
+	/* a function to display the matrix (built in one buffer and printed at once) */
 	public void printMatrix() {
-		try {
-			for (int row=0; row<_numRows; ++row) {
-				String rowStr = "";
-				for (int col=0; col<_numColumns; ++col) {
-					// "[+]" == alive cell, "[ ]" == not alive cell
-					rowStr += getCellValue(row, col) ? "[+]" : "[ ]";
-				}
-				System.out.println(rowStr);
+		StringBuilder frame = new StringBuilder(_numRows * (_numColumns * 3 + 1));
+		for (int row=0; row<_numRows; ++row) {
+			for (int col=0; col<_numColumns; ++col) {
+				// "[+]" == alive cell, "[ ]" == not alive cell
+				frame.append(_content[row+1][col+1] ? "[+]" : "[ ]");
 			}
-		} catch (Exception e) {
-			// This is not supposed to happend because we use only legal row and column numbers
+			frame.append(System.lineSeparator());
 		}
+		System.out.print(frame);
 	}
 
 }
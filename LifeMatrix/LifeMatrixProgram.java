@@ -1,3 +1,5 @@
+import java.io.File;
+import java.io.IOException;
 import java.util.Scanner;
 
 /**
@@ -9,15 +11,78 @@ public class LifeMatrixProgram {
 
     private static Scanner scanner = new Scanner( System.in );
 	
-	private final int NUM_ROWS = 10;
-	private final int NUM_COLUMNS = 10;
+	private final static int NUM_ROWS = 10;
+	private final static int NUM_COLUMNS = 10;
 	private LifeSimulator _simulator;
+	private LifeRenderer _renderer = new LifeRenderer(System.out);
+	private Options _options;
+
+	/* The command line options of the program */
+	private static class Options {
+		boolean batch = false;    // run without console interaction and report the throughput
+		int numRows = NUM_ROWS;
+		int numColumns = NUM_COLUMNS;
+		Long seed = null;         // the seed of the random board (null == a different board every run)
+		long generations = 100;   // the number of generations of a batch run
+		long printInterval = 0;   // print the board every that many generations of a batch run (0 == never)
+		int[] viewport = null;    // top, left, rows, columns of the displayed window (null == the whole board)
+		boolean diff = false;     // display only the cells that changed (ANSI terminals)
+		int cycleHistory = 0;     // detect cycles of up to that many generations (0 == no detection)
+		boolean stopOnCycle = false;
+		boolean metrics = false;  // collect per-generation metrics and publish them through JMX and JFR
+		int numThreads = 1;
+		int bandRows = 0;
+		int tileSize = 0;
+		String rule = null;       // the rule, as "B3/S23" (null == the rule of the loaded pattern, or Conway's rule)
+		boolean torus = false;    // the edges of the board wrap around
+		int numWorkers = 0;       // run a batch on that many worker processes (0 == in this process)
+		String loadFile = null;   // a pattern file to start from (instead of a random board)
+		String saveFile = null;   // a pattern file to write the last generation into
+		String checkpointFile = null;   // a file to append checkpoints to (null == no checkpoints)
+		int snapshotInterval = 100;     // a full snapshot every that many generations (deltas in between)
+		boolean resume = false;         // continue from the latest generation in the checkpoint file
+		String mappedFile = null;       // a memory-mapped board file to run a batch in (null == the board is on the heap)
+		int ensembleRuns = 0;     // run that many random boards at once and report statistics (0 == a single board)
+	}
 	
-	private LifeMatrixProgram() {
+	private LifeMatrixProgram(Options options) throws Exception {
+		_options = options;
+		if (options.resume && options.checkpointFile != null && new File(options.checkpointFile).length() > 0) {
+			_simulator = LifeCheckpointReader.resume(new File(options.checkpointFile));
+			System.out.println("Resumed from generation " + _simulator.getGeneration() + " of " + options.checkpointFile);
+		} else if (options.loadFile != null) {
+			File file = new File(options.loadFile);
+			LifeRule rule = options.rule != null ? LifeRule.parse(options.rule) : LifePatternIO.readRule(file);
+			_simulator = new LifeSimulator(LifePatternIO.readFile(file, rule));
+			_simulator.setRule(rule);
+		} else if (options.seed != null)
+			_simulator = new LifeSimulator(options.numRows, options.numColumns, options.seed);
+		else
+			_simulator = new LifeSimulator(options.numRows, options.numColumns);
+		if (options.rule != null)
+			_simulator.setRule(LifeRule.parse(options.rule));
+		if (options.torus)
+			_simulator.setTorus(true);
+		_simulator.setParallelism(options.numThreads, options.bandRows);
+		_simulator.setTileSize(options.tileSize);
+		_simulator.setCycleDetection(options.cycleHistory, options.stopOnCycle);
+		if (options.metrics)
+			_simulator.enableMetrics("main");
+		if (options.checkpointFile != null)
+			_simulator.enableCheckpoints(new File(options.checkpointFile), options.snapshotInterval);
+		if (options.viewport != null)
+			_renderer.setViewport(options.viewport[0], options.viewport[1], options.viewport[2], options.viewport[3]);
+		_renderer.setDiffMode(options.diff);
+		if (options.batch && options.printInterval > 0)
+			_renderer.setFrameSkip((int) Math.min(Integer.MAX_VALUE, options.printInterval - 1));
+	}
+
+	/* Display the current generation through the renderer */
+	private void render() {
 		try {
-			_simulator = new LifeSimulator(NUM_ROWS, NUM_COLUMNS);
-		} catch (Exception e) {
-			// This is not supposed to happend because we use legal row and column numbers
+			_renderer.render(_simulator.getMatrix());
+		} catch (IOException e) {
+			// System.out does not throw IOException
 		}
 	}
 
@@ -31,17 +96,345 @@ public class LifeMatrixProgram {
 	/* Show matrix and do next step until user chooses to quit */
 	public void run() {
 		System.out.println("Welcome to the Life Simulator!");
-		_simulator.printMatrix();
+		render();
 		while (askUser()) {
+			boolean cycleKnown = _simulator.isCycleDetected();
 			_simulator.doStep();
-			_simulator.printMatrix();
+			render();
+			if (!cycleKnown && _simulator.isCycleDetected())
+				System.out.println(describeCycle());
+			if (_simulator.isStopped())
+				break;
 		};
+		saveIfAsked();
+		finishCheckpoints();
 		System.out.println("Goodbye!");
 	}
+
+	/* Run the given number of generations without asking the user, and report the throughput */
+	public void runBatch() {
+		long numCells = (long) _simulator.getMatrix().getNumRows() * _simulator.getMatrix().getNumColumns();
+		long stepNanos = 0;
+		long firstGeneration = _simulator.getGeneration();
+		for (long generation=1; generation<=_options.generations && !_simulator.isStopped(); ++generation) {
+			long start = System.nanoTime();
+			_simulator.doStep();
+			stepNanos += System.nanoTime() - start;
+			if (_options.printInterval > 0)
+				render();   // the renderer skips all but one of every printInterval frames
+		}
+		double seconds = Math.max(stepNanos, 1) / 1e9;
+		long generations = _simulator.getGeneration() - firstGeneration;
+		System.out.printf("Generations:      %d%n", generations);
+		if (firstGeneration > 0)
+			System.out.printf("Last generation:  %d%n", _simulator.getGeneration());
+		System.out.printf("Board:            %d x %d%n", _simulator.getMatrix().getNumRows(), _simulator.getMatrix().getNumColumns());
+		System.out.printf("Rule:             %s%n", _simulator.getRule());
+		System.out.printf("Stepping time:    %.3f s%n", seconds);
+		System.out.printf("Generations/sec:  %.1f%n", generations / seconds);
+		System.out.printf("Cells/sec:        %.4g%n", generations * numCells / seconds);
+		System.out.printf("Final population: %d%n", _simulator.getPopulation());
+		if (_simulator.isCycleDetected())
+			System.out.println(describeCycle());
+		LifeMetrics metrics = _simulator.getMetrics();
+		if (metrics != null) {
+			System.out.printf("Step time p50:    %.3f ms%n", metrics.getStepNanosP50() / 1e6);
+			System.out.printf("Step time p99:    %.3f ms%n", metrics.getStepNanosP99() / 1e6);
+			System.out.printf("Cells evaluated:  %d%n", metrics.getTotalCellsEvaluated());
+		}
+		saveIfAsked();
+		finishCheckpoints();
+	}
+
+	/* Run the given number of generations on worker processes (see LifeCoordinator), and report the throughput.
+	 * The board is never built in this process: every worker fills its own strip (randomly, or from its rows
+	 * of the -load file) and writes it into its own -save file */
+	private static void runDistributed(Options options) {
+		LifeCoordinator coordinator;
+		try {
+			LifeRule rule = options.rule != null ? LifeRule.parse(options.rule) : LifeRule.CONWAY;
+			if (options.loadFile != null) {
+				File file = new File(options.loadFile);
+				if (options.rule == null)
+					rule = LifePatternIO.readRule(file);
+				coordinator = new LifeCoordinator(file, options.numWorkers, options.torus, rule);
+			} else {
+				long seed = options.seed != null ? options.seed : System.nanoTime();
+				coordinator = new LifeCoordinator(options.numRows, options.numColumns, seed, options.numWorkers, options.torus, rule);
+			}
+		} catch (Exception e) {
+			System.out.println("Could not start the workers: " + e.getMessage());
+			return;
+		}
+		try {
+			long start = System.nanoTime();
+			coordinator.advance(options.generations);
+			double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+			long numCells = (long) coordinator.getNumRows() * coordinator.getNumColumns();
+			System.out.printf("Generations:      %d%n", coordinator.getGeneration());
+			System.out.printf("Board:            %d x %d on %d workers%n", coordinator.getNumRows(),
+					coordinator.getNumColumns(), coordinator.getNumWorkers());
+			System.out.printf("Rule:             %s%n", coordinator.getRule());
+			System.out.printf("Stepping time:    %.3f s%n", seconds);
+			System.out.printf("Generations/sec:  %.1f%n", coordinator.getGeneration() / seconds);
+			System.out.printf("Cells/sec:        %.4g%n", coordinator.getGeneration() * numCells / seconds);
+			System.out.printf("Final population: %d%n", coordinator.getPopulation());
+			if (options.saveFile != null) {
+				File file = new File(options.saveFile);
+				coordinator.saveCheckpoint(file);
+				System.out.printf("Saved strips:     %s ... %s%n", LifeCoordinator.partFile(file, 0),
+						LifeCoordinator.partFile(file, coordinator.getNumWorkers()-1));
+			}
+		} catch (Exception e) {
+			System.out.println("The workers failed: " + e.getMessage());
+		} finally {
+			coordinator.shutdown();
+		}
+	}
+
+	/* Run the given number of generations on a board in a memory-mapped file (see MappedLifeSimulator),
+	 * and report the throughput. The board is created from -rows/-columns/-seed, or with -resume continued
+	 * from the last checkpoint in the file; a checkpoint is written every -snapshot generations and at the end */
+	private static void runMapped(Options options) {
+		File file = new File(options.mappedFile);
+		MappedLifeMatrix matrix;
+		boolean resumed = options.resume && file.length() > 0;
+		try {
+			if (resumed) {
+				matrix = MappedLifeMatrix.open(file);
+				System.out.println("Resumed from generation " + matrix.getGeneration() + " of " + options.mappedFile);
+			} else {
+				matrix = MappedLifeMatrix.create(file, options.numRows, options.numColumns);
+			}
+		} catch (Exception e) {
+			System.out.println("Could not open the board file: " + e.getMessage());
+			return;
+		}
+		try {
+			MappedLifeSimulator simulator = new MappedLifeSimulator(matrix);
+			if (!resumed)
+				simulator.initRandom(options.seed != null ? options.seed : System.nanoTime());
+			if (options.rule != null)
+				simulator.setRule(LifeRule.parse(options.rule));
+			simulator.setCheckpointInterval(options.snapshotInterval);
+			long firstGeneration = simulator.getGeneration();
+			long start = System.nanoTime();
+			for (long generation=1; generation<=options.generations; ++generation) {
+				simulator.doStep();
+				if (options.printInterval > 0 && generation % options.printInterval == 0)
+					simulator.printMatrix();
+			}
+			double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+			long generations = simulator.getGeneration() - firstGeneration;
+			long numCells = (long) matrix.getNumRows() * matrix.getNumColumns();
+			System.out.printf("Generations:      %d%n", generations);
+			System.out.printf("Last generation:  %d%n", simulator.getGeneration());
+			System.out.printf("Board:            %d x %d in %s%n", matrix.getNumRows(), matrix.getNumColumns(), options.mappedFile);
+			System.out.printf("Rule:             %s%n", simulator.getRule());
+			System.out.printf("Stepping time:    %.3f s%n", seconds);
+			System.out.printf("Generations/sec:  %.1f%n", generations / seconds);
+			System.out.printf("Cells/sec:        %.4g%n", generations * numCells / seconds);
+			System.out.printf("Final population: %d%n", simulator.getPopulation());
+		} catch (Exception e) {
+			System.out.println("The simulation failed: " + e.getMessage());
+		} finally {
+			try {
+				matrix.close();   // writes the last checkpoint
+			} catch (IOException e) {
+				System.out.println("Could not close the board file: " + e.getMessage());
+			}
+		}
+	}
+
+	/* Run many random boards on all the threads (see LifeEnsembleRunner), and report how they ended */
+	private static void runEnsemble(Options options) {
+		long seed = options.seed != null ? options.seed : System.nanoTime();
+		try {
+			LifeEnsembleRunner runner = new LifeEnsembleRunner(options.numRows, options.numColumns, options.generations);
+			if (options.cycleHistory > 0)
+				runner.setCycleHistory(options.cycleHistory);
+			if (options.rule != null)
+				runner.setRule(LifeRule.parse(options.rule));
+			runner.setTorus(options.torus);
+			if (options.numThreads > 1)
+				runner.setNumThreads(options.numThreads);
+			int reportEvery = Math.max(1, options.ensembleRuns / 10);
+			System.out.printf("Ensemble seed:    %d%n", seed);
+			long start = System.nanoTime();
+			int[] numDone = new int[1];
+			LifeEnsembleRunner.Summary summary = runner.run(options.ensembleRuns, seed, result -> {
+				if (++numDone[0] % reportEvery == 0)
+					System.out.printf("Runs done:        %d of %d%n", numDone[0], options.ensembleRuns);
+			});
+			summary.print(System.out);
+			System.out.printf("Time:             %.3f s%n", (System.nanoTime() - start) / 1e9);
+		} catch (Exception e) {
+			System.out.println("The ensemble failed: " + e.getMessage());
+		}
+	}
+
+	/* A message about the cycle the simulation reached */
+	private String describeCycle() {
+		long period = _simulator.getCyclePeriod();
+		String kind = _simulator.getPopulation() == 0 ? "All cells died" : (period == 1 ? "Still life" : "Oscillator of period " + period);
+		return kind + " from generation " + _simulator.getCycleStartGeneration()
+				+ (_simulator.isStopped() ? " (stopped at generation " + _simulator.getGeneration() + ")" : "");
+	}
+
+	/* Write the current generation into the file given by -save (if any) */
+	private void saveIfAsked() {
+		if (_options.saveFile != null) {
+			try {
+				LifePatternIO.writeFile(_simulator.getMatrix(), new File(_options.saveFile), _simulator.getRule());
+			} catch (Exception e) {
+				System.out.println("Could not save " + _options.saveFile + ": " + e.getMessage());
+			}
+		}
+	}
 	
+	/* Write the checkpoints that are still queued (if any) */
+	private void finishCheckpoints() {
+		try {
+			_simulator.disableCheckpoints();
+		} catch (Exception e) {
+			System.out.println("Could not write the checkpoints: " + e.getMessage());
+		}
+	}
+	
+	/* Print the command line options */
+	private static void printUsage() {
+		System.out.println("Usage: LifeMatrixProgram [-batch] [-rows N] [-columns N] [-seed N] [-generations N] [-interval N]");
+		System.out.println("                         [-rule RULE] [-torus] [-threads N] [-workers N] [-band ROWS] [-tile SIZE] [-load FILE] [-save FILE]");
+		System.out.println("                         [-viewport TOP LEFT ROWS COLUMNS] [-diff] [-cycles N] [-stop-on-cycle] [-metrics]");
+		System.out.println("                         [-checkpoint FILE] [-snapshot N] [-resume] [-mapped FILE] [-ensemble N]");
+		System.out.println("  -batch         run without asking, then report generations/sec, cells/sec and the final population");
+		System.out.println("  -rows N        number of rows of the random board (default " + NUM_ROWS + ")");
+		System.out.println("  -columns N     number of columns of the random board (default " + NUM_COLUMNS + ")");
+		System.out.println("  -seed N        seed of the random board (default: a different board every run)");
+		System.out.println("  -generations N number of generations of a batch run (default 100)");
+		System.out.println("  -interval N    print the board every N generations of a batch run (default 0 == never)");
+		System.out.println("  -rule RULE     the rule of the simulation, e.g. B36/S23 (default: the rule of the -load file, or B3/S23)");
+		System.out.println("  -torus         the edges of the board wrap around (default: the cells beyond them are dead)");
+		System.out.println("  -threads N     calculate every step on N threads (default 1)");
+		System.out.println("  -workers N     run a batch on N worker processes, each owning a strip of rows (default: off);");
+		System.out.println("                 each worker fills its own strip and -save writes one file per strip (FILE.0.rle ...)");
+		System.out.println("  -band ROWS     number of rows each thread calculates at a time (default: automatic)");
+		System.out.println("  -tile SIZE     recalculate only SIZE x SIZE tiles that changed (default: off)");
+		System.out.println("  -load FILE     start from a pattern file (.rle or .cells) instead of a random board");
+		System.out.println("  -save FILE     write the last generation into a pattern file (.rle or .cells)");
+		System.out.println("  -viewport TOP LEFT ROWS COLUMNS\n                 display only this window of the board");
+		System.out.println("  -diff          redraw only the cells that changed (for ANSI terminals)");
+		System.out.println("  -cycles N      detect still lifes and oscillators of period up to N (default 0 == off)");
+		System.out.println("  -stop-on-cycle stop the simulation when a cycle is detected (with -cycles)");
+		System.out.println("  -metrics       collect per-generation metrics (JMX MBean LifeMatrix:type=LifeSimulator,name=\"main\",");
+		System.out.println("                 JFR event life.Generation) and report step time percentiles in batch mode");
+		System.out.println("  -checkpoint FILE\n                 append checkpoints to FILE: snapshots and per-generation deltas, written in the background");
+		System.out.println("  -snapshot N    a full snapshot every N generations of the checkpoints (default 100)");
+		System.out.println("  -resume        continue from the latest generation in the checkpoint (or -mapped) file (if it exists)");
+		System.out.println("  -mapped FILE   run a batch on a board kept in the memory-mapped FILE instead of the heap, for boards");
+		System.out.println("                 larger than memory; checkpointed every -snapshot generations (not with -load, -torus, -workers)");
+		System.out.println("  -ensemble N    run N random boards (seeded from -seed) on all cores, each until it reaches a cycle");
+		System.out.println("                 (-cycles, default 64) or -generations, and report lifetimes, populations and periods");
+	}
+
 	public static void main(String[] args) {
-		LifeMatrixProgram program = new LifeMatrixProgram();
-		program.run();
+		Options options = new Options();
+		try {
+			for (int i=0; i<args.length; ++i) {
+				if (args[i].equals("-batch"))
+					options.batch = true;
+				else if (args[i].equals("-rows") && i+1 < args.length)
+					options.numRows = Integer.parseInt(args[++i]);
+				else if (args[i].equals("-columns") && i+1 < args.length)
+					options.numColumns = Integer.parseInt(args[++i]);
+				else if (args[i].equals("-seed") && i+1 < args.length)
+					options.seed = Long.parseLong(args[++i]);
+				else if (args[i].equals("-generations") && i+1 < args.length)
+					options.generations = Long.parseLong(args[++i]);
+				else if (args[i].equals("-interval") && i+1 < args.length)
+					options.printInterval = Long.parseLong(args[++i]);
+				else if (args[i].equals("-rule") && i+1 < args.length)
+					options.rule = args[++i];
+				else if (args[i].equals("-torus"))
+					options.torus = true;
+				else if (args[i].equals("-threads") && i+1 < args.length)
+					options.numThreads = Integer.parseInt(args[++i]);
+				else if (args[i].equals("-workers") && i+1 < args.length)
+					options.numWorkers = Integer.parseInt(args[++i]);
+				else if (args[i].equals("-band") && i+1 < args.length)
+					options.bandRows = Integer.parseInt(args[++i]);
+				else if (args[i].equals("-tile") && i+1 < args.length)
+					options.tileSize = Integer.parseInt(args[++i]);
+				else if (args[i].equals("-load") && i+1 < args.length)
+					options.loadFile = args[++i];
+				else if (args[i].equals("-save") && i+1 < args.length)
+					options.saveFile = args[++i];
+				else if (args[i].equals("-viewport") && i+4 < args.length) {
+					options.viewport = new int[4];
+					for (int j=0; j<4; ++j)
+						options.viewport[j] = Integer.parseInt(args[++i]);
+				}
+				else if (args[i].equals("-diff"))
+					options.diff = true;
+				else if (args[i].equals("-cycles") && i+1 < args.length)
+					options.cycleHistory = Integer.parseInt(args[++i]);
+				else if (args[i].equals("-stop-on-cycle"))
+					options.stopOnCycle = true;
+				else if (args[i].equals("-metrics"))
+					options.metrics = true;
+				else if (args[i].equals("-checkpoint") && i+1 < args.length)
+					options.checkpointFile = args[++i];
+				else if (args[i].equals("-snapshot") && i+1 < args.length)
+					options.snapshotInterval = Integer.parseInt(args[++i]);
+				else if (args[i].equals("-resume"))
+					options.resume = true;
+				else if (args[i].equals("-mapped") && i+1 < args.length)
+					options.mappedFile = args[++i];
+				else if (args[i].equals("-ensemble") && i+1 < args.length)
+					options.ensembleRuns = Integer.parseInt(args[++i]);
+				else
+					throw new IllegalArgumentException(args[i]);
+			}
+			if (options.numThreads <= 0)
+				throw new IllegalArgumentException("-threads");
+			if (options.numWorkers < 0 || (options.numWorkers > 0 && (!options.batch || options.checkpointFile != null)))
+				throw new IllegalArgumentException("-workers");
+			if (options.mappedFile != null && (!options.batch || options.numWorkers > 0 || options.checkpointFile != null
+					|| options.loadFile != null || options.torus))
+				throw new IllegalArgumentException("-mapped");
+			if (options.ensembleRuns < 0)
+				throw new IllegalArgumentException("-ensemble");
+			if (options.snapshotInterval <= 0)
+				throw new IllegalArgumentException("-snapshot");
+			if (options.generations < 0 || options.printInterval < 0)
+				throw new IllegalArgumentException("-generations");
+		} catch (IllegalArgumentException e) {
+			printUsage();
+			return;
+		}
+		if (options.ensembleRuns > 0) {
+			runEnsemble(options);
+			return;
+		}
+		if (options.numWorkers > 0) {
+			runDistributed(options);
+			return;
+		}
+		if (options.mappedFile != null) {
+			runMapped(options);
+			return;
+		}
+		LifeMatrixProgram program;
+		try {
+			program = new LifeMatrixProgram(options);
+		} catch (Exception e) {
+			System.out.println("Could not start the simulation: " + e.getMessage());
+			return;
+		}
+		if (options.batch)
+			program.runBatch();
+		else
+			program.run();
 	}
 
 }
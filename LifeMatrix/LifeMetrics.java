@@ -0,0 +1,147 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.ObjectName;
+
+/**
+ * Per-generation metrics of a LifeSimulator: population, births and deaths, cells evaluated
+ * and step time, with a histogram of the step times for percentiles.
+ * The metrics can be published as an MBean (see LifeMetricsMBean), and every recorded step
+ * is also committed as a GenerationEvent when a Flight Recording is running.
+ *
+ * The histogram has 16 linear sub-buckets in every power of 2 of nanoseconds,
+ * so a percentile is known within 1/16 of its value, in a fixed array of counters.
+ */
+public class LifeMetrics implements LifeMetricsMBean {
+
+	private final static int SUB_BUCKET_BITS = 4;
+	private final static int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	private volatile long _generation, _population;
+	private volatile long _lastBirths, _lastDeaths, _lastCellsEvaluated, _lastStepNanos;
+	private volatile long _stepCount, _totalCellsEvaluated;
+	private AtomicLongArray _histogram = new AtomicLongArray(64 * SUB_BUCKETS);
+	private ObjectName _objectName;
+
+	/* Record one step (called by the simulating thread) */
+	void record(long generation, long population, long births, long deaths, long cellsEvaluated, long stepNanos) {
+		_generation = generation;
+		_population = population;
+		_lastBirths = births;
+		_lastDeaths = deaths;
+		_lastCellsEvaluated = cellsEvaluated;
+		_lastStepNanos = stepNanos;
+		_stepCount++;
+		_totalCellsEvaluated += cellsEvaluated;
+		_histogram.incrementAndGet(bucketOf(stepNanos));
+	}
+
+	/* Publish the metrics through the platform MBean server, under the given name.
+	 * Throws exception if the name is illegal or already taken */
+	public void register(String name) throws Exception {
+		_objectName = new ObjectName("LifeMatrix:type=LifeSimulator,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, _objectName);
+	}
+
+	/* Stop publishing the metrics (if they were published) */
+	public void unregister() throws Exception {
+		if (_objectName != null) {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(_objectName);
+			_objectName = null;
+		}
+	}
+
+	/* the histogram bucket of a value: 16 buckets for every power of 2 (values below 16 have a bucket each) */
+	private static int bucketOf(long nanos) {
+		if (nanos < SUB_BUCKETS)
+			return (int) Math.max(0, nanos);
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);   // >= SUB_BUCKET_BITS
+		int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	/* the highest value that falls into the bucket */
+	private static long bucketUpperBound(int bucket) {
+		if (bucket < SUB_BUCKETS)
+			return bucket;
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long subBucket = bucket % SUB_BUCKETS;
+		return ((SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+
+	/* the step time (in nanoseconds) below which the given fraction of the steps fall */
+	public long getStepNanosPercentile(double fraction) {
+		long total = 0;
+		for (int i=0; i<_histogram.length(); ++i)
+			total += _histogram.get(i);
+		if (total == 0)
+			return 0;
+		long rank = (long) Math.ceil(fraction * total);
+		long seen = 0;
+		for (int i=0; i<_histogram.length(); ++i) {
+			seen += _histogram.get(i);
+			if (seen >= rank)
+				return bucketUpperBound(i);
+		}
+		return bucketUpperBound(_histogram.length() - 1);
+	}
+
+	@Override
+	public long getStepNanosP50() {
+		return getStepNanosPercentile(0.50);
+	}
+
+	@Override
+	public long getStepNanosP99() {
+		return getStepNanosPercentile(0.99);
+	}
+
+	@Override
+	public long getGeneration() {
+		return _generation;
+	}
+
+	@Override
+	public long getPopulation() {
+		return _population;
+	}
+
+	@Override
+	public long getLastBirths() {
+		return _lastBirths;
+	}
+
+	@Override
+	public long getLastDeaths() {
+		return _lastDeaths;
+	}
+
+	@Override
+	public long getLastCellsEvaluated() {
+		return _lastCellsEvaluated;
+	}
+
+	@Override
+	public long getLastStepNanos() {
+		return _lastStepNanos;
+	}
+
+	@Override
+	public long getStepCount() {
+		return _stepCount;
+	}
+
+	@Override
+	public long getTotalCellsEvaluated() {
+		return _totalCellsEvaluated;
+	}
+
+	@Override
+	public void reset() {
+		_stepCount = 0;
+		_totalCellsEvaluated = 0;
+		for (int i=0; i<_histogram.length(); ++i)
+			_histogram.set(i, 0);
+	}
+
+}
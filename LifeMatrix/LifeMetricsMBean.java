@@ -0,0 +1,31 @@
+/**
+ * The management interface of LifeMetrics, as published through JMX.
+ */
+public interface LifeMetricsMBean {
+
+	long getGeneration();
+
+	long getPopulation();
+
+	long getLastBirths();
+
+	long getLastDeaths();
+
+	long getLastCellsEvaluated();
+
+	long getLastStepNanos();
+
+	long getStepCount();
+
+	long getTotalCellsEvaluated();
+
+	/* the median step time, in nanoseconds (approximated by the histogram, within 1/16 of the value) */
+	long getStepNanosP50();
+
+	/* the 99th percentile of the step time, in nanoseconds (approximated by the histogram) */
+	long getStepNanosP99();
+
+	/* forget all the recorded steps */
+	void reset();
+
+}
@@ -0,0 +1,328 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Reading and writing Life patterns in the standard RLE (.rle) and plaintext (.cells) formats.
+ * The readers consume their input one character at a time and the writers emit it one run at a time,
+ * so a pattern is never held as a whole string: memory is bounded by the board itself
+ * (or, for plaintext input whose size is not known in advance, by the number of alive cells).
+ * A strip of rows can also be read on its own (readStrip), for boards that do not fit in one process.
+ */
+public class LifePatternIO {
+
+	/* the maximal length of an RLE line, as recommended by the format */
+	private final static int RLE_LINE_LENGTH = 70;
+
+	private LifePatternIO() {
+	}
+
+	/* Read a pattern file, in RLE format if its name ends with ".rle" and in plaintext format otherwise */
+	public static LifeMatrix readFile(File file) throws Exception {
+		return readFile(file, null);
+	}
+
+	/* Read a pattern file of the given rule (null == any rule).
+	 * Throws exception if the file is not a legal pattern, or its RLE header names another rule */
+	public static LifeMatrix readFile(File file, LifeRule rule) throws Exception {
+		try (Reader in = new BufferedReader(new FileReader(file))) {
+			return isRle(file) ? readRle(in, rule) : readPlaintext(in);
+		}
+	}
+
+	/* Returns the rule of the pattern in a file: the rule of its RLE header,
+	 * or Conway's rule if it names none (and for plaintext files, which cannot name one).
+	 * Throws exception if the header is not legal */
+	public static LifeRule readRule(File file) throws Exception {
+		if (!isRle(file))
+			return LifeRule.CONWAY;
+		try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+			LifeRule rule = readRleHeader(in).rule;
+			return rule != null ? rule : LifeRule.CONWAY;
+		}
+	}
+
+	private static boolean isRle(File file) {
+		return file.getName().toLowerCase().endsWith(".rle");
+	}
+
+	/* Returns the size of the pattern in a file, as {numRows, numColumns}
+	 * (read from the RLE header, or by scanning a plaintext file without keeping its cells).
+	 * Throws exception if the file is not a legal pattern */
+	public static int[] readSize(File file) throws Exception {
+		return readSize(file, null);
+	}
+
+	/* Returns the size of the pattern in a file of the given rule (null == any rule), as {numRows, numColumns}.
+	 * Throws exception if the file is not a legal pattern, or its RLE header names another rule */
+	public static int[] readSize(File file, LifeRule rule) throws Exception {
+		try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+			if (isRle(file)) {
+				RleHeader header = readRleHeader(in);
+				header.checkRule(rule);
+				return new int[] {header.numRows, header.numColumns};
+			}
+			return parsePlaintext(in, (row, column) -> { });
+		}
+	}
+
+	/* Read the rows [firstRow, firstRow + strip.getNumRows()) of the pattern in a file into the strip
+	 * (cells beyond its columns are dropped), holding only the strip in memory.
+	 * Throws exception if the file is not a legal pattern */
+	public static void readStrip(File file, int firstRow, LifeMatrix strip) throws Exception {
+		CellSink sink = (row, column) -> {
+			if (row >= firstRow && row - firstRow < strip.getNumRows() && column < strip.getNumColumns())
+				strip.getRow(row - firstRow)[column + 1] = true;
+		};
+		try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+			if (isRle(file)) {
+				parseRle(in, readRleHeader(in), sink);
+			} else {
+				parsePlaintext(in, sink);
+			}
+		}
+	}
+
+	/* Receives the alive cells of a pattern while it is read */
+	private interface CellSink {
+		void alive(int row, int column) throws Exception;
+	}
+
+	/* Write a pattern file, in RLE format if its name ends with ".rle" and in plaintext format otherwise */
+	public static void writeFile(LifeMatrix matrix, File file) throws Exception {
+		writeFile(matrix, file, LifeRule.CONWAY);
+	}
+
+	/* Write a pattern file of the given rule (the rule is recorded only in the RLE header) */
+	public static void writeFile(LifeMatrix matrix, File file, LifeRule rule) throws Exception {
+		try (Writer out = new BufferedWriter(new FileWriter(file))) {
+			if (isRle(file))
+				writeRle(matrix, out, rule);
+			else
+				writePlaintext(matrix, out);
+		}
+	}
+
+	/* Read a pattern in RLE format: '#' comment lines, a "x = N, y = M[, rule = R]" header line,
+	 * then runs of "<count><tag>" where tag is 'b' (dead), 'o' (alive), '$' (end of row) or '!' (end of pattern).
+	 * Throws exception if the input is not a legal RLE pattern */
+	public static LifeMatrix readRle(Reader in) throws Exception {
+		return readRle(in, null);
+	}
+
+	/* Read a pattern in RLE format of the given rule (null == any rule).
+	 * Throws exception if the input is not a legal RLE pattern, or its header names another rule */
+	public static LifeMatrix readRle(Reader in, LifeRule rule) throws Exception {
+		BufferedReader reader = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+		RleHeader header = readRleHeader(reader);
+		header.checkRule(rule);
+		LifeMatrix matrix = new LifeMatrix(Math.max(1, header.numRows), Math.max(1, header.numColumns));
+		parseRle(reader, header, (row, column) -> matrix.getRow(row)[column + 1] = true);
+		return matrix;
+	}
+
+	/* The header line of an RLE pattern */
+	private static class RleHeader {
+		int numRows = -1, numColumns = -1;
+		LifeRule rule = null;   // null == the header names no rule
+
+		/* Throws exception if the header names a rule other than the given one (null == any rule) */
+		void checkRule(LifeRule expected) throws Exception {
+			if (expected != null && rule != null && !rule.equals(expected))
+				throw new Exception("The pattern is of rule " + rule + ", not " + expected);
+		}
+	}
+
+	/* read the comment lines and the header line of an RLE pattern */
+	private static RleHeader readRleHeader(BufferedReader reader) throws Exception {
+		String line;
+		do {
+			line = reader.readLine();
+			if (line == null)
+				throw new Exception("RLE pattern has no header line");
+		} while (line.startsWith("#") || line.trim().isEmpty());
+
+		RleHeader header = new RleHeader();
+		for (String field : line.split(",")) {
+			String[] keyValue = field.split("=");
+			if (keyValue.length != 2)
+				continue;
+			String key = keyValue[0].trim();
+			String value = keyValue[1].trim();
+			if (key.equals("x"))
+				header.numColumns = Integer.parseInt(value);
+			else if (key.equals("y"))
+				header.numRows = Integer.parseInt(value);
+			else if (key.equals("rule"))
+				header.rule = LifeRule.parse(value.split(":")[0]);   // (drop a bounded grid suffix, as in "B3/S23:T100,80")
+		}
+		if (header.numColumns < 0 || header.numRows < 0)
+			throw new Exception("Illegal RLE header: " + line);
+		return header;
+	}
+
+	/* read the runs of an RLE pattern (after its header), passing the alive cells to the sink.
+	 * No run may go beyond the size in the header, so a huge count is rejected before it can overflow */
+	private static void parseRle(BufferedReader reader, RleHeader header, CellSink sink) throws Exception {
+		int numRows = header.numRows, numColumns = header.numColumns;
+		int maxRun = Math.max(numRows, numColumns);
+		int row = 0, column = 0;
+		long count = 0;
+		int ch;
+		while ((ch = reader.read()) != -1 && ch != '!') {
+			if (ch >= '0' && ch <= '9') {
+				count = count * 10 + (ch - '0');
+				if (count > maxRun)
+					throw new Exception("RLE run count exceeds the pattern size at row " + row);
+				continue;
+			}
+			if (Character.isWhitespace(ch))
+				continue;
+			int run = count == 0 ? 1 : (int) count;
+			count = 0;
+			if (ch == '$') {
+				if (run > numRows - row)
+					throw new Exception("RLE pattern exceeds its header size at row " + row);
+				row += run;
+				column = 0;
+			} else if (ch == 'b' || ch == '.') {
+				if (run > numColumns - column)
+					throw new Exception("RLE pattern exceeds its header size at row " + row);
+				column += run;
+			} else if (Character.isLetter(ch)) {   // 'o', or a state letter of a multi-state pattern
+				if (row >= numRows || run > numColumns - column)
+					throw new Exception("RLE pattern exceeds its header size at row " + row);
+				for (int i=0; i<run; ++i)
+					sink.alive(row, column++);
+			} else {
+				throw new Exception("Illegal character in RLE pattern: " + (char) ch);
+			}
+		}
+	}
+
+	/* Read a pattern in plaintext format: '!' comment lines, then one line per row
+	 * with '.' for a dead cell and 'O' (or '*') for an alive one.
+	 * Throws exception if the input is not a legal plaintext pattern */
+	public static LifeMatrix readPlaintext(Reader in) throws Exception {
+		// the size is known only at the end, so the alive cells are collected first (packed as row<<32|column)
+		long[][] cells = { new long[64] };
+		int[] numCells = { 0 };
+		int[] size = parsePlaintext(in, (row, column) -> {
+			if (numCells[0] == cells[0].length)
+				cells[0] = Arrays.copyOf(cells[0], cells[0].length * 2);
+			cells[0][numCells[0]++] = ((long) row << 32) | column;
+		});
+
+		LifeMatrix matrix = new LifeMatrix(Math.max(1, size[0]), Math.max(1, size[1]));
+		for (int i=0; i<numCells[0]; ++i)
+			matrix.setCellValue((int) (cells[0][i] >>> 32), (int) cells[0][i], true);
+		return matrix;
+	}
+
+	/* read a plaintext pattern, passing the alive cells to the sink, and return its size {numRows, numColumns} */
+	private static int[] parsePlaintext(Reader in, CellSink sink) throws Exception {
+		int row = 0, column = 0, numColumns = 0;
+		boolean comment = false, lineStart = true;
+		int ch;
+		while ((ch = in.read()) != -1) {
+			if (ch == '\n') {
+				if (!comment)
+					row++;
+				comment = false;
+				lineStart = true;
+				column = 0;
+				continue;
+			}
+			if (lineStart && ch == '!')
+				comment = true;
+			lineStart = false;
+			if (comment || ch == '\r')
+				continue;
+			if (ch == 'O' || ch == '*') {
+				sink.alive(row, column);
+			} else if (ch != '.') {
+				throw new Exception("Illegal character in plaintext pattern: " + (char) ch);
+			}
+			column++;
+			numColumns = Math.max(numColumns, column);
+		}
+		if (column > 0)
+			row++;   // the last line had no line break
+		return new int[] {row, numColumns};
+	}
+
+	/* Write the matrix in RLE format (lines of at most RLE_LINE_LENGTH characters) */
+	public static void writeRle(LifeMatrix matrix, Writer out) throws Exception {
+		writeRle(matrix, out, LifeRule.CONWAY);
+	}
+
+	/* Write the matrix in RLE format, with the given rule in the header */
+	public static void writeRle(LifeMatrix matrix, Writer out, LifeRule rule) throws Exception {
+		out.write("x = " + matrix.getNumColumns() + ", y = " + matrix.getNumRows() + ", rule = " + rule + "\n");
+		RleLineWriter line = new RleLineWriter(out);
+		int pendingRows = 0;   // row ends not written yet (empty rows are merged into one "<n>$")
+		for (int row=0; row<matrix.getNumRows(); ++row) {
+			boolean[] cells = matrix.getRow(row);   // padded: column c is at index c+1
+			int column = 0;
+			while (column < matrix.getNumColumns()) {
+				boolean value = cells[column + 1];
+				int run = 1;
+				while (column + run < matrix.getNumColumns() && cells[column + run + 1] == value)
+					run++;
+				if (value || column + run < matrix.getNumColumns()) {   // trailing dead cells are not written
+					if (pendingRows > 0) {
+						line.writeRun(pendingRows, '$');
+						pendingRows = 0;
+					}
+					line.writeRun(run, value ? 'o' : 'b');
+				}
+				column += run;
+			}
+			pendingRows++;
+		}
+		line.writeRun(1, '!');
+		out.write('\n');
+		out.flush();
+	}
+
+	/* Writes RLE runs, breaking the lines at RLE_LINE_LENGTH characters (a run is never split) */
+	private static class RleLineWriter {
+		private Writer _out;
+		private int _lineLength = 0;
+
+		RleLineWriter(Writer out) {
+			_out = out;
+		}
+
+		void writeRun(int count, char tag) throws IOException {
+			String countStr = count > 1 ? Integer.toString(count) : "";
+			int length = countStr.length() + 1;
+			if (_lineLength + length > RLE_LINE_LENGTH) {
+				_out.write('\n');
+				_lineLength = 0;
+			}
+			_out.write(countStr);
+			_out.write(tag);
+			_lineLength += length;
+		}
+	}
+
+	/* Write the matrix in plaintext format */
+	public static void writePlaintext(LifeMatrix matrix, Writer out) throws Exception {
+		out.write("!Generated by LifeMatrix\n");
+		for (int row=0; row<matrix.getNumRows(); ++row) {
+			boolean[] cells = matrix.getRow(row);   // padded: column c is at index c+1
+			for (int column=0; column<matrix.getNumColumns(); ++column)
+				out.write(cells[column + 1] ? 'O' : '.');
+			out.write('\n');
+		}
+		out.flush();
+	}
+
+}
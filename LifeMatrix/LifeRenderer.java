@@ -0,0 +1,114 @@
+import java.io.Flushable;
+import java.io.IOException;
+
+/**
+ * Renders generations of a LifeMatrix as text, one whole frame at a time.
+ * Every frame is built in a single reusable buffer and written to the output with one call.
+ * Only a viewport (a window of the board) is rendered, frames can be skipped,
+ * and in diff mode only the cells that changed since the last rendered frame are written,
+ * as ANSI cursor movements followed by the new cell.
+ */
+public class LifeRenderer {
+
+	private final static String ALIVE = "[+]", DEAD = "[ ]";
+	private final static int CELL_WIDTH = 3;
+	private final static String ESC = "\u001b[";
+
+	private Appendable _out;
+	private StringBuilder _frame = new StringBuilder();
+	private int _top = 0, _left = 0;
+	private int _numRows = Integer.MAX_VALUE, _numColumns = Integer.MAX_VALUE;
+	private int _frameSkip = 0;
+	private long _frameCount = 0;
+	private boolean _diffMode = false;
+	private boolean[] _previous = null;   // the cells of the viewport in the last rendered frame (diff mode)
+
+	/* @param out - where the frames are written (e.g. System.out) */
+	public LifeRenderer(Appendable out) {
+		_out = out;
+	}
+
+	/* Render only the window of numRows x numColumns cells starting at (top, left).
+	 * Throws exception if illegal input */
+	public void setViewport(int top, int left, int numRows, int numColumns) throws Exception {
+		if (top < 0 || left < 0 || numRows <= 0 || numColumns <= 0)
+			throw new Exception("Illegal viewport");
+		_top = top;
+		_left = left;
+		_numRows = numRows;
+		_numColumns = numColumns;
+		_previous = null;
+	}
+
+	/* Render only the last frame of every (frameSkip + 1) calls to render() */
+	public void setFrameSkip(int frameSkip) {
+		_frameSkip = Math.max(0, frameSkip);
+	}
+
+	/* In diff mode, after a first full frame only the changed cells are written (for ANSI terminals) */
+	public void setDiffMode(boolean diffMode) {
+		_diffMode = diffMode;
+		_previous = null;
+	}
+
+	/* Render the matrix (unless this frame is skipped) */
+	public void render(LifeMatrix matrix) throws IOException {
+		if (++_frameCount % (_frameSkip + 1) != 0)
+			return;
+		int numRows = Math.max(0, Math.min(_numRows, matrix.getNumRows() - _top));
+		int numColumns = Math.max(0, Math.min(_numColumns, matrix.getNumColumns() - _left));
+		_frame.setLength(0);
+		if (!_diffMode)
+			appendFullFrame(matrix, numRows, numColumns);
+		else if (_previous == null || _previous.length != numRows * numColumns)
+			appendFirstDiffFrame(matrix, numRows, numColumns);
+		else
+			appendChanges(matrix, numRows, numColumns);
+		_out.append(_frame);
+		if (_out instanceof Flushable)
+			((Flushable) _out).flush();
+	}
+
+	private void appendFullFrame(LifeMatrix matrix, int numRows, int numColumns) {
+		for (int row=0; row<numRows; ++row) {
+			boolean[] cells = matrix.getRow(_top + row);   // padded: column c is at index c+1
+			for (int col=0; col<numColumns; ++col)
+				_frame.append(cells[_left + col + 1] ? ALIVE : DEAD);
+			_frame.append('\n');
+		}
+	}
+
+	/* clear the screen and draw the whole viewport, remembering it for the next frames */
+	private void appendFirstDiffFrame(LifeMatrix matrix, int numRows, int numColumns) {
+		_previous = new boolean[numRows * numColumns];
+		_frame.append(ESC).append("H").append(ESC).append("2J");
+		for (int row=0; row<numRows; ++row) {
+			boolean[] cells = matrix.getRow(_top + row);
+			for (int col=0; col<numColumns; ++col) {
+				boolean value = cells[_left + col + 1];
+				_previous[row * numColumns + col] = value;
+				_frame.append(value ? ALIVE : DEAD);
+			}
+			_frame.append('\n');
+		}
+	}
+
+	/* move the cursor to every cell that changed and draw it */
+	private void appendChanges(LifeMatrix matrix, int numRows, int numColumns) {
+		for (int row=0; row<numRows; ++row) {
+			boolean[] cells = matrix.getRow(_top + row);
+			for (int col=0; col<numColumns; ++col) {
+				boolean value = cells[_left + col + 1];
+				int index = row * numColumns + col;
+				if (_previous[index] != value) {
+					_previous[index] = value;
+					_frame.append(ESC).append(row + 1).append(';').append(col * CELL_WIDTH + 1).append('H');
+					_frame.append(value ? ALIVE : DEAD);
+				}
+			}
+		}
+		// leave the cursor below the board
+		_frame.append(ESC).append(numRows + 1).append(";1H");
+	}
+
+}
@@ -0,0 +1,116 @@
+/**
+ * A Life-like rule: the numbers of alive neighbours (0-8) for which a dead cell is born,
+ * and for which an alive cell survives. Conway's Life is "B3/S23"; other examples are
+ * HighLife "B36/S23", Seeds "B2/S" and Day & Night "B3678/S34678".
+ *
+ * The rule is compiled into a lookup table indexed by the cell state and the number of neighbours,
+ * and into bit masks for the bit-sliced logic of the packed kernels.
+ */
+public class LifeRule {
+
+	public final static LifeRule CONWAY = new LifeRule(1 << 3, (1 << 2) | (1 << 3));
+
+	private final int _birthMask;      // bit n is set iff a dead cell with n neighbours is born
+	private final int _survivalMask;   // bit n is set iff an alive cell with n neighbours survives
+	private final boolean[] _table = new boolean[18];
+
+	private LifeRule(int birthMask, int survivalMask) {
+		_birthMask = birthMask;
+		_survivalMask = survivalMask;
+		for (int n=0; n<=8; ++n) {
+			_table[n] = (birthMask & (1 << n)) != 0;
+			_table[9 + n] = (survivalMask & (1 << n)) != 0;
+		}
+	}
+
+	/* Parse a rule in "B<digits>/S<digits>" notation (in either order, case insensitive),
+	 * or in the older "<survival digits>/<birth digits>" notation (e.g. "23/3").
+	 * Throws exception if the rule is illegal */
+	public static LifeRule parse(String rule) throws Exception {
+		if (rule == null)
+			throw new Exception("Null rule");
+		String[] parts = rule.trim().toUpperCase().split("/", -1);
+		if (parts.length != 2)
+			throw new Exception("Illegal rule: " + rule);
+		int birthMask, survivalMask;
+		if (parts[0].startsWith("B") && parts[1].startsWith("S")) {
+			birthMask = digitsMask(parts[0].substring(1), rule);
+			survivalMask = digitsMask(parts[1].substring(1), rule);
+		} else if (parts[0].startsWith("S") && parts[1].startsWith("B")) {
+			survivalMask = digitsMask(parts[0].substring(1), rule);
+			birthMask = digitsMask(parts[1].substring(1), rule);
+		} else {
+			survivalMask = digitsMask(parts[0], rule);
+			birthMask = digitsMask(parts[1], rule);
+		}
+		if (birthMask == CONWAY._birthMask && survivalMask == CONWAY._survivalMask)
+			return CONWAY;
+		return new LifeRule(birthMask, survivalMask);
+	}
+
+	private static int digitsMask(String digits, String rule) throws Exception {
+		int mask = 0;
+		for (char ch : digits.toCharArray()) {
+			if (ch < '0' || ch > '8')
+				throw new Exception("Illegal rule: " + rule);
+			mask |= 1 << (ch - '0');
+		}
+		return mask;
+	}
+
+	/* the next state of a cell, given its state and its number of alive neighbours */
+	public boolean nextState(boolean alive, int numNeighbors) {
+		return _table[(alive ? 9 : 0) + numNeighbors];
+	}
+
+	/* the lookup table: index (alive ? 9 : 0) + numNeighbors */
+	boolean[] getTable() {
+		return _table;
+	}
+
+	public int getBirthMask() {
+		return _birthMask;
+	}
+
+	public int getSurvivalMask() {
+		return _survivalMask;
+	}
+
+	public boolean isConway() {
+		return this == CONWAY;
+	}
+
+	/* true iff dead cells without neighbours are born, which an unbounded universe cannot represent */
+	public boolean hasBirthWithoutNeighbors() {
+		return (_birthMask & 1) != 0;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder("B");
+		for (int n=0; n<=8; ++n) {
+			if ((_birthMask & (1 << n)) != 0)
+				result.append(n);
+		}
+		result.append("/S");
+		for (int n=0; n<=8; ++n) {
+			if ((_survivalMask & (1 << n)) != 0)
+				result.append(n);
+		}
+		return result.toString();
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof LifeRule))
+			return false;
+		LifeRule rule = (LifeRule) other;
+		return _birthMask == rule._birthMask && _survivalMask == rule._survivalMask;
+	}
+
+	@Override
+	public int hashCode() {
+		return _birthMask * 512 + _survivalMask;
+	}
+
+}
@@ -1,3 +1,4 @@
+import java.io.File;
 import java.util.Random;
 
 /**
@@ -5,26 +6,79 @@ import java.util.Random;
  *
  * The class for managing the simulation: initialization, calculating next step etc.
  */
-public class LifeSimulator {
+public class LifeSimulator implements LifeEngine {
 
 	/* percent of live cell during initalization */
 	private final static int CHANCE_OF_ALIVE = 50;
 	
 	private int _numRows, _numColumns;
 	private LifeMatrix _matrix;
+	private LifeMatrix _nextMatrix;   // the preallocated buffer for the next generation
+	private ParallelLifeStepper _parallelStepper;   // null == calculate on the calling thread
+	private TiledLifeStepper _tiledStepper;         // null == calculate all the cells every step
+	private LifeRule _rule = LifeRule.CONWAY;
+
+	private long _generation = 0;
+	private long _population;
+	private long _fingerprint;        // see StepStats, updated from the cells that changed in every step
+	private StepStats _stepStats = new StepStats();
+	private CycleDetector _cycleDetector;   // null == no cycle detection
+	private boolean _stopOnCycle = false;
+	private boolean _stopped = false;
+	private LifeMetrics _metrics;     // null == no metrics are collected
+	private LifeCheckpointWriter _checkpointWriter;   // null == no checkpoints are written
+	private int _snapshotInterval;
 	
 	/* the constructor that builds and initializes the matrix */
 	public LifeSimulator(int numRows, int numColumns) throws Exception {
+		this(numRows, numColumns, new Random());
+	}
+
+	/* the constructor that builds and initializes the matrix from the given seed (the same seed gives the same board) */
+	public LifeSimulator(int numRows, int numColumns, long seed) throws Exception {
+		this(numRows, numColumns, new Random(seed));
+	}
+
+	private LifeSimulator(int numRows, int numColumns, Random random) throws Exception {
 		_numRows = numRows;
 		_numColumns = numColumns;
 		_matrix = new LifeMatrix(numRows, numColumns);
-		initMatrix();
+		_nextMatrix = new LifeMatrix(numRows, numColumns);
+		initMatrix(random);
+		countCells();
+	}
+
+	/* the constructor that starts the simulation from a copy of the given matrix */
+	public LifeSimulator(LifeMatrix initial) throws Exception {
+		_numRows = initial.getNumRows();
+		_numColumns = initial.getNumColumns();
+		_matrix = new LifeMatrix(_numRows, _numColumns);
+		_nextMatrix = new LifeMatrix(_numRows, _numColumns);
+		for (int row=0; row<_numRows; ++row)
+			System.arraycopy(initial.getRow(row), 1, _matrix.getRow(row), 1, _numColumns);
+		countCells();
+		if (initial.isTorus())
+			setTorus(true);
+	}
+
+	/* calculate the population and the fingerprint of the current generation from scratch */
+	private void countCells() {
+		_population = 0;
+		_fingerprint = 0;
+		for (int row=0; row<_numRows; ++row) {
+			boolean[] cells = _matrix.getRow(row);
+			for (int column=0; column<_numColumns; ++column) {
+				if (cells[column+1]) {
+					_population++;
+					_fingerprint += StepStats.cellHash((long) row * _numColumns + column);
+				}
+			}
+		}
 	}
 	
 	/* initialize the matrix with random alive or not alive cells */
-	private void initMatrix() {
+	private void initMatrix(Random random) {
 		try {
-			Random random = new Random();
 			for (int row=0; row<_numRows; ++row) {
 				for (int column=0; column<_numColumns; ++column) {
 					// generate alive cells, with CHANCE_OF_ALIVE chance
@@ -37,39 +91,295 @@ public class LifeSimulator {
 		}
 	}
 	
-	/* a function for calculating a 'new generation' in the matrix, based on the 'old generation' matrix */
-	public void doStep() {
+	/* Make the edges of the board wrap around (torus) or not (the cells beyond the edges are dead) */
+	public void setTorus(boolean torus) throws Exception {
+		_matrix.setTorus(torus);
+		_nextMatrix.setTorus(torus);
+		if (_tiledStepper != null) {
+			_tiledStepper.setTorus(torus);
+			_tiledStepper.invalidate();
+		}
+	}
+
+	public boolean isTorus() {
+		return _matrix.isTorus();
+	}
+
+	/* Set the rule of the next generations (LifeRule.CONWAY by default) */
+	public void setRule(LifeRule rule) throws Exception {
+		if (rule == null)
+			throw new Exception("rule must be given");
+		_rule = rule;
+		if (_tiledStepper != null)
+			_tiledStepper.invalidate();
+	}
+
+	public LifeRule getRule() {
+		return _rule;
+	}
+
+	/* Calculate the next generations on numThreads threads, in bands of bandRows rows
+	 * (bandRows 0 or less == choose automatically). numThreads == 1 returns to the serial calculation. */
+	public void setParallelism(int numThreads, int bandRows) throws Exception {
+		if (numThreads <= 0)
+			throw new Exception("numThreads must be positive");
+		if (_parallelStepper != null) {
+			_parallelStepper.shutdown();
+			_parallelStepper = null;
+		}
+		if (numThreads > 1)
+			_parallelStepper = new ParallelLifeStepper(_numRows, numThreads, bandRows);
+	}
+
+	/* Calculate only the tiles (squares of tileSize x tileSize cells) that changed in the last step
+	 * and their neighbours; tileSize 0 or less == calculate all the cells every step.
+	 * The tiled calculation takes precedence over the parallel one. */
+	public void setTileSize(int tileSize) throws Exception {
+		_tiledStepper = tileSize > 0 ? new TiledLifeStepper(_numRows, _numColumns, tileSize) : null;
+		if (_tiledStepper != null)
+			_tiledStepper.setTorus(isTorus());
+	}
+
+	/* Detect still lifes and oscillators with a period of at most historySize generations
+	 * (historySize 0 or less == no detection). With stopOnCycle, the simulation stops at the first repetition. */
+	public void setCycleDetection(int historySize, boolean stopOnCycle) throws Exception {
+		_stopOnCycle = stopOnCycle;
+		_stopped = false;
+		_cycleDetector = null;
+		if (historySize > 0) {
+			_cycleDetector = new CycleDetector(historySize);
+			_cycleDetector.record(_generation, _fingerprint);
+		}
+	}
+
+	/* Collect metrics for every step (see LifeMetrics), and publish them as an MBean under the given name
+	 * (null name == collect without publishing). Returns the metrics.
+	 * Throws exception if the MBean cannot be registered */
+	public LifeMetrics enableMetrics(String name) throws Exception {
+		disableMetrics();
+		LifeMetrics metrics = new LifeMetrics();
+		if (name != null)
+			metrics.register(name);
+		_metrics = metrics;
+		return metrics;
+	}
+
+	/* Stop collecting (and publishing) metrics */
+	public void disableMetrics() throws Exception {
+		if (_metrics != null) {
+			_metrics.unregister();
+			_metrics = null;
+		}
+	}
+
+	/* returns the metrics of the steps, or null if they are not collected */
+	public LifeMetrics getMetrics() {
+		return _metrics;
+	}
+
+	/* Append checkpoints of the next generations to the given file (see LifeCheckpointWriter):
+	 * a snapshot of the current generation and then of every snapshotInterval-th generation,
+	 * and a delta of the changed cells for every other generation.
+	 * Throws exception if illegal input or if the file cannot be opened */
+	public void enableCheckpoints(File file, int snapshotInterval) throws Exception {
+		if (snapshotInterval <= 0)
+			throw new Exception("snapshotInterval must be positive");
+		disableCheckpoints();
+		LifeCheckpointWriter writer = new LifeCheckpointWriter(file, _numRows, _numColumns, isTorus(), _rule);
+		writer.writeSnapshot(_generation, _matrix);
+		_checkpointWriter = writer;
+		_snapshotInterval = snapshotInterval;
+		_stepStats.setRecordChanges(true);
+	}
+
+	/* Stop writing checkpoints, after the queued ones are written.
+	 * Throws exception if writing them failed */
+	public void disableCheckpoints() throws Exception {
+		if (_checkpointWriter != null) {
+			LifeCheckpointWriter writer = _checkpointWriter;
+			_checkpointWriter = null;
+			_stepStats.setRecordChanges(false);
+			writer.close();
+		}
+	}
+
+	/* queue the checkpoint record of the generation that was just calculated */
+	private void writeCheckpoint() {
 		try {
-			LifeMatrix newMatrix = new LifeMatrix(_numRows, _numColumns);
-			for (int row=0; row<_numRows; ++row) {
-				for (int column=0; column<_numColumns; ++column) {
-					updateCell(_matrix, newMatrix, row, column);
-				}
-			}
-			_matrix = newMatrix;   // update to the new matrix (the old one is discarded)
+			if (_generation % _snapshotInterval == 0)
+				_checkpointWriter.writeSnapshot(_generation, _matrix);
+			else
+				_checkpointWriter.writeDelta(_generation, _stepStats.getChanges(), _stepStats.getNumChanges());
 		} catch (Exception e) {
-			// This is not supposed to happend because we use only legal row and column numbers
-			System.out.println("Unexpected Error in doStep()");
+			System.out.println("Checkpoints stopped: " + e.getMessage());
+			try {
+				disableCheckpoints();
+			} catch (Exception closeFailure) {
+				// already reported
+			}
 		}
 	}
-	
-	/* a function for updating a cell in the 'new generation' matrix */
-	private void updateCell(LifeMatrix oldMatrix, LifeMatrix newMatrix, int row, int column) throws Exception {
-		boolean oldVal = oldMatrix.getCellValue(row, column);
-		int numNeighbors = oldMatrix.numberOfNeighbors(row, column);
-		boolean newVal = oldVal;
-		if (oldVal) { // there is life in this cell
-			if (numNeighbors < 2 || numNeighbors > 3)
-				newVal = false;    // kill it!
-		} else {  // oldVal == false, there is no life in this cell
-			if (numNeighbors == 3)
-				newVal = true;     // A cell is born
+
+	/* continue the numbering of the generations from a checkpoint (see LifeCheckpointReader);
+	 * called before cycle detection is set up */
+	void restoreGeneration(long generation) {
+		_generation = generation;
+	}
+
+	/* a function for calculating a 'new generation' in the matrix, based on the 'old generation' matrix.
+	 * The new generation is written into the spare buffer and the two buffers are swapped,
+	 * so no memory is allocated per generation. */
+	@Override
+	public void doStep() {
+		if (_stopped)
+			return;
+		GenerationEvent event = null;
+		long start = 0;
+		if (_metrics != null) {
+			event = new GenerationEvent();
+			event.begin();
+			start = System.nanoTime();
+		}
+		_stepStats.reset();
+		if (_matrix.isTorus())
+			_matrix.refreshHalo();   // once per generation (also picks up cells set since the last step)
+		if (_tiledStepper != null) {
+			_tiledStepper.doStep(_matrix, _nextMatrix, _rule, _stepStats);
+		} else if (_parallelStepper != null) {
+			try {
+				_parallelStepper.doStep(_matrix, _nextMatrix, _rule, _stepStats);
+			} catch (Exception e) {
+				System.out.println("Unexpected Error in doStep()");
+				return;
+			}
+		} else {
+			stepRows(_matrix, _nextMatrix, 0, _numRows, _rule, _stepStats);
+		}
+		LifeMatrix temp = _matrix;
+		_matrix = _nextMatrix;   // update to the new matrix (the old one is reused as the next buffer)
+		_nextMatrix = temp;
+
+		_generation++;
+		_population += _stepStats.getBirths() - _stepStats.getDeaths();
+		_fingerprint += _stepStats.getFingerprintDelta();
+		if (_cycleDetector != null && _cycleDetector.record(_generation, _fingerprint) && _stopOnCycle)
+			_stopped = true;
+		if (_checkpointWriter != null)
+			writeCheckpoint();
+		if (_metrics != null)
+			recordMetrics(event, System.nanoTime() - start);
+	}
+
+	/* record the metrics of the step that was just done */
+	private void recordMetrics(GenerationEvent event, long stepNanos) {
+		long cellsEvaluated = _tiledStepper != null ? _tiledStepper.getLastCellsEvaluated() : (long) _numRows * _numColumns;
+		_metrics.record(_generation, _population, _stepStats.getBirths(), _stepStats.getDeaths(), cellsEvaluated, stepNanos);
+		event.end();
+		if (event.shouldCommit()) {
+			event.generation = _generation;
+			event.population = _population;
+			event.births = _stepStats.getBirths();
+			event.deaths = _stepStats.getDeaths();
+			event.cellsEvaluated = cellsEvaluated;
+			event.stepNanos = stepNanos;
+			event.commit();
+		}
+	}
+
+	/* Calculates the rows [fromRow, toRow) of the 'new generation' of oldMatrix into newMatrix.
+	 * Works directly on the rows of the matrices, so there are no per-cell index checks. */
+	static void stepRows(LifeMatrix oldMatrix, LifeMatrix newMatrix, int fromRow, int toRow, LifeRule rule, StepStats stats) {
+		stepRegion(oldMatrix, newMatrix, fromRow, toRow, 0, oldMatrix.getNumColumns(), rule, stats);
+	}
+
+	/* Calculates the cells in rows [fromRow, toRow) and columns [fromColumn, toColumn)
+	 * of the 'new generation' of oldMatrix into newMatrix, by the lookup table of the rule.
+	 * The neighbours beyond the edges are read from the halo of oldMatrix (see LifeMatrix),
+	 * so the same loop serves bounded boards and tori.
+	 * The births and deaths are added to 'stats'. Returns the number of cells in the region whose value changed. */
+	static int stepRegion(LifeMatrix oldMatrix, LifeMatrix newMatrix, int fromRow, int toRow, int fromColumn, int toColumn,
+			LifeRule rule, StepStats stats) {
+		boolean[] table = rule.getTable();   // table[(alive ? 9 : 0) + numNeighbors] == the next state
+		int numColumns = oldMatrix.getNumColumns();
+		int numChanged = 0;
+		for (int row=fromRow; row<toRow; ++row) {
+			// padded rows: the cell of column c is at index c+1, and rows -1 and numRows are the halo
+			boolean[] above = oldMatrix.getRow(row-1);
+			boolean[] current = oldMatrix.getRow(row);
+			boolean[] below = oldMatrix.getRow(row+1);
+			boolean[] result = newMatrix.getRow(row);
+
+			// a sliding window over the number of alive cells in three adjacent columns of the three rows
+			int leftSum = columnSum(above, current, below, fromColumn);
+			int middleSum = columnSum(above, current, below, fromColumn+1);
+			for (int column=fromColumn; column<toColumn; ++column) {
+				int rightSum = columnSum(above, current, below, column+2);
+				boolean oldVal = current[column+1];
+				// the window includes the cell itself, so an alive cell is at 9 + (sum - 1)
+				boolean newVal = table[(oldVal ? 8 : 0) + leftSum + middleSum + rightSum];
+				result[column+1] = newVal;
+				if (newVal != oldVal) {
+					numChanged++;
+					if (newVal)
+						stats.recordBirth((long) row * numColumns + column);
+					else
+						stats.recordDeath((long) row * numColumns + column);
+				}
+				leftSum = middleSum;
+				middleSum = rightSum;
+			}
 		}
-		newMatrix.setCellValue(row, column, newVal);
+		return numChanged;
+	}
+
+	/* the number of alive cells at the given index of the three padded rows */
+	private static int columnSum(boolean[] above, boolean[] current, boolean[] below, int index) {
+		return (above[index] ? 1 : 0) + (current[index] ? 1 : 0) + (below[index] ? 1 : 0);
 	}
 	
+	/* returns the matrix of the current generation (it is reused by the next steps, so copy it to keep it) */
+	public LifeMatrix getMatrix() {
+		return _matrix;
+	}
+
+	@Override
 	public void printMatrix() {
 		_matrix.printMatrix();
 	}
+
+	/* returns the number of alive cells in the current generation */
+	@Override
+	public long getPopulation() {
+		return _population;
+	}
+
+	/* returns the number of steps done since the first generation */
+	public long getGeneration() {
+		return _generation;
+	}
+
+	/* returns the 64-bit fingerprint of the current generation (equal generations have equal fingerprints) */
+	public long getFingerprint() {
+		return _fingerprint;
+	}
+
+	/* returns true iff the simulation stopped because it reached a cycle (see setCycleDetection) */
+	public boolean isStopped() {
+		return _stopped;
+	}
+
+	public boolean isCycleDetected() {
+		return _cycleDetector != null && _cycleDetector.isCycleDetected();
+	}
+
+	/* the period of the detected cycle (1 == still life), or 0 if no cycle was detected */
+	public long getCyclePeriod() {
+		return _cycleDetector == null ? 0 : _cycleDetector.getPeriod();
+	}
+
+	/* the generation where the detected cycle starts, or -1 if no cycle was detected */
+	public long getCycleStartGeneration() {
+		return _cycleDetector == null ? -1 : _cycleDetector.getCycleStart();
+	}
 	
 }
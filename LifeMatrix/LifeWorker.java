@@ -0,0 +1,246 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A worker process of a distributed simulation (see LifeCoordinator).
+ *
+ * The worker owns one strip of consecutive rows of the board, held in a LifeMatrix whose halo rows
+ * are the edge rows of the strips above and below it. Before every generation the worker sends its
+ * own edge rows to these neighbours and receives theirs, directly over a socket per neighbour,
+ * and then calculates its strip with LifeSimulator.stepRows. The coordinator only sends commands
+ * and collects populations (and cells, when asked), so it does not take part in the per-generation exchange.
+ * The worker fills its strip itself (randomly, or from its rows of a pattern file) and writes it into its own
+ * pattern file, so the whole board is never held by a single process.
+ *
+ * Usage: LifeWorker COORDINATOR_PORT WORKER_INDEX (started by LifeCoordinator)
+ */
+public class LifeWorker {
+
+	/* the commands of the coordinator */
+	final static int CMD_STEP = 1;      // [generations] -> [population]
+	final static int CMD_GET = 2;       // [first row][number of rows] -> [those rows of the strip]
+	final static int CMD_QUIT = 3;
+	final static int CMD_SAVE = 4;      // [file name] -> [error message, "" == saved]
+
+	/* how the strip is filled at the start */
+	final static int INIT_ROWS = 1;     // [the rows of the strip]
+	final static int INIT_RANDOM = 2;   // [seed]
+	final static int INIT_PATTERN = 3;  // [pattern file name][the row of the pattern at the top of the strip]
+
+	/* percent of live cell during random initalization */
+	private final static int CHANCE_OF_ALIVE = 50;
+
+	private DataInputStream _in;        // from the coordinator
+	private DataOutputStream _out;
+	private int _numRows, _numColumns;  // the size of the strip
+	private LifeRule _rule;
+	private LifeMatrix _matrix, _nextMatrix;
+	private StepStats _stepStats = new StepStats();
+	private long _population;
+
+	private Socket _aboveSocket, _belowSocket;   // the links to the neighbour strips (null == no neighbour)
+	private DataInputStream _aboveIn, _belowIn;
+	private DataOutputStream _aboveOut, _belowOut;
+	private byte[] _rowBytes;
+	private ExecutorService _sender = Executors.newSingleThreadExecutor();
+
+	private LifeWorker() {
+	}
+
+	/* Pack the cells of a padded row (including its two halo cells) into bytes, 8 cells per byte */
+	static void packRow(boolean[] cells, byte[] bytes) {
+		Arrays.fill(bytes, (byte) 0);
+		for (int i=0; i<cells.length; ++i) {
+			if (cells[i])
+				bytes[i >>> 3] |= 1 << (i & 7);
+		}
+	}
+
+	static void unpackRow(byte[] bytes, boolean[] cells) {
+		for (int i=0; i<cells.length; ++i)
+			cells[i] = (bytes[i >>> 3] & (1 << (i & 7))) != 0;
+	}
+
+	/* Connect to the coordinator, receive the strip, and link with the neighbour workers */
+	private void setup(int coordinatorPort, int index) throws Exception {
+		InetAddress loopback = InetAddress.getLoopbackAddress();
+		Socket socket = new Socket(loopback, coordinatorPort);
+		socket.setTcpNoDelay(true);
+		_in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		_out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+		// the neighbour above connects to this socket (the worker connects to the one below)
+		ServerSocket peerServer = new ServerSocket(0, 1, loopback);
+		_out.writeInt(index);
+		_out.writeInt(peerServer.getLocalPort());
+		_out.flush();
+
+		_numRows = _in.readInt();
+		_numColumns = _in.readInt();
+		boolean torus = _in.readBoolean();
+		_rule = LifeRule.parse(_in.readUTF());
+		boolean hasAbove = _in.readBoolean();
+		int belowPort = _in.readInt();   // -1 == no neighbour below
+		_matrix = new LifeMatrix(_numRows, _numColumns);
+		_nextMatrix = new LifeMatrix(_numRows, _numColumns);
+		_matrix.setTorus(torus);
+		_nextMatrix.setTorus(torus);
+		_rowBytes = new byte[(_numColumns + 2 + 7) / 8];
+		int init = _in.readInt();
+		if (init == INIT_ROWS) {
+			for (int row=0; row<_numRows; ++row)
+				readRow(_in, _matrix.getRow(row));
+		} else if (init == INIT_RANDOM) {
+			initRandom(new Random(_in.readLong()));
+		} else {
+			File file = new File(_in.readUTF());
+			LifePatternIO.readStrip(file, _in.readInt(), _matrix);
+		}
+		for (int row=0; row<_numRows; ++row) {
+			boolean[] cells = _matrix.getRow(row);
+			for (int column=1; column<=_numColumns; ++column)
+				_population += cells[column] ? 1 : 0;
+		}
+
+		if (belowPort >= 0) {
+			_belowSocket = new Socket(loopback, belowPort);
+			_belowSocket.setTcpNoDelay(true);
+			_belowIn = new DataInputStream(new BufferedInputStream(_belowSocket.getInputStream()));
+			_belowOut = new DataOutputStream(new BufferedOutputStream(_belowSocket.getOutputStream()));
+		}
+		if (hasAbove) {
+			_aboveSocket = peerServer.accept();
+			_aboveSocket.setTcpNoDelay(true);
+			_aboveIn = new DataInputStream(new BufferedInputStream(_aboveSocket.getInputStream()));
+			_aboveOut = new DataOutputStream(new BufferedOutputStream(_aboveSocket.getOutputStream()));
+		}
+		peerServer.close();
+		_out.writeBoolean(true);   // ready
+		_out.flush();
+	}
+
+	/* fill the strip with random cells, with CHANCE_OF_ALIVE chance */
+	private void initRandom(Random random) {
+		for (int row=0; row<_numRows; ++row) {
+			boolean[] cells = _matrix.getRow(row);
+			for (int column=1; column<=_numColumns; ++column)
+				cells[column] = random.nextInt(100) < CHANCE_OF_ALIVE;
+		}
+	}
+
+	private void readRow(DataInputStream in, boolean[] cells) throws IOException {
+		in.readFully(_rowBytes);
+		unpackRow(_rowBytes, cells);
+	}
+
+	private static void writeRow(DataOutputStream out, boolean[] cells, byte[] bytes) throws IOException {
+		packRow(cells, bytes);
+		out.write(bytes);
+	}
+
+	/* Send the edge rows of the strip to the neighbours and receive their edge rows into the halo.
+	 * The rows are sent on another thread, so two neighbours that send at once cannot block each other. */
+	private void exchangeHalo() throws Exception {
+		_matrix.refreshHaloColumns();   // the corners of the halo rows come from the neighbours' halo columns
+		Future<Void> sent = _sender.submit(() -> {
+			byte[] bytes = new byte[_rowBytes.length];
+			if (_aboveOut != null) {
+				writeRow(_aboveOut, _matrix.getRow(0), bytes);
+				_aboveOut.flush();
+			}
+			if (_belowOut != null) {
+				writeRow(_belowOut, _matrix.getRow(_numRows-1), bytes);
+				_belowOut.flush();
+			}
+			return null;
+		});
+		if (_aboveIn != null)
+			readRow(_aboveIn, _matrix.getRow(-1));
+		if (_belowIn != null)
+			readRow(_belowIn, _matrix.getRow(_numRows));
+		sent.get();
+	}
+
+	/* calculate the given number of generations of the strip */
+	private void step(long generations) throws Exception {
+		for (long i=0; i<generations; ++i) {
+			exchangeHalo();
+			_stepStats.reset();
+			LifeSimulator.stepRows(_matrix, _nextMatrix, 0, _numRows, _rule, _stepStats);
+			LifeMatrix temp = _matrix;
+			_matrix = _nextMatrix;
+			_nextMatrix = temp;
+			_population += _stepStats.getBirths() - _stepStats.getDeaths();
+		}
+	}
+
+	/* serve the commands of the coordinator until it quits */
+	private void serve() throws Exception {
+		byte[] bytes = new byte[_rowBytes.length];
+		while (true) {
+			int command = _in.readInt();
+			if (command == CMD_STEP) {
+				step(_in.readLong());
+				_out.writeLong(_population);
+			} else if (command == CMD_GET) {
+				int firstRow = _in.readInt(), numRows = _in.readInt();
+				for (int row=firstRow; row<firstRow+numRows; ++row)
+					writeRow(_out, _matrix.getRow(row), bytes);
+			} else if (command == CMD_SAVE) {
+				_out.writeUTF(save(new File(_in.readUTF())));
+			} else if (command == CMD_QUIT) {
+				return;
+			} else {
+				throw new Exception("Unknown command " + command);
+			}
+			_out.flush();
+		}
+	}
+
+	/* write the strip into a pattern file; returns the error message ("" == saved) */
+	private String save(File file) {
+		try {
+			LifePatternIO.writeFile(_matrix, file, _rule);
+			return "";
+		} catch (Exception e) {
+			return "Could not write " + file + ": " + e.getMessage();
+		}
+	}
+
+	private void close() {
+		_sender.shutdown();
+		try {
+			if (_aboveSocket != null)
+				_aboveSocket.close();
+			if (_belowSocket != null)
+				_belowSocket.close();
+		} catch (IOException e) {
+			// the process exits anyway
+		}
+	}
+
+	public static void main(String[] args) {
+		LifeWorker worker = new LifeWorker();
+		try {
+			worker.setup(Integer.parseInt(args[0]), Integer.parseInt(args[1]));
+			worker.serve();
+		} catch (Exception e) {
+			System.err.println("LifeWorker " + (args.length > 1 ? args[1] : "") + " failed: " + e);
+		} finally {
+			worker.close();
+		}
+	}
+
+}
@@ -0,0 +1,133 @@
+import java.util.Arrays;
+
+/**
+ * A set of primitive long values (open addressing with linear probing),
+ * so that keys are stored without boxing them into Long objects.
+ * The slots can be walked directly (getCapacity, isSlotUsed, getSlotKey) without allocating an iterator.
+ */
+public class LongHashSet {
+
+	private final static int MIN_CAPACITY = 16;
+
+	private long[] _keys;
+	private boolean[] _used;
+	private int _size = 0;
+
+	public LongHashSet() {
+		this(MIN_CAPACITY);
+	}
+
+	/* @param expectedSize - the number of keys the set can hold before it needs to grow */
+	public LongHashSet(int expectedSize) {
+		int capacity = capacityFor(expectedSize);
+		_keys = new long[capacity];
+		_used = new boolean[capacity];
+	}
+
+	/* the smallest capacity that holds the given number of keys without growing (at most 3/4 full) */
+	static int capacityFor(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while (capacity - (capacity >>> 2) < expectedSize)
+			capacity <<= 1;
+		return capacity;
+	}
+
+	/* spread the bits of the key over the whole int (the keys are often packed coordinates) */
+	static int hash(long key) {
+		key *= 0x9E3779B97F4A7C15L;
+		return (int) (key ^ (key >>> 32));
+	}
+
+	public int size() {
+		return _size;
+	}
+
+	public boolean isEmpty() {
+		return _size == 0;
+	}
+
+	/* returns the slot of the key, or the empty slot where it should be added */
+	private int findSlot(long key) {
+		int mask = _keys.length - 1;
+		int slot = hash(key) & mask;
+		while (_used[slot] && _keys[slot] != key)
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	public boolean contains(long key) {
+		return _used[findSlot(key)];
+	}
+
+	/* Adds the key, returns true iff it was not in the set */
+	public boolean add(long key) {
+		int slot = findSlot(key);
+		if (_used[slot])
+			return false;
+		_used[slot] = true;
+		_keys[slot] = key;
+		if (++_size > _keys.length - (_keys.length >>> 2))
+			rehash(_keys.length * 2);
+		return true;
+	}
+
+	/* Removes the key, returns true iff it was in the set */
+	public boolean remove(long key) {
+		int slot = findSlot(key);
+		if (!_used[slot])
+			return false;
+		_used[slot] = false;
+		_size--;
+		// move back the keys of the probe chain that follows the removed slot
+		int mask = _keys.length - 1;
+		for (int next = (slot + 1) & mask; _used[next]; next = (next + 1) & mask) {
+			long moved = _keys[next];
+			_used[next] = false;
+			int newSlot = findSlot(moved);
+			_used[newSlot] = true;
+			_keys[newSlot] = moved;
+		}
+		return true;
+	}
+
+	/* Removes all the keys. The capacity is kept for reuse, unless it is more than 8 times the keys that were removed:
+	 * then it shrinks to fit them, so after a spike of keys, walking the slots costs in proportion to the keys again */
+	public void clear() {
+		if (_size < (_keys.length >>> 3) && _keys.length > MIN_CAPACITY) {
+			int capacity = capacityFor(_size);
+			_keys = new long[capacity];
+			_used = new boolean[capacity];
+		} else if (_size > 0) {
+			Arrays.fill(_used, false);
+		}
+		_size = 0;
+	}
+
+	private void rehash(int newCapacity) {
+		long[] oldKeys = _keys;
+		boolean[] oldUsed = _used;
+		_keys = new long[newCapacity];
+		_used = new boolean[newCapacity];
+		for (int i=0; i<oldKeys.length; ++i) {
+			if (oldUsed[i]) {
+				int slot = findSlot(oldKeys[i]);
+				_used[slot] = true;
+				_keys[slot] = oldKeys[i];
+			}
+		}
+	}
+
+	/* The number of slots, for walking over the keys */
+	public int getCapacity() {
+		return _keys.length;
+	}
+
+	public boolean isSlotUsed(int slot) {
+		return _used[slot];
+	}
+
+	public long getSlotKey(int slot) {
+		return _keys[slot];
+	}
+
+}
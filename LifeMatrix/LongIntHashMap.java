@@ -0,0 +1,148 @@
+import java.util.Arrays;
+
+/**
+ * A map from primitive long keys to int values (open addressing with linear probing),
+ * used for counting and indexing without boxing the keys or the values.
+ * The slots can be walked directly (getCapacity, isSlotUsed, getSlotKey, getSlotValue) without allocating an iterator.
+ */
+public class LongIntHashMap {
+
+	private final static int MIN_CAPACITY = 16;
+
+	private long[] _keys;
+	private int[] _values;
+	private boolean[] _used;
+	private int _size = 0;
+
+	public LongIntHashMap() {
+		this(MIN_CAPACITY);
+	}
+
+	/* @param expectedSize - the number of keys the map can hold before it needs to grow */
+	public LongIntHashMap(int expectedSize) {
+		int capacity = LongHashSet.capacityFor(expectedSize);
+		_keys = new long[capacity];
+		_values = new int[capacity];
+		_used = new boolean[capacity];
+	}
+
+	public int size() {
+		return _size;
+	}
+
+	/* returns the slot of the key, or the empty slot where it should be added */
+	private int findSlot(long key) {
+		int mask = _keys.length - 1;
+		int slot = LongHashSet.hash(key) & mask;
+		while (_used[slot] && _keys[slot] != key)
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	/* returns the value of the key, or 0 if it is not in the map */
+	public int get(long key) {
+		int slot = findSlot(key);
+		return _used[slot] ? _values[slot] : 0;
+	}
+
+	public boolean containsKey(long key) {
+		return _used[findSlot(key)];
+	}
+
+	/* Sets the value of the key (adding the key if it is missing) */
+	public void put(long key, int value) {
+		int slot = findSlot(key);
+		if (_used[slot]) {
+			_values[slot] = value;
+			return;
+		}
+		_used[slot] = true;
+		_keys[slot] = key;
+		_values[slot] = value;
+		if (++_size > _keys.length - (_keys.length >>> 2))
+			rehash(_keys.length * 2);
+	}
+
+	/* Adds delta to the value of the key (a missing key starts from 0), returns the new value */
+	public int addTo(long key, int delta) {
+		int slot = findSlot(key);
+		if (_used[slot])
+			return _values[slot] += delta;
+		_used[slot] = true;
+		_keys[slot] = key;
+		_values[slot] = delta;
+		if (++_size > _keys.length - (_keys.length >>> 2))
+			rehash(_keys.length * 2);
+		return delta;
+	}
+
+	/* Removes the key, returns true iff it was in the map */
+	public boolean remove(long key) {
+		int slot = findSlot(key);
+		if (!_used[slot])
+			return false;
+		_used[slot] = false;
+		_size--;
+		// move back the keys of the probe chain that follows the removed slot
+		int mask = _keys.length - 1;
+		for (int next = (slot + 1) & mask; _used[next]; next = (next + 1) & mask) {
+			long moved = _keys[next];
+			int value = _values[next];
+			_used[next] = false;
+			int newSlot = findSlot(moved);
+			_used[newSlot] = true;
+			_keys[newSlot] = moved;
+			_values[newSlot] = value;
+		}
+		return true;
+	}
+
+	/* Removes all the keys. The capacity is kept for reuse, unless it is more than 8 times the keys that were removed
+	 * (see LongHashSet.clear) */
+	public void clear() {
+		if (_size < (_keys.length >>> 3) && _keys.length > MIN_CAPACITY) {
+			int capacity = LongHashSet.capacityFor(_size);
+			_keys = new long[capacity];
+			_values = new int[capacity];
+			_used = new boolean[capacity];
+		} else if (_size > 0) {
+			Arrays.fill(_used, false);
+		}
+		_size = 0;
+	}
+
+	private void rehash(int newCapacity) {
+		long[] oldKeys = _keys;
+		int[] oldValues = _values;
+		boolean[] oldUsed = _used;
+		_keys = new long[newCapacity];
+		_values = new int[newCapacity];
+		_used = new boolean[newCapacity];
+		for (int i=0; i<oldKeys.length; ++i) {
+			if (oldUsed[i]) {
+				int slot = findSlot(oldKeys[i]);
+				_used[slot] = true;
+				_keys[slot] = oldKeys[i];
+				_values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	/* The number of slots, for walking over the entries */
+	public int getCapacity() {
+		return _keys.length;
+	}
+
+	public boolean isSlotUsed(int slot) {
+		return _used[slot];
+	}
+
+	public long getSlotKey(int slot) {
+		return _keys[slot];
+	}
+
+	public int getSlotValue(int slot) {
+		return _values[slot];
+	}
+
+}
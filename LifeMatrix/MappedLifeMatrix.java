@@ -0,0 +1,270 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * A bit-packed Life board kept in a memory-mapped file instead of on the heap,
+ * so its size is limited by the disk and not by -Xmx.
+ *
+ * The file holds a header and three grids, each stored row after row, 64 cells per long, like PackedLifeMatrix.
+ * The header records which grid holds the last checkpoint and its generation number, so opening the file again
+ * continues from that checkpoint. A checkpoint is written on force() and close() (and by MappedLifeSimulator
+ * every checkpoint interval): the grid is forced to the disk first and only then the header is changed and forced.
+ * Between checkpoints the steps alternate between the two other grids and the header is not touched,
+ * so the checkpointed grid is never overwritten before the next header is on the disk, and after a crash
+ * the file holds exactly the last checkpoint (changes made with setCellValue/fillRandom since then may be partly there).
+ */
+public class MappedLifeMatrix {
+
+	private final static long MAGIC = 0x4C4946454D415032L;   // "LIFEMAP2"
+	private final static int NUM_GRIDS = 3;
+	private final static int HEADER_BYTES = 64;
+	private final static int MAGIC_OFFSET = 0, ROWS_OFFSET = 8, COLUMNS_OFFSET = 12;
+	private final static int GENERATION_OFFSET = 16, CURRENT_GRID_OFFSET = 24;
+
+	/* the maximal size of one mapping (a single MappedByteBuffer is limited to 2GB) */
+	private final static long MAX_SEGMENT_BYTES = 1L << 30;
+
+	private FileChannel _channel;
+	private MappedByteBuffer _header;
+	private MappedByteBuffer[][] _buffers;   // _buffers[grid][segment] == the mapping of a segment of rows
+	private LongBuffer[][] _segments;        // _segments[grid][segment] == the same rows, as longs
+	private int _numRows, _numColumns, _wordsPerRow, _rowsPerSegment;
+	private long _lastWordMask;
+	private int _currentGrid;
+	private long _generation;
+	private int _checkpointGrid;   // the grid the header points to (not overwritten until the next checkpoint)
+
+	private MappedLifeMatrix(FileChannel channel, int numRows, int numColumns) throws IOException {
+		_channel = channel;
+		_numRows = numRows;
+		_numColumns = numColumns;
+		_wordsPerRow = (numColumns + 63) >>> 6;
+		_lastWordMask = PackedLifeMatrix.lastWordMask(numColumns);
+		long rowBytes = _wordsPerRow * 8L;
+		_rowsPerSegment = (int) Math.max(1, Math.min(numRows, MAX_SEGMENT_BYTES / rowBytes));
+		long gridBytes = rowBytes * numRows;
+
+		_header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+		_header.order(ByteOrder.LITTLE_ENDIAN);
+		int numSegments = (numRows + _rowsPerSegment - 1) / _rowsPerSegment;
+		_buffers = new MappedByteBuffer[NUM_GRIDS][numSegments];
+		_segments = new LongBuffer[NUM_GRIDS][numSegments];
+		for (int grid=0; grid<NUM_GRIDS; ++grid) {
+			long gridOffset = HEADER_BYTES + grid * gridBytes;
+			for (int segment=0; segment<numSegments; ++segment) {
+				int segmentRows = Math.min(_rowsPerSegment, numRows - segment * _rowsPerSegment);
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE,
+						gridOffset + segment * _rowsPerSegment * rowBytes, segmentRows * rowBytes);
+				_buffers[grid][segment] = buffer;
+				_segments[grid][segment] = buffer.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+			}
+		}
+	}
+
+	/* Create a new file for an empty board of the given size (an existing file is overwritten).
+	 * Throws exception if illegal input or if the file cannot be created */
+	public static MappedLifeMatrix create(File file, int numRows, int numColumns) throws Exception {
+		if (numRows <= 0 || numColumns <= 0)
+			throw new Exception("numRows and numColumns must be positive");
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			MappedLifeMatrix matrix = new MappedLifeMatrix(channel, numRows, numColumns);
+			matrix._header.putLong(MAGIC_OFFSET, MAGIC);
+			matrix._header.putInt(ROWS_OFFSET, numRows);
+			matrix._header.putInt(COLUMNS_OFFSET, numColumns);
+			matrix.writeHeader(0, 0);
+			matrix._header.force();
+			return matrix;
+		} catch (Exception e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/* the size of the file of a board of the given size: the header and the three grids */
+	private static long fileBytes(int numRows, int numColumns) {
+		return HEADER_BYTES + NUM_GRIDS * (((numColumns + 63) >>> 6) * 8L * numRows);
+	}
+
+	/* Open a board file that was created by create(), continuing from its last checkpoint.
+	 * Throws exception if the file is not a board file */
+	public static MappedLifeMatrix open(File file) throws Exception {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			// everything is checked before the grids are mapped: mapping beyond the end of the file would
+			// silently extend it with zeros, and a damaged board would open as a partly empty checkpoint
+			if (channel.size() < HEADER_BYTES)
+				throw new Exception("Not a Life board file: " + file);
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+			header.order(ByteOrder.LITTLE_ENDIAN);
+			if (header.getLong(MAGIC_OFFSET) != MAGIC)
+				throw new Exception("Not a Life board file: " + file);
+			int numRows = header.getInt(ROWS_OFFSET), numColumns = header.getInt(COLUMNS_OFFSET);
+			int grid = header.getInt(CURRENT_GRID_OFFSET);
+			if (numRows <= 0 || numColumns <= 0 || grid < 0 || grid >= NUM_GRIDS)
+				throw new Exception("Damaged Life board file: " + file);
+			if (channel.size() < fileBytes(numRows, numColumns))
+				throw new Exception("Truncated Life board file: " + file);
+			MappedLifeMatrix matrix = new MappedLifeMatrix(channel, numRows, numColumns);
+			matrix._generation = header.getLong(GENERATION_OFFSET);
+			matrix._currentGrid = grid;
+			matrix._checkpointGrid = grid;
+			return matrix;
+		} catch (Exception e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/* point the header to the checkpoint in the given grid */
+	private void writeHeader(long generation, int grid) {
+		_header.putLong(GENERATION_OFFSET, generation);
+		_header.putInt(CURRENT_GRID_OFFSET, grid);
+		_generation = generation;
+		_currentGrid = grid;
+		_checkpointGrid = grid;
+	}
+
+	public int getNumRows() {
+		return _numRows;
+	}
+
+	public int getNumColumns() {
+		return _numColumns;
+	}
+
+	public int getWordsPerRow() {
+		return _wordsPerRow;
+	}
+
+	long getLastWordMask() {
+		return _lastWordMask;
+	}
+
+	/* the generation number of the current grid */
+	public long getGeneration() {
+		return _generation;
+	}
+
+	/* the index of the grid that holds the current generation */
+	int getCurrentGrid() {
+		return _currentGrid;
+	}
+
+	/* the index of the grid the next generation is written into: neither the current one nor the last checkpoint */
+	int getSpareGrid() {
+		for (int grid=0; ; ++grid) {
+			if (grid != _currentGrid && grid != _checkpointGrid)
+				return grid;
+		}
+	}
+
+	/* Copy the words of a row of the given grid into 'words' (no index checks) */
+	void readRow(int grid, int row, long[] words) {
+		_segments[grid][row / _rowsPerSegment].get((row % _rowsPerSegment) * _wordsPerRow, words, 0, _wordsPerRow);
+	}
+
+	/* Copy 'words' into a row of the given grid (no index checks) */
+	void writeRow(int grid, int row, long[] words) {
+		_segments[grid][row / _rowsPerSegment].put((row % _rowsPerSegment) * _wordsPerRow, words, 0, _wordsPerRow);
+	}
+
+	/* Make the spare grid current, after it was filled with the next generation,
+	 * and with 'checkpoint' make it the checkpoint of the file (see force) */
+	void swapGrids(boolean checkpoint) {
+		_currentGrid = getSpareGrid();
+		_generation++;
+		if (checkpoint)
+			force();
+	}
+
+	private void forceGrid(int grid) {
+		for (MappedByteBuffer buffer : _buffers[grid])
+			buffer.force();
+	}
+
+	/* Returns true iff the row and column indices are legal for the matrix. */
+	private boolean isLegalIndex(int row, int column) {
+		if (row < 0 || column < 0)
+			return false;
+		if (row >= _numRows || column >= _numColumns)
+			return false;
+		return true;
+	}
+
+	/* Verifies that the row and column indices are legal for the matrix.
+	 * If not, throws an Exception. */
+	private void verifyLegalIndex(int row, int column) throws Exception {
+		if (!isLegalIndex(row, column))
+			throw new Exception("Matrix index out of range");
+	}
+
+	/* the position of the word that holds the given cell, inside its segment */
+	private int wordIndex(int row, int column) {
+		return (row % _rowsPerSegment) * _wordsPerRow + (column >>> 6);
+	}
+
+	/* returns the value (alive == true or not-alive == false) of a cell in the current generation
+	 * (if the cell indices are legal) */
+	public boolean getCellValue(int row, int column) throws Exception {
+		verifyLegalIndex(row, column);
+		LongBuffer segment = _segments[_currentGrid][row / _rowsPerSegment];
+		return (segment.get(wordIndex(row, column)) & (1L << column)) != 0;
+	}
+
+	/* sets the given cell (if legal indices) of the current generation to be alive(true) or not-alive(false) */
+	public boolean setCellValue(int row, int column, boolean value) throws Exception {
+		verifyLegalIndex(row, column);
+		LongBuffer segment = _segments[_currentGrid][row / _rowsPerSegment];
+		int index = wordIndex(row, column);
+		long word = segment.get(index);
+		segment.put(index, value ? word | (1L << column) : word & ~(1L << column));
+		return value;
+	}
+
+	/* Fill the current generation with random cells, each alive with a 50% chance */
+	public void fillRandom(Random random) {
+		long[] words = new long[_wordsPerRow];
+		for (int row=0; row<_numRows; ++row) {
+			for (int w=0; w<_wordsPerRow; ++w)
+				words[w] = random.nextLong();
+			words[_wordsPerRow-1] &= _lastWordMask;
+			writeRow(_currentGrid, row, words);
+		}
+	}
+
+	/* returns the number of alive cells in the current generation */
+	public long getPopulation() {
+		long result = 0;
+		long[] words = new long[_wordsPerRow];
+		for (int row=0; row<_numRows; ++row) {
+			readRow(_currentGrid, row, words);
+			for (long word : words)
+				result += Long.bitCount(word);
+		}
+		return result;
+	}
+
+	/* Make the current generation the checkpoint of the file: its grid is written to the disk
+	 * before the header points to it, so the file stays consistent even if the machine crashes */
+	public void force() {
+		forceGrid(_currentGrid);
+		writeHeader(_generation, _currentGrid);
+		_header.force();
+	}
+
+	/* Write the current generation to the disk as a checkpoint and close the file
+	 * (the mappings themselves are released when they are garbage collected) */
+	public void close() throws IOException {
+		force();
+		_channel.close();
+	}
+
+}
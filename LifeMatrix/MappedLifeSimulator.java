@@ -0,0 +1,113 @@
+import java.util.Random;
+
+/**
+ * A simulator for boards in a MappedLifeMatrix, which may be much larger than the heap.
+ * Every step streams through the current grid row by row, holding only three input rows
+ * and one output row in memory, and writes the next generation into the spare grid of the file
+ * with the same word-parallel kernel as PackedLifeSimulator.
+ */
+public class MappedLifeSimulator implements LifeEngine {
+
+	/* the maximal number of rows and columns that printMatrix displays */
+	private final static int PRINT_LIMIT = 100;
+
+	private MappedLifeMatrix _matrix;
+	private int _checkpointInterval = 0;
+	private LifeRule _rule = LifeRule.CONWAY;
+	private PackedRowKernel _kernel = PackedLifeKernel.getRowKernel();
+	private long[] _above, _current, _below, _result;   // the rolling row buffers
+
+	/* Simulate the board in the given file (continuing from its current generation) */
+	public MappedLifeSimulator(MappedLifeMatrix matrix) {
+		_matrix = matrix;
+		int wordsPerRow = matrix.getWordsPerRow();
+		_above = new long[wordsPerRow];
+		_current = new long[wordsPerRow];
+		_below = new long[wordsPerRow];
+		_result = new long[wordsPerRow];
+	}
+
+	/* Fill the board with random cells (each alive with 50% chance), from the given seed */
+	public void initRandom(long seed) {
+		_matrix.fillRandom(new Random(seed));
+	}
+
+	/* Write a checkpoint into the file every 'interval' generations, so it can be resumed from there after a crash
+	 * (0 == only when the matrix is forced or closed; see MappedLifeMatrix) */
+	public void setCheckpointInterval(int interval) {
+		_checkpointInterval = interval;
+	}
+
+	/* Set the rule of the next generations (LifeRule.CONWAY by default) */
+	public void setRule(LifeRule rule) throws Exception {
+		if (rule == null)
+			throw new Exception("rule must be given");
+		_rule = rule;
+		_kernel = PackedLifeKernel.getRowKernel(rule);
+	}
+
+	public LifeRule getRule() {
+		return _rule;
+	}
+
+	public MappedLifeMatrix getMatrix() {
+		return _matrix;
+	}
+
+	public long getGeneration() {
+		return _matrix.getGeneration();
+	}
+
+	/* calculate the next generation into the spare grid of the file, one row at a time */
+	@Override
+	public void doStep() {
+		int numRows = _matrix.getNumRows();
+		int fromGrid = _matrix.getCurrentGrid(), toGrid = _matrix.getSpareGrid();
+		long lastWordMask = _matrix.getLastWordMask();
+
+		_matrix.readRow(fromGrid, 0, _current);
+		if (numRows > 1)
+			_matrix.readRow(fromGrid, 1, _below);
+		for (int row=0; row<numRows; ++row) {
+			_kernel.stepRow(row > 0 ? _above : null, _current, row < numRows-1 ? _below : null, _result, lastWordMask);
+			_matrix.writeRow(toGrid, row, _result);
+
+			// roll the buffers one row down
+			long[] temp = _above;
+			_above = _current;
+			_current = _below;
+			_below = temp;
+			if (row+2 < numRows)
+				_matrix.readRow(fromGrid, row+2, _below);
+		}
+
+		long nextGeneration = _matrix.getGeneration() + 1;
+		_matrix.swapGrids(_checkpointInterval > 0 && nextGeneration % _checkpointInterval == 0);
+	}
+
+	@Override
+	public long getPopulation() {
+		return _matrix.getPopulation();
+	}
+
+	/* display the top-left corner of the board (at most PRINT_LIMIT rows and columns) */
+	@Override
+	public void printMatrix() {
+		int numRows = Math.min(PRINT_LIMIT, _matrix.getNumRows());
+		int numColumns = Math.min(PRINT_LIMIT, _matrix.getNumColumns());
+		StringBuilder rowStr = new StringBuilder(numColumns * 3);
+		try {
+			for (int row=0; row<numRows; ++row) {
+				rowStr.setLength(0);
+				for (int col=0; col<numColumns; ++col) {
+					// "[+]" == alive cell, "[ ]" == not alive cell
+					rowStr.append(_matrix.getCellValue(row, col) ? "[+]" : "[ ]");
+				}
+				System.out.println(rowStr);
+			}
+		} catch (Exception e) {
+			// This is not supposed to happend because we use only legal row and column numbers
+		}
+	}
+
+}
@@ -0,0 +1,228 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Word-parallel generation kernel for PackedLifeMatrix.
+ * Each long holds 64 cells, and the 8 neighbours of all of them are summed at once
+ * with bitwise full-adder logic, so one pass over a word computes 64 cells of the next generation.
+ *
+ * When the Vector API (jdk.incubator.vector) is available, the rows are calculated by VectorLifeKernel,
+ * which applies the same logic to several words per instruction. It is compiled separately
+ * (see vector/VectorLifeKernel.java) and is used only if it loads and gives the same results as
+ * the scalar kernel; otherwise, or with -Dlife.kernel=scalar, the scalar kernel is used.
+ *
+ * Rules other than B3/S23 (see LifeRule) are calculated by a scalar kernel that walks the rows with the
+ * same adders, and only combines the resulting bit planes of the counts differently, still 64 cells at a time.
+ */
+public class PackedLifeKernel {
+
+	/* the scalar kernel */
+	final static PackedRowKernel SCALAR_KERNEL = new ConwayKernel();
+
+	/* the kernel used for calculating the rows (chosen once, when the class is loaded) */
+	private final static PackedRowKernel ROW_KERNEL = selectRowKernel();
+
+	private PackedLifeKernel() {
+	}
+
+	/* Use the vector kernel if it can be loaded and agrees with the scalar one, otherwise the scalar one */
+	private static PackedRowKernel selectRowKernel() {
+		if ("scalar".equals(System.getProperty("life.kernel")))
+			return SCALAR_KERNEL;
+		try {
+			PackedRowKernel vectorKernel = (PackedRowKernel) Class.forName("VectorLifeKernel").getDeclaredConstructor().newInstance();
+			if (agreesWithScalar(vectorKernel))
+				return vectorKernel;
+		} catch (Throwable e) {
+			// the class was not compiled, or the jdk.incubator.vector module is not available (--add-modules)
+		}
+		return SCALAR_KERNEL;
+	}
+
+	/* Compare the kernel with the scalar kernel on random rows of different lengths */
+	static boolean agreesWithScalar(PackedRowKernel kernel) {
+		Random random = new Random(0);
+		for (int numWords=1; numWords<=40; ++numWords) {
+			long[] above = new long[numWords], row = new long[numWords], below = new long[numWords];
+			long[] expected = new long[numWords], actual = new long[numWords];
+			for (int w=0; w<numWords; ++w) {
+				above[w] = random.nextLong();
+				row[w] = random.nextLong();
+				below[w] = random.nextLong();
+			}
+			long lastWordMask = PackedLifeMatrix.lastWordMask(numWords * 64 - numWords);
+			above[numWords-1] &= lastWordMask;
+			row[numWords-1] &= lastWordMask;
+			below[numWords-1] &= lastWordMask;
+			stepRow(above, row, below, expected, lastWordMask);
+			kernel.stepRow(above, row, below, actual, lastWordMask);
+			if (!Arrays.equals(expected, actual))
+				return false;
+			stepRow(null, row, null, expected, lastWordMask);
+			kernel.stepRow(null, row, null, actual, lastWordMask);
+			if (!Arrays.equals(expected, actual))
+				return false;
+		}
+		return true;
+	}
+
+	/* the kernel that calculates the rows */
+	public static PackedRowKernel getRowKernel() {
+		return ROW_KERNEL;
+	}
+
+	/* the kernel that calculates the rows by the given rule */
+	public static PackedRowKernel getRowKernel(LifeRule rule) {
+		return rule.isConway() ? ROW_KERNEL : new RuleKernel(rule);
+	}
+
+	/* the name of the kernel that calculates the rows ("scalar" or "vector") */
+	public static String getRowKernelName() {
+		return ROW_KERNEL == SCALAR_KERNEL ? "scalar" : "vector";
+	}
+
+	/* Calculates the next generation of 'src' into 'dst' (same dimensions, dst is overwritten) */
+	public static void doStep(PackedLifeMatrix src, PackedLifeMatrix dst) {
+		stepRows(src, dst, 0, src.getNumRows(), ROW_KERNEL);
+	}
+
+	/* Calculates the next generation of 'src' into 'dst' with the given kernel (see getRowKernel(LifeRule)) */
+	public static void doStep(PackedLifeMatrix src, PackedLifeMatrix dst, PackedRowKernel kernel) {
+		stepRows(src, dst, 0, src.getNumRows(), kernel);
+	}
+
+	/* Calculates the rows [fromRow, toRow) of the next generation of 'src' into 'dst' */
+	public static void stepRows(PackedLifeMatrix src, PackedLifeMatrix dst, int fromRow, int toRow) {
+		stepRows(src, dst, fromRow, toRow, ROW_KERNEL);
+	}
+
+	/* Calculates the rows [fromRow, toRow) of the next generation of 'src' into 'dst' with the given kernel */
+	public static void stepRows(PackedLifeMatrix src, PackedLifeMatrix dst, int fromRow, int toRow, PackedRowKernel kernel) {
+		int numRows = src.getNumRows();
+		long lastWordMask = src.getLastWordMask();
+		for (int row=fromRow; row<toRow; ++row) {
+			long[] above = row > 0 ? src.getRow(row-1) : null;
+			long[] below = row < numRows-1 ? src.getRow(row+1) : null;
+			kernel.stepRow(above, src.getRow(row), below, dst.getRow(row), lastWordMask);
+		}
+	}
+
+	/* Calculates one row of the next generation.
+	 * 'above' or 'below' may be null, meaning a row of dead cells outside the board. */
+	static void stepRow(long[] above, long[] row, long[] below, long[] out, long lastWordMask) {
+		SCALAR_KERNEL.stepRow(above, row, below, out, lastWordMask);
+	}
+
+	/* Calculates the next state of the 64 cells in 'b', given the words around it:
+	 * 'a' is the row above, 'c' is the row below, and the 'prev'/'next' words are the western/eastern ones */
+	static long nextWord(long prevA, long a, long nextA, long prevB, long b, long nextB, long prevC, long c, long nextC) {
+		return ((ConwayKernel) SCALAR_KERNEL).nextWord(prevA, a, nextA, prevB, b, nextB, prevC, c, nextC);
+	}
+
+	/* The scalar kernels: every row is walked one word at a time, and the neighbours of its 64 cells are
+	 * summed with bitwise adders into bit planes of their counts. A kernel only tells how a rule
+	 * combines the planes (see combine) into the next state of the cells */
+	private abstract static class PlaneKernel implements PackedRowKernel {
+
+		@Override
+		public final void stepRow(long[] above, long[] row, long[] below, long[] out, long lastWordMask) {
+			int numWords = row.length;
+			long prevA = 0, prevB = 0, prevC = 0;   // the words to the west of the current ones
+			long curA = above == null ? 0 : above[0];
+			long curB = row[0];
+			long curC = below == null ? 0 : below[0];
+			for (int w=0; w<numWords; ++w) {
+				long nextA = 0, nextB = 0, nextC = 0;  // the words to the east of the current ones
+				if (w+1 < numWords) {
+					nextA = above == null ? 0 : above[w+1];
+					nextB = row[w+1];
+					nextC = below == null ? 0 : below[w+1];
+				}
+				out[w] = nextWord(prevA, curA, nextA, prevB, curB, nextB, prevC, curC, nextC);
+				prevA = curA; prevB = curB; prevC = curC;
+				curA = nextA; curB = nextB; curC = nextC;
+			}
+			out[numWords-1] &= lastWordMask;
+		}
+
+		final long nextWord(long prevA, long a, long nextA, long prevB, long b, long nextB, long prevC, long c, long nextC) {
+			// the 8 neighbours of every bit, aligned to its position
+			long aw = (a << 1) | (prevA >>> 63), ae = (a >>> 1) | (nextA << 63);
+			long bw = (b << 1) | (prevB >>> 63), be = (b >>> 1) | (nextB << 63);
+			long cw = (c << 1) | (prevC >>> 63), ce = (c >>> 1) | (nextC << 63);
+
+			// full adders for the rows above and below, half adder for the middle row
+			long aSum = aw ^ a ^ ae, aCarry = (aw & a) | (ae & (aw ^ a));
+			long cSum = cw ^ c ^ ce, cCarry = (cw & c) | (ce & (cw ^ c));
+			long bSum = bw ^ be, bCarry = bw & be;
+
+			// add the three 'ones' bits: one 'ones' bit and one more 'twos' bit
+			long ones = aSum ^ bSum ^ cSum;
+			long onesCarry = (aSum & bSum) | (cSum & (aSum ^ bSum));
+
+			// add the four 'twos' bits (0-4) into the bit planes of weight 2, 4 and 8
+			long s1 = aCarry ^ bCarry, c1 = aCarry & bCarry;
+			long s2 = cCarry ^ onesCarry, c2 = cCarry & onesCarry;
+			long twos = s1 ^ s2, carry = s1 & s2;
+			long fours = c1 ^ c2 ^ carry;
+			long eights = c1 & c2;
+
+			return combine(b, ones, twos, fours, eights);
+		}
+
+		/* the next state of the 64 cells in 'b', whose numbers of neighbours are ones + 2*twos + 4*fours + 8*eights
+		 * (bit by bit; fours and eights are never set together) */
+		abstract long combine(long b, long ones, long twos, long fours, long eights);
+	}
+
+	/* The kernel of B3/S23 */
+	private static final class ConwayKernel extends PlaneKernel {
+
+		@Override
+		long combine(long b, long ones, long twos, long fours, long eights) {
+			// alive with 2 or 3 neighbours survives, dead with exactly 3 is born
+			return twos & ~(fours | eights) & (ones | b);
+		}
+	}
+
+	/* The kernel of any Life-like rule. For every count n the rule is a choice between two constant words
+	 * (the birth word for the dead bits, the survival word for the alive ones), so per word only the cell
+	 * picks between them, and the bit planes of the count pick among the nine results */
+	private static final class RuleKernel extends PlaneKernel {
+		private final long _b0, _b1, _b2, _b3, _b4, _b5, _b6, _b7, _b8;   // all ones iff a dead cell with n neighbours is born
+		private final long _x0, _x1, _x2, _x3, _x4, _x5, _x6, _x7, _x8;   // all ones iff survival with n neighbours differs from birth
+
+		RuleKernel(LifeRule rule) {
+			long[] born = new long[9], changed = new long[9];
+			for (int n=0; n<=8; ++n) {
+				boolean birth = (rule.getBirthMask() & (1 << n)) != 0;
+				boolean survival = (rule.getSurvivalMask() & (1 << n)) != 0;
+				born[n] = birth ? -1L : 0;
+				changed[n] = birth != survival ? -1L : 0;
+			}
+			_b0 = born[0]; _b1 = born[1]; _b2 = born[2]; _b3 = born[3]; _b4 = born[4];
+			_b5 = born[5]; _b6 = born[6]; _b7 = born[7]; _b8 = born[8];
+			_x0 = changed[0]; _x1 = changed[1]; _x2 = changed[2]; _x3 = changed[3]; _x4 = changed[4];
+			_x5 = changed[5]; _x6 = changed[6]; _x7 = changed[7]; _x8 = changed[8];
+		}
+
+		@Override
+		long combine(long b, long ones, long twos, long fours, long eights) {
+			// the next state of every bit for every count n (the birth word, flipped where the bit is alive and survival differs)
+			long n0 = _b0 ^ (_x0 & b), n1 = _b1 ^ (_x1 & b), n2 = _b2 ^ (_x2 & b), n3 = _b3 ^ (_x3 & b);
+			long n4 = _b4 ^ (_x4 & b), n5 = _b5 ^ (_x5 & b), n6 = _b6 ^ (_x6 & b), n7 = _b7 ^ (_x7 & b);
+			long n8 = _b8 ^ (_x8 & b);
+
+			// pick by the count: ones and twos choose within 0-3 and within 4-7, then fours and eights choose the group
+			long low = select(twos, select(ones, n3, n2), select(ones, n1, n0));
+			long high = select(twos, select(ones, n7, n6), select(ones, n5, n4));
+			return select(eights, n8, select(fours, high, low));
+		}
+
+		/* the bits of 'ifSet' where 'selector' is set, and the bits of 'ifClear' elsewhere */
+		private static long select(long selector, long ifSet, long ifClear) {
+			return ifClear ^ ((ifSet ^ ifClear) & selector);
+		}
+	}
+
+}
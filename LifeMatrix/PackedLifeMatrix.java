@@ -0,0 +1,150 @@
+/**
+ * A bit-packed variant of LifeMatrix: every row is held in an array of longs,
+ * 64 cells per long (column c is bit (c % 64) of word (c / 64)).
+ * Bits beyond the last column are always kept zero, so the word-parallel kernel
+ * in PackedLifeKernel can work on whole words without masking its inputs.
+ */
+public class PackedLifeMatrix {
+	private int _numRows, _numColumns, _wordsPerRow;
+	private long _lastWordMask;
+	private long[][] _rows;
+
+	/*
+	 * @param numRows - the number of rows
+	 * @param numColumns - the number of columns
+	 * Throws exception if illegal input
+	 */
+	public PackedLifeMatrix(int numRows, int numColumns) throws Exception {
+		if (numRows <= 0 || numColumns <= 0)
+			throw new Exception("numRows and numColumns must be positive");
+		_numRows = numRows;
+		_numColumns = numColumns;
+		_wordsPerRow = (numColumns + 63) >>> 6;
+		_lastWordMask = lastWordMask(numColumns);
+		_rows = new long[numRows][_wordsPerRow];
+	}
+
+	/* Builds a packed copy of the given matrix */
+	public PackedLifeMatrix(LifeMatrix matrix) throws Exception {
+		this(matrix.getNumRows(), matrix.getNumColumns());
+		for (int row=0; row<_numRows; ++row) {
+			for (int col=0; col<_numColumns; ++col) {
+				if (matrix.getCellValue(row, col))
+					_rows[row][col >>> 6] |= 1L << col;
+			}
+		}
+	}
+
+	/* returns the mask of the legal bits in the last word of a row with numColumns columns */
+	static long lastWordMask(int numColumns) {
+		int bits = numColumns & 63;
+		return bits == 0 ? -1L : (1L << bits) - 1;
+	}
+
+	public int getNumRows() {
+		return _numRows;
+	}
+
+	public int getNumColumns() {
+		return _numColumns;
+	}
+
+	public int getWordsPerRow() {
+		return _wordsPerRow;
+	}
+
+	long getLastWordMask() {
+		return _lastWordMask;
+	}
+
+	/* Direct access to the words of a row, for the stepping kernels (no index checks) */
+	long[] getRow(int row) {
+		return _rows[row];
+	}
+
+	/* Returns true iff the row and column indices are legal for the matrix. */
+	private boolean isLegalIndex(int row, int column) {
+		if (row < 0 || column < 0)
+			return false;
+		if (row >= _numRows || column >= _numColumns)
+			return false;
+		return true;
+	}
+
+	/* Verifies that the row and column indices are legal for the matrix.
+	 * If not, throws an Exception. */
+	private void verifyLegalIndex(int row, int column) throws Exception {
+		if (!isLegalIndex(row, column))
+			throw new Exception("Matrix index out of range");
+	}
+
+	/* returns the value (alive == true or not-alive == false) of a cell in the matrix
+	 * (if the cell indices are legal) */
+	public boolean getCellValue(int row, int column) throws Exception {
+		verifyLegalIndex(row, column);
+		return (_rows[row][column >>> 6] & (1L << column)) != 0;
+	}
+
+	/* sets the given cell (if legal indices) to be alive(true) or not-alive(false) */
+	public boolean setCellValue(int row, int column, boolean value) throws Exception {
+		verifyLegalIndex(row, column);
+		if (value)
+			_rows[row][column >>> 6] |= 1L << column;
+		else
+			_rows[row][column >>> 6] &= ~(1L << column);
+		return value;
+	}
+
+	/* returns the number of alive neighbors of the given cell (if legal indices) */
+	public int numberOfNeighbors(int row, int column) throws Exception {
+		int result = 0;
+
+		verifyLegalIndex(row, column);
+
+		for (int rowIndex=row-1; rowIndex<=row+1; ++rowIndex) {
+			for (int colIndex=column-1; colIndex<=column+1; ++colIndex) {
+				if (!(rowIndex == row && colIndex == column) && isLegalIndex(rowIndex, colIndex)) {
+					if (getCellValue(rowIndex, colIndex))
+						result += 1;
+				}
+			}
+		}
+		return result;
+	}
+
+	/* returns the number of alive cells in the matrix */
+	public long getPopulation() {
+		long result = 0;
+		for (long[] words : _rows) {
+			for (long word : words)
+				result += Long.bitCount(word);
+		}
+		return result;
+	}
+
+	/* copies the content of this matrix into a new (unpacked) LifeMatrix */
+	public LifeMatrix toLifeMatrix() throws Exception {
+		LifeMatrix matrix = new LifeMatrix(_numRows, _numColumns);
+		for (int row=0; row<_numRows; ++row) {
+			for (int col=0; col<_numColumns; ++col) {
+				if ((_rows[row][col >>> 6] & (1L << col)) != 0)
+					matrix.setCellValue(row, col, true);
+			}
+		}
+		return matrix;
+	}
+
+	/* a function to display the matrix */
+	public void printMatrix() {
+		StringBuilder rowStr = new StringBuilder(_numColumns * 3);
+		for (int row=0; row<_numRows; ++row) {
+			rowStr.setLength(0);
+			for (int col=0; col<_numColumns; ++col) {
+				// "[+]" == alive cell, "[ ]" == not alive cell
+				rowStr.append((_rows[row][col >>> 6] & (1L << col)) != 0 ? "[+]" : "[ ]");
+			}
+			System.out.println(rowStr);
+		}
+	}
+
+}
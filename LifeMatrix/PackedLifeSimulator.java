@@ -0,0 +1,76 @@
+import java.util.Random;
+
+/**
+ * A simulator that keeps the board in two preallocated PackedLifeMatrix buffers
+ * and calculates every generation with the word-parallel PackedLifeKernel.
+ */
+public class PackedLifeSimulator implements LifeEngine {
+
+	/* percent of live cell during initalization */
+	private final static int CHANCE_OF_ALIVE = 50;
+
+	private PackedLifeMatrix _matrix;
+	private PackedLifeMatrix _nextMatrix;
+	private LifeRule _rule = LifeRule.CONWAY;
+	private PackedRowKernel _kernel = PackedLifeKernel.getRowKernel();
+
+	/* the constructor that builds and initializes the matrix with random cells */
+	public PackedLifeSimulator(int numRows, int numColumns) throws Exception {
+		_matrix = new PackedLifeMatrix(numRows, numColumns);
+		_nextMatrix = new PackedLifeMatrix(numRows, numColumns);
+		initMatrix();
+	}
+
+	/* the constructor that starts the simulation from the given matrix */
+	public PackedLifeSimulator(LifeMatrix initial) throws Exception {
+		_matrix = new PackedLifeMatrix(initial);
+		_nextMatrix = new PackedLifeMatrix(initial.getNumRows(), initial.getNumColumns());
+	}
+
+	/* initialize the matrix with random alive or not alive cells */
+	private void initMatrix() throws Exception {
+		Random random = new Random();
+		for (int row=0; row<_matrix.getNumRows(); ++row) {
+			for (int column=0; column<_matrix.getNumColumns(); ++column) {
+				// generate alive cells, with CHANCE_OF_ALIVE chance
+				_matrix.setCellValue(row, column, random.nextInt(100) < CHANCE_OF_ALIVE);
+			}
+		}
+	}
+
+	/* Set the rule of the next generations (LifeRule.CONWAY by default) */
+	public void setRule(LifeRule rule) throws Exception {
+		if (rule == null)
+			throw new Exception("rule must be given");
+		_rule = rule;
+		_kernel = PackedLifeKernel.getRowKernel(rule);
+	}
+
+	public LifeRule getRule() {
+		return _rule;
+	}
+
+	/* calculate the next generation into the spare buffer, and swap the buffers */
+	@Override
+	public void doStep() {
+		PackedLifeKernel.doStep(_matrix, _nextMatrix, _kernel);
+		PackedLifeMatrix temp = _matrix;
+		_matrix = _nextMatrix;
+		_nextMatrix = temp;
+	}
+
+	public PackedLifeMatrix getMatrix() {
+		return _matrix;
+	}
+
+	@Override
+	public long getPopulation() {
+		return _matrix.getPopulation();
+	}
+
+	@Override
+	public void printMatrix() {
+		_matrix.printMatrix();
+	}
+
+}
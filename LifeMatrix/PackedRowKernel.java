@@ -0,0 +1,11 @@
+/**
+ * A kernel that calculates one row of the next generation of a bit-packed board
+ * (64 cells per long, see PackedLifeMatrix).
+ * 'above' or 'below' may be null, meaning a row of dead cells outside the board;
+ * the bits of the last word beyond the board are masked by lastWordMask.
+ */
+public interface PackedRowKernel {
+
+	void stepRow(long[] above, long[] row, long[] below, long[] out, long lastWordMask);
+
+}
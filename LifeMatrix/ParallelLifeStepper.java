@@ -0,0 +1,107 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Calculates a 'new generation' on several threads at once.
+ * The board is split into bands of consecutive rows, and every band is calculated
+ * by LifeSimulator.stepRows as a separate task. Since each cell of the new generation
+ * depends only on the old generation, the result is identical to the serial calculation.
+ */
+public class ParallelLifeStepper {
+
+	/* the number of bands per thread when the band size is not given explicitly */
+	private final static int BANDS_PER_THREAD = 4;
+
+	private ExecutorService _executor;
+	private boolean _ownsExecutor;
+	private List<Callable<Void>> _bands = new ArrayList<>();
+	private List<StepStats> _bandStats = new ArrayList<>();   // the statistics of every band in the current step
+
+	/* the matrices of the step currently running (published to the workers by the executor) */
+	private LifeMatrix _oldMatrix, _newMatrix;
+	private LifeRule _rule;
+
+	/*
+	 * Runs the bands on a new ForkJoinPool.
+	 * @param numRows - the number of rows of the board
+	 * @param numThreads - the number of worker threads
+	 * @param bandRows - the number of rows in a band (0 or less == choose automatically)
+	 * Throws exception if illegal input
+	 */
+	public ParallelLifeStepper(int numRows, int numThreads, int bandRows) throws Exception {
+		if (numThreads <= 0)
+			throw new Exception("numThreads must be positive");
+		_executor = new ForkJoinPool(numThreads);
+		_ownsExecutor = true;
+		initBands(numRows, numThreads, bandRows);
+	}
+
+	/*
+	 * Runs the bands on the given executor (which remains owned by the caller).
+	 * @param numRows - the number of rows of the board
+	 * @param executor - the executor to run the bands on
+	 * @param numThreads - the number of threads of the executor, used to choose the band size
+	 * @param bandRows - the number of rows in a band (0 or less == choose automatically)
+	 * Throws exception if illegal input
+	 */
+	public ParallelLifeStepper(int numRows, ExecutorService executor, int numThreads, int bandRows) throws Exception {
+		if (executor == null || numThreads <= 0)
+			throw new Exception("executor must be given and numThreads must be positive");
+		_executor = executor;
+		_ownsExecutor = false;
+		initBands(numRows, numThreads, bandRows);
+	}
+
+	/* build the (reusable) tasks, one per band of rows */
+	private void initBands(int numRows, int numThreads, int bandRows) throws Exception {
+		if (numRows <= 0)
+			throw new Exception("numRows must be positive");
+		if (bandRows <= 0)
+			bandRows = Math.max(1, numRows / (numThreads * BANDS_PER_THREAD));
+		for (int fromRow=0; fromRow<numRows; fromRow+=bandRows) {
+			final int from = fromRow;
+			final int to = Math.min(numRows, fromRow + bandRows);
+			final StepStats stats = new StepStats();
+			_bandStats.add(stats);
+			_bands.add(() -> {
+				stats.reset();
+				LifeSimulator.stepRows(_oldMatrix, _newMatrix, from, to, _rule, stats);
+				return null;
+			});
+		}
+	}
+
+	public int getNumBands() {
+		return _bands.size();
+	}
+
+	/* Calculates the 'new generation' of oldMatrix into newMatrix by the given rule, and waits until all bands are done.
+	 * The births and deaths of all the bands are added to 'stats'. */
+	public void doStep(LifeMatrix oldMatrix, LifeMatrix newMatrix, LifeRule rule, StepStats stats)
+			throws InterruptedException, ExecutionException {
+		_oldMatrix = oldMatrix;
+		_newMatrix = newMatrix;
+		_rule = rule;
+		for (StepStats bandStats : _bandStats) {
+			if (bandStats.isRecordingChanges() != stats.isRecordingChanges())
+				bandStats.setRecordChanges(stats.isRecordingChanges());
+		}
+		for (Future<Void> band : _executor.invokeAll(_bands)) {
+			band.get();   // rethrows the failure of a band, if any
+		}
+		for (StepStats bandStats : _bandStats)
+			stats.add(bandStats);
+	}
+
+	/* Stops the worker threads (only if the executor was created by this stepper) */
+	public void shutdown() {
+		if (_ownsExecutor)
+			_executor.shutdown();
+	}
+
+}
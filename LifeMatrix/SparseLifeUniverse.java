@@ -0,0 +1,174 @@
+/**
+ * An unbounded, sparse Life universe: only the coordinates of the alive cells are kept,
+ * packed into longs (row in the high 32 bits, column in the low 32 bits) in a LongHashSet.
+ * A step visits only the alive cells and their neighbours, so its cost depends on the
+ * population and not on the area the pattern spreads over.
+ * (Coordinates are ints, so the plane wraps around after 2^32 cells in each direction.)
+ */
+public class SparseLifeUniverse implements LifeEngine {
+
+	/* the maximal number of rows and columns that printMatrix displays */
+	private final static int PRINT_LIMIT = 100;
+
+	private LongHashSet _cells = new LongHashSet();
+	private LongHashSet _nextCells = new LongHashSet();
+	private LongIntHashMap _neighborCounts = new LongIntHashMap();
+	private long _generation = 0;
+	private LifeRule _rule = LifeRule.CONWAY;
+
+	/* an empty universe */
+	public SparseLifeUniverse() {
+	}
+
+	/* a universe with the alive cells of the given matrix (its top-left cell is at row 0, column 0) */
+	public SparseLifeUniverse(LifeMatrix initial) throws Exception {
+		for (int row=0; row<initial.getNumRows(); ++row) {
+			for (int column=0; column<initial.getNumColumns(); ++column) {
+				if (initial.getCellValue(row, column))
+					_cells.add(pack(row, column));
+			}
+		}
+	}
+
+	/* Set the rule of the next steps.
+	 * Throws exception if the rule has births on 0 neighbours, which would fill the unbounded plane */
+	public void setRule(LifeRule rule) throws Exception {
+		if (rule == null)
+			throw new Exception("rule must be given");
+		if (rule.hasBirthWithoutNeighbors())
+			throw new Exception("Rule " + rule + " cannot be used on an unbounded plane");
+		_rule = rule;
+	}
+
+	public LifeRule getRule() {
+		return _rule;
+	}
+
+	/* pack the coordinates of a cell into one long key */
+	static long pack(int row, int column) {
+		return ((long) row << 32) | (column & 0xFFFFFFFFL);
+	}
+
+	static int unpackRow(long key) {
+		return (int) (key >> 32);
+	}
+
+	static int unpackColumn(long key) {
+		return (int) key;
+	}
+
+	public boolean getCellValue(int row, int column) {
+		return _cells.contains(pack(row, column));
+	}
+
+	public void setCellValue(int row, int column, boolean value) {
+		if (value)
+			_cells.add(pack(row, column));
+		else
+			_cells.remove(pack(row, column));
+	}
+
+	/* calculate the next generation: count the neighbours of the cells around the alive ones,
+	 * and keep the cells that survive or are born */
+	@Override
+	public void doStep() {
+		_neighborCounts.clear();
+		for (int slot=0; slot<_cells.getCapacity(); ++slot) {
+			if (!_cells.isSlotUsed(slot))
+				continue;
+			long key = _cells.getSlotKey(slot);
+			int row = unpackRow(key), column = unpackColumn(key);
+			_neighborCounts.addTo(key, 0);   // so alive cells without neighbours are considered too
+			// (by offsets, so the neighbours of the extreme rows and columns wrap around)
+			for (int dr=-1; dr<=1; ++dr) {
+				for (int dc=-1; dc<=1; ++dc) {
+					if (dr != 0 || dc != 0)
+						_neighborCounts.addTo(pack(row + dr, column + dc), 1);
+				}
+			}
+		}
+
+		_nextCells.clear();
+		for (int slot=0; slot<_neighborCounts.getCapacity(); ++slot) {
+			if (!_neighborCounts.isSlotUsed(slot))
+				continue;
+			long key = _neighborCounts.getSlotKey(slot);
+			int numNeighbors = _neighborCounts.getSlotValue(slot);
+			if (_rule.nextState(_cells.contains(key), numNeighbors))
+				_nextCells.add(key);
+		}
+
+		LongHashSet temp = _cells;
+		_cells = _nextCells;
+		_nextCells = temp;
+		_generation++;
+	}
+
+	public long getGeneration() {
+		return _generation;
+	}
+
+	@Override
+	public long getPopulation() {
+		return _cells.size();
+	}
+
+	/* Copy the given window of the universe into a new LifeMatrix */
+	public LifeMatrix getViewport(int top, int left, int numRows, int numColumns) throws Exception {
+		LifeMatrix matrix = new LifeMatrix(numRows, numColumns);
+		for (int slot=0; slot<_cells.getCapacity(); ++slot) {
+			if (!_cells.isSlotUsed(slot))
+				continue;
+			long key = _cells.getSlotKey(slot);
+			long row = (long) unpackRow(key) - top, column = (long) unpackColumn(key) - left;
+			if (row >= 0 && row < numRows && column >= 0 && column < numColumns)
+				matrix.setCellValue((int) row, (int) column, true);
+		}
+		return matrix;
+	}
+
+	/* display the bounding box of the alive cells, or its top-left corner (at most PRINT_LIMIT rows and columns)
+	 * if it is larger; cells far apart make a huge box, so only the displayed window is built */
+	@Override
+	public void printMatrix() {
+		if (_cells.isEmpty())
+			return;
+		int minRow = Integer.MAX_VALUE, maxRow = Integer.MIN_VALUE;
+		int minColumn = Integer.MAX_VALUE, maxColumn = Integer.MIN_VALUE;
+		for (int slot=0; slot<_cells.getCapacity(); ++slot) {
+			if (_cells.isSlotUsed(slot)) {
+				long key = _cells.getSlotKey(slot);
+				minRow = Math.min(minRow, unpackRow(key));
+				maxRow = Math.max(maxRow, unpackRow(key));
+				minColumn = Math.min(minColumn, unpackColumn(key));
+				maxColumn = Math.max(maxColumn, unpackColumn(key));
+			}
+		}
+		long height = (long) maxRow - minRow + 1, width = (long) maxColumn - minColumn + 1;
+		int numRows = (int) Math.min(PRINT_LIMIT, height), numColumns = (int) Math.min(PRINT_LIMIT, width);
+		if (numRows < height || numColumns < width) {
+			System.out.println("Alive cells span " + height + " x " + width + " cells from row " + minRow + ", column " + minColumn
+					+ "; showing the top-left " + numRows + " x " + numColumns);
+		}
+
+		boolean[][] window = new boolean[numRows][numColumns];
+		for (int slot=0; slot<_cells.getCapacity(); ++slot) {
+			if (!_cells.isSlotUsed(slot))
+				continue;
+			long key = _cells.getSlotKey(slot);
+			long row = (long) unpackRow(key) - minRow, column = (long) unpackColumn(key) - minColumn;
+			if (row < numRows && column < numColumns)
+				window[(int) row][(int) column] = true;
+		}
+		StringBuilder frame = new StringBuilder(numRows * (numColumns * 3 + 1));
+		for (boolean[] cells : window) {
+			for (boolean alive : cells) {
+				// "[+]" == alive cell, "[ ]" == not alive cell
+				frame.append(alive ? "[+]" : "[ ]");
+			}
+			frame.append(System.lineSeparator());
+		}
+		System.out.print(frame);
+	}
+
+}
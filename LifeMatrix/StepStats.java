@@ -0,0 +1,103 @@
+import java.util.Arrays;
+
+/**
+ * What happened in (a region of) one step: the number of cells born and died,
+ * and the change of the fingerprint of the board.
+ *
+ * The fingerprint of a generation is the sum (modulo 2^64) of cellHash(index) over its alive cells,
+ * so it can be updated incrementally from the cells that changed, and the partial sums of
+ * different regions (bands, tiles) can be added in any order.
+ *
+ * Optionally, the indices of the cells that changed are recorded too (for the deltas of LifeCheckpointWriter).
+ */
+public class StepStats {
+
+	private long _births, _deaths;
+	private long _fingerprintDelta;
+	private long[] _changes;   // the indices of the cells that changed (null == not recorded)
+	private int _numChanges;
+
+	/* a well mixed 64-bit hash of a cell index (the finalizer of SplitMix64) */
+	static long cellHash(long cellIndex) {
+		long z = cellIndex + 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/* Record the indices of the cells that changed, or stop recording them */
+	public void setRecordChanges(boolean record) {
+		if (!record)
+			_changes = null;
+		else if (_changes == null)
+			_changes = new long[64];
+		_numChanges = 0;
+	}
+
+	public boolean isRecordingChanges() {
+		return _changes != null;
+	}
+
+	void recordBirth(long cellIndex) {
+		_births++;
+		_fingerprintDelta += cellHash(cellIndex);
+		if (_changes != null)
+			recordChange(cellIndex);
+	}
+
+	void recordDeath(long cellIndex) {
+		_deaths++;
+		_fingerprintDelta -= cellHash(cellIndex);
+		if (_changes != null)
+			recordChange(cellIndex);
+	}
+
+	private void recordChange(long cellIndex) {
+		if (_numChanges == _changes.length)
+			_changes = Arrays.copyOf(_changes, _changes.length * 2);
+		_changes[_numChanges++] = cellIndex;
+	}
+
+	public void reset() {
+		_births = 0;
+		_deaths = 0;
+		_fingerprintDelta = 0;
+		_numChanges = 0;
+	}
+
+	/* add the statistics of another region of the same step */
+	public void add(StepStats other) {
+		_births += other._births;
+		_deaths += other._deaths;
+		_fingerprintDelta += other._fingerprintDelta;
+		if (_changes != null && other._changes != null) {
+			if (_numChanges + other._numChanges > _changes.length)
+				_changes = Arrays.copyOf(_changes, Math.max(_changes.length * 2, _numChanges + other._numChanges));
+			System.arraycopy(other._changes, 0, _changes, _numChanges, other._numChanges);
+			_numChanges += other._numChanges;
+		}
+	}
+
+	/* the indices of the cells that changed (the first getNumChanges() entries, in no particular order),
+	 * if they are recorded */
+	long[] getChanges() {
+		return _changes;
+	}
+
+	int getNumChanges() {
+		return _numChanges;
+	}
+
+	public long getBirths() {
+		return _births;
+	}
+
+	public long getDeaths() {
+		return _deaths;
+	}
+
+	public long getFingerprintDelta() {
+		return _fingerprintDelta;
+	}
+
+}
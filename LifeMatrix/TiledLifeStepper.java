@@ -0,0 +1,113 @@
+import java.util.Arrays;
+
+/**
+ * Calculates a 'new generation' only where something can change.
+ * The board is split into square tiles, and the stepper remembers which tiles changed in the last step.
+ * A tile whose 3x3 block of tiles did not change cannot change either, so it is skipped:
+ * the spare buffer it would be written into already holds the same cells (from two generations ago).
+ * On boards that settled into still lifes and oscillators most of the tiles are skipped.
+ */
+public class TiledLifeStepper {
+
+	private int _tileSize;
+	private int _numRows, _numColumns;
+	private int _numTileRows, _numTileColumns;
+	private boolean[] _changed;       // _changed[tile] == the tile changed in the last step
+	private boolean[] _nextChanged;
+	private boolean _torus = false;     // the tiles of opposite edges are neighbours
+	private int _lastActiveTiles;
+	private long _lastCellsEvaluated;
+
+	/*
+	 * @param numRows - the number of rows of the board
+	 * @param numColumns - the number of columns of the board
+	 * @param tileSize - the number of rows and columns of a tile
+	 * Throws exception if illegal input
+	 */
+	public TiledLifeStepper(int numRows, int numColumns, int tileSize) throws Exception {
+		if (numRows <= 0 || numColumns <= 0 || tileSize <= 0)
+			throw new Exception("numRows, numColumns and tileSize must be positive");
+		_tileSize = tileSize;
+		_numRows = numRows;
+		_numColumns = numColumns;
+		_numTileRows = (numRows + tileSize - 1) / tileSize;
+		_numTileColumns = (numColumns + tileSize - 1) / tileSize;
+		_changed = new boolean[_numTileRows * _numTileColumns];
+		_nextChanged = new boolean[_numTileRows * _numTileColumns];
+		invalidate();
+	}
+
+	/* Mark all the tiles as changed, so the next step calculates the whole board
+	 * (needed at the start, since the spare buffer does not hold a previous generation yet,
+	 * and when the rule changes, since an unchanged tile may change under the new rule) */
+	public void invalidate() {
+		Arrays.fill(_changed, true);
+	}
+
+	/* Make the tiles of opposite edges neighbours (for a board whose edges wrap around) or not */
+	public void setTorus(boolean torus) {
+		_torus = torus;
+	}
+
+	/* returns true iff the tile or one of its 8 neighbour tiles changed in the last step */
+	private boolean isActive(int tileRow, int tileColumn) {
+		if (_torus) {
+			for (int i=-1; i<=1; ++i) {
+				int r = (tileRow + i + _numTileRows) % _numTileRows;
+				for (int j=-1; j<=1; ++j) {
+					if (_changed[r * _numTileColumns + (tileColumn + j + _numTileColumns) % _numTileColumns])
+						return true;
+				}
+			}
+			return false;
+		}
+		for (int r=Math.max(0, tileRow-1); r<=Math.min(_numTileRows-1, tileRow+1); ++r) {
+			for (int c=Math.max(0, tileColumn-1); c<=Math.min(_numTileColumns-1, tileColumn+1); ++c) {
+				if (_changed[r * _numTileColumns + c])
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/* Calculates the 'new generation' of oldMatrix into newMatrix by the given rule,
+	 * where newMatrix holds the generation before oldMatrix (calculated by the same rule, see invalidate).
+	 * The births and deaths are added to 'stats'. */
+	public void doStep(LifeMatrix oldMatrix, LifeMatrix newMatrix, LifeRule rule, StepStats stats) {
+		_lastActiveTiles = 0;
+		_lastCellsEvaluated = 0;
+		for (int tileRow=0; tileRow<_numTileRows; ++tileRow) {
+			for (int tileColumn=0; tileColumn<_numTileColumns; ++tileColumn) {
+				int tile = tileRow * _numTileColumns + tileColumn;
+				if (!isActive(tileRow, tileColumn)) {
+					_nextChanged[tile] = false;
+					continue;
+				}
+				_lastActiveTiles++;
+				int fromRow = tileRow * _tileSize, fromColumn = tileColumn * _tileSize;
+				int toRow = Math.min(_numRows, fromRow + _tileSize), toColumn = Math.min(_numColumns, fromColumn + _tileSize);
+				int numChanged = LifeSimulator.stepRegion(oldMatrix, newMatrix, fromRow, toRow, fromColumn, toColumn, rule, stats);
+				_lastCellsEvaluated += (long) (toRow - fromRow) * (toColumn - fromColumn);
+				_nextChanged[tile] = numChanged > 0;
+			}
+		}
+		boolean[] temp = _changed;
+		_changed = _nextChanged;
+		_nextChanged = temp;
+	}
+
+	/* returns the number of tiles calculated in the last step */
+	public int getLastActiveTiles() {
+		return _lastActiveTiles;
+	}
+
+	/* returns the number of cells calculated in the last step */
+	public long getLastCellsEvaluated() {
+		return _lastCellsEvaluated;
+	}
+
+	public int getNumTiles() {
+		return _changed.length;
+	}
+
+}
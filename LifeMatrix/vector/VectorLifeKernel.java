@@ -0,0 +1,89 @@
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The word-parallel kernel of PackedLifeKernel, on the Vector API:
+ * every instruction applies the full-adder logic to a whole vector of words (e.g. 4 words == 256 cells with AVX2).
+ *
+ * The Vector API is an incubator module, so this class is kept apart from the other sources
+ * and compiled and run with it explicitly, e.g.:
+ *   javac --add-modules jdk.incubator.vector -d out *.java vector/VectorLifeKernel.java
+ *   java --add-modules jdk.incubator.vector -cp out LifeMatrixProgram ...
+ * Without it PackedLifeKernel falls back to the scalar kernel.
+ */
+public class VectorLifeKernel implements PackedRowKernel {
+
+	private final static VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+	private long[] _zeros = new long[0];   // a row of dead cells, for the rows outside the board
+
+	@Override
+	public void stepRow(long[] above, long[] row, long[] below, long[] out, long lastWordMask) {
+		int numWords = row.length;
+		if (above == null || below == null) {
+			long[] zeros = _zeros;
+			if (zeros.length < numWords)
+				_zeros = zeros = new long[numWords];
+			if (above == null)
+				above = zeros;
+			if (below == null)
+				below = zeros;
+		}
+
+		// the first word, and the words whose eastern neighbours would be beyond the row, are done one by one
+		int lanes = SPECIES.length();
+		out[0] = scalarWord(above, row, below, 0);
+		int w = 1;
+		for (; w + lanes < numWords; w += lanes) {
+			LongVector a = LongVector.fromArray(SPECIES, above, w);
+			LongVector b = LongVector.fromArray(SPECIES, row, w);
+			LongVector c = LongVector.fromArray(SPECIES, below, w);
+
+			// the 8 neighbours of every bit, aligned to its position
+			LongVector aw = west(a, LongVector.fromArray(SPECIES, above, w-1));
+			LongVector ae = east(a, LongVector.fromArray(SPECIES, above, w+1));
+			LongVector bw = west(b, LongVector.fromArray(SPECIES, row, w-1));
+			LongVector be = east(b, LongVector.fromArray(SPECIES, row, w+1));
+			LongVector cw = west(c, LongVector.fromArray(SPECIES, below, w-1));
+			LongVector ce = east(c, LongVector.fromArray(SPECIES, below, w+1));
+
+			// the same adder tree as PackedLifeKernel.nextWord
+			LongVector aSum = xor(xor(aw, a), ae), aCarry = aw.and(a).or(ae.and(xor(aw, a)));
+			LongVector cSum = xor(xor(cw, c), ce), cCarry = cw.and(c).or(ce.and(xor(cw, c)));
+			LongVector bSum = xor(bw, be), bCarry = bw.and(be);
+			LongVector ones = xor(xor(aSum, bSum), cSum);
+			LongVector onesCarry = aSum.and(bSum).or(cSum.and(xor(aSum, bSum)));
+			LongVector odd = xor(xor(aCarry, bCarry), xor(cCarry, onesCarry));
+			LongVector atLeastTwo = aCarry.and(bCarry).or(cCarry.and(onesCarry)).or(aCarry.or(bCarry).and(cCarry.or(onesCarry)));
+			LongVector twoOrThree = odd.lanewise(VectorOperators.AND_NOT, atLeastTwo);
+			twoOrThree.and(ones.or(b)).intoArray(out, w);
+		}
+		for (; w < numWords; ++w)
+			out[w] = scalarWord(above, row, below, w);
+		out[numWords-1] &= lastWordMask;
+	}
+
+	/* the western neighbours of the bits of 'v' (the previous words are 'prev') */
+	private static LongVector west(LongVector v, LongVector prev) {
+		return v.lanewise(VectorOperators.LSHL, 1).or(prev.lanewise(VectorOperators.LSHR, 63));
+	}
+
+	/* the eastern neighbours of the bits of 'v' (the next words are 'next') */
+	private static LongVector east(LongVector v, LongVector next) {
+		return v.lanewise(VectorOperators.LSHR, 1).or(next.lanewise(VectorOperators.LSHL, 63));
+	}
+
+	private static LongVector xor(LongVector v1, LongVector v2) {
+		return v1.lanewise(VectorOperators.XOR, v2);
+	}
+
+	private static long scalarWord(long[] above, long[] row, long[] below, int w) {
+		int last = row.length - 1;
+		return PackedLifeKernel.nextWord(
+				w > 0 ? above[w-1] : 0, above[w], w < last ? above[w+1] : 0,
+				w > 0 ? row[w-1] : 0, row[w], w < last ? row[w+1] : 0,
+				w > 0 ? below[w-1] : 0, below[w], w < last ? below[w+1] : 0);
+	}
+
+}